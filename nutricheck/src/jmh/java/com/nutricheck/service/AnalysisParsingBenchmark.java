@@ -0,0 +1,76 @@
+package com.nutricheck.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nutricheck.dto.AiAnalysisResponse;
+import com.nutricheck.dto.enums.ProductCategory;
+import com.nutricheck.util.StreamingAnalysisParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a model answer for 5, 50 and 200 ingredients, in one go (blocking calls) and chunk by chunk (streaming)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnalysisParsingBenchmark {
+
+    // Typical size of a streamed chunk from the providers
+    private static final int CHUNK_SIZE = 40;
+
+    @Param({"5", "50", "200"})
+    public int ingredients;
+
+    private ObjectMapper objectMapper;
+    private AiService aiService;
+    private String answer;
+    private List<String> chunks;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        ChatModel model = BenchmarkFixtures.stubModel(objectMapper);
+        aiService = BenchmarkFixtures.aiService(model, objectMapper);
+
+        String prompt = aiService.buildTextPrompt(String.join(", ", BenchmarkFixtures.ingredients(ingredients)),
+                ProductCategory.FOOD);
+        answer = model.call(new Prompt(prompt)).getResult().getOutput().getText();
+
+        chunks = new ArrayList<>();
+        for (int i = 0; i < answer.length(); i += CHUNK_SIZE) {
+            chunks.add(answer.substring(i, Math.min(answer.length(), i + CHUNK_SIZE)));
+        }
+    }
+
+    @Benchmark
+    public AiAnalysisResponse parseWholeAnswer() {
+        return aiService.parseAiResponse(answer);
+    }
+
+    @Benchmark
+    public AiAnalysisResponse parseStreamedChunks() {
+        StreamingAnalysisParser parser = new StreamingAnalysisParser(objectMapper, analysis -> { });
+        for (String chunk : chunks) {
+            parser.feed(chunk);
+        }
+        return parser.finish();
+    }
+}
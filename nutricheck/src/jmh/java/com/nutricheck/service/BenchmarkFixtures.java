@@ -0,0 +1,66 @@
+package com.nutricheck.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nutricheck.ai.FakeChatModel;
+import com.nutricheck.concurrency.CallLimiter;
+import com.nutricheck.config.ModelRoutingProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.ai.chat.model.ChatModel;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shared inputs for the benchmarks: realistic ingredient lists and an AiService wired to a stub model
+ */
+final class BenchmarkFixtures {
+
+    private static final String[] COMMON = {
+            "Sugar", "Palm Oil", "Wheat Flour", "Salt", "Citric Acid", "Sodium Benzoate", "Soy Lecithin",
+            "Glucose Syrup", "Natural Flavouring", "Xanthan Gum", "Ascorbic Acid", "Potassium Sorbate",
+            "Maltodextrin", "Cocoa Butter", "Whey Powder", "Monosodium Glutamate", "Carrageenan", "Tartrazine",
+            "Aspartame", "Sodium Nitrite"};
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * n distinct ingredient names; beyond the common ones, numbered variants ("Sugar 21", ...)
+     */
+    static List<String> ingredients(int n) {
+        List<String> names = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            String base = COMMON[i % COMMON.length];
+            names.add(i < COMMON.length ? base : base + " " + i);
+        }
+        return names;
+    }
+
+    /**
+     * Answers instantly with the same fenced JSON shape as the real providers
+     */
+    static ChatModel stubModel(ObjectMapper objectMapper) {
+        ModelRoutingProperties.Fake settings = new ModelRoutingProperties.Fake();
+        settings.setLatency(Duration.ZERO);
+        settings.setJitter(0);
+        settings.setFailureRate(0);
+        settings.setChunkDelay(Duration.ZERO);
+        return new FakeChatModel(objectMapper, settings);
+    }
+
+    /**
+     * AiService with only what the prompt, model-call and parsing paths touch; the caches, rule engine, batcher
+     * and OCR stay unset, so a benchmark reaching them fails instead of measuring something else
+     */
+    static AiService aiService(ChatModel chatModel, ObjectMapper objectMapper) {
+        return AiService.builder()
+                .chatModel(chatModel)
+                .objectMapper(objectMapper)
+                .analysisAssembler(new AnalysisAssembler())
+                .modelCallLimiter(new CallLimiter("benchmark", 1024, Duration.ofSeconds(1)))
+                .scanMetrics(new ScanMetrics(ObservationRegistry.NOOP, new SimpleMeterRegistry()))
+                .build();
+    }
+}
@@ -0,0 +1,60 @@
+package com.nutricheck.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nutricheck.dto.AiAnalysisResponse;
+import com.nutricheck.dto.enums.ProductCategory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prompt formatting, and a whole text analysis round trip (prompt, stub model, parse) without network time
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PromptBuildingBenchmark {
+
+    @Param({"5", "50", "200"})
+    public int ingredients;
+
+    private AiService aiService;
+    private String ingredientList;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        aiService = BenchmarkFixtures.aiService(BenchmarkFixtures.stubModel(objectMapper), objectMapper);
+        ingredientList = String.join(", ", BenchmarkFixtures.ingredients(ingredients));
+    }
+
+    @Benchmark
+    public String textPrompt() {
+        return aiService.buildTextPrompt(ingredientList, ProductCategory.FOOD);
+    }
+
+    @Benchmark
+    public String imagePrompt() {
+        return aiService.buildImagePrompt(ProductCategory.COSMETICS);
+    }
+
+    @Benchmark
+    public AiAnalysisResponse stubModelRoundTrip() {
+        Prompt prompt = new Prompt(aiService.buildTextPrompt(ingredientList, ProductCategory.FOOD));
+        return aiService.callModel(prompt, "text", ProductCategory.FOOD);
+    }
+}
@@ -0,0 +1,117 @@
+package com.nutricheck.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nutricheck.dto.AiAnalysisResponse;
+import com.nutricheck.dto.IngredientAnalysis;
+import com.nutricheck.dto.ScanResponse;
+import com.nutricheck.dto.enums.ProductCategory;
+import com.nutricheck.entity.Ingredient;
+import com.nutricheck.entity.Scan;
+import com.nutricheck.entity.ScanResult;
+import com.nutricheck.entity.User;
+import com.nutricheck.mapper.ScanMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building responses: a saved scan mapped to its DTO (what ScanService returns after the fetch-join queries),
+ * and a model answer merged with locally known verdicts
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseAssemblyBenchmark {
+
+    @Param({"5", "50", "200"})
+    public int ingredients;
+
+    private final ScanMapper scanMapper = new ScanMapper();
+    private final AnalysisAssembler analysisAssembler = new AnalysisAssembler();
+
+    private Scan scan;
+    private List<ScanResult> scanResults;
+    private AiAnalysisResponse modelResponse;
+    private List<IngredientAnalysis> known;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        ChatModel model = BenchmarkFixtures.stubModel(objectMapper);
+        AiService aiService = BenchmarkFixtures.aiService(model, objectMapper);
+        List<String> names = BenchmarkFixtures.ingredients(ingredients);
+
+        // Half the ingredients come back from the model, the other half are known locally
+        int half = names.size() / 2;
+        known = analyze(aiService, names.subList(0, half)).getResults();
+        modelResponse = analyze(aiService, names.subList(half, names.size()));
+
+        User user = User.builder().id(1L).name("Benchmark User").email("bench@example.com").build();
+        AiAnalysisResponse full = analysisAssembler.merge(modelResponse, known);
+        scan = Scan.builder()
+                .id(1L)
+                .productName(full.getProductName())
+                .scannedAt(LocalDateTime.now())
+                .user(user)
+                .safetyScore(full.getSafetyScore())
+                .overallAssessment(full.getOverallAssessment())
+                .warningsFor(new ArrayList<>())
+                .build();
+        scanMapper.applySummary(scan, scanMapper.summarizeRisks(
+                full.getResults().stream().map(IngredientAnalysis::getRisk).toList()));
+
+        scanResults = new ArrayList<>();
+        long id = 1;
+        for (IngredientAnalysis analysis : full.getResults()) {
+            Ingredient ingredient = Ingredient.builder()
+                    .id(id)
+                    .name(analysis.getIngredientName())
+                    .category(analysis.getCategory())
+                    .riskLevel(analysis.getRisk())
+                    .description(analysis.getDescription())
+                    .sideEffects(String.join(", ", analysis.getSideEffects()))
+                    .build();
+            scanResults.add(ScanResult.builder()
+                    .id(id++)
+                    .scan(scan)
+                    .ingredient(ingredient)
+                    .risk(analysis.getRisk())
+                    .severity(analysis.getSeverity())
+                    .explanation(analysis.getExplanation())
+                    .build());
+        }
+    }
+
+    private static AiAnalysisResponse analyze(AiService aiService, List<String> names) {
+        Prompt prompt = new Prompt(aiService.buildTextPrompt(String.join(", ", names), ProductCategory.FOOD));
+        return aiService.callModel(prompt, "text", ProductCategory.FOOD);
+    }
+
+    @Benchmark
+    public ScanResponse mapScanResponse() {
+        return scanMapper.toResponse(scan, scanResults);
+    }
+
+    @Benchmark
+    public AiAnalysisResponse mergeWithKnownVerdicts() {
+        return analysisAssembler.merge(modelResponse, known);
+    }
+}
@@ -0,0 +1,68 @@
+package com.nutricheck.ai;
+
+import java.util.Arrays;
+
+/**
+ * Rolling latency and error statistics for one model backend over its last N calls
+ */
+public class BackendStats {
+
+    private final long[] latencies;
+    private final boolean[] failures;
+    private int next;
+    private int count;
+    private int failureCount;
+
+    public BackendStats(int window) {
+        this.latencies = new long[window];
+        this.failures = new boolean[window];
+    }
+
+    public synchronized void recordSuccess(long latencyNanos) {
+        record(latencyNanos, false);
+    }
+
+    public synchronized void recordFailure(long latencyNanos) {
+        record(latencyNanos, true);
+    }
+
+    private void record(long latencyNanos, boolean failed) {
+        if (count == latencies.length && failures[next]) {
+            failureCount--;
+        }
+        latencies[next] = latencyNanos;
+        failures[next] = failed;
+        if (failed) {
+            failureCount++;
+        }
+        next = (next + 1) % latencies.length;
+        count = Math.min(count + 1, latencies.length);
+    }
+
+    public synchronized int samples() {
+        return count;
+    }
+
+    public synchronized double errorRate() {
+        return count == 0 ? 0.0 : (double) failureCount / count;
+    }
+
+    /**
+     * Latency percentile (0-1) over the successful calls in the window, or -1 when there are none
+     */
+    public synchronized long percentileNanos(double percentile) {
+        long[] successful = new long[count - failureCount];
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (!failures[i]) {
+                successful[n++] = latencies[i];
+            }
+        }
+        if (n == 0) {
+            return -1;
+        }
+        Arrays.sort(successful);
+        int index = (int) Math.ceil(percentile * n) - 1;
+        return successful[Math.max(0, Math.min(n - 1, index))];
+    }
+}
@@ -0,0 +1,176 @@
+package com.nutricheck.ai;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nutricheck.config.ModelRoutingProperties;
+import com.nutricheck.dto.AiAnalysisResponse;
+import com.nutricheck.dto.IngredientAnalysis;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.retry.TransientAiException;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Local stand-in for a model provider, for running and load-testing without network access.
+ * Answers the analysis prompts (single, batched and image) with generated (deterministic per ingredient) verdicts in the same JSON shape,
+ * wrapped in a markdown fence like real models tend to, after a configurable latency (log-normal around a median,
+ * plus an optional slow tail) and failure rate.
+ */
+public class FakeChatModel implements ChatModel {
+
+    private static final String[] RISKS = {"LOW", "LOW", "MEDIUM", "HIGH"};
+    private static final String BATCH_MARKER = "Products (id (category): ingredients):";
+    private static final List<String> IMAGE_INGREDIENTS = List.of(
+            "Sugar", "Palm Oil", "Citric Acid", "Sodium Benzoate", "Soy Lecithin", "Salt");
+
+    private final ObjectMapper objectMapper;
+    private final ModelRoutingProperties.Fake settings;
+
+    public FakeChatModel(ObjectMapper objectMapper, ModelRoutingProperties.Fake settings) {
+        this.objectMapper = objectMapper;
+        this.settings = settings;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        String answer = answer(prompt);
+        sleep(latency());
+        failRandomly();
+        return response(answer);
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        String answer = answer(prompt);
+        List<String> chunks = new ArrayList<>();
+        int size = Math.max(1, settings.getChunkSize());
+        for (int i = 0; i < answer.length(); i += size) {
+            chunks.add(answer.substring(i, Math.min(answer.length(), i + size)));
+        }
+
+        // Time to first token is about a third of the call latency; the rest is spread over the chunks
+        Flux<String> stream = Flux.defer(() -> {
+            sleep(latency().dividedBy(3));
+            failRandomly();
+            return Flux.fromIterable(chunks);
+        });
+        if (!settings.getChunkDelay().isZero()) {
+            stream = stream.delayElements(settings.getChunkDelay());
+        }
+        return stream.map(this::response);
+    }
+
+    String answer(Prompt prompt) {
+        String text = prompt.getContents();
+        Object response = text.contains(BATCH_MARKER)
+                ? Map.of("products", batchAnswer(text))
+                : analysis(text.contains("from this image") ? "Sample Product" : "Unknown Product", ingredientsIn(text));
+        try {
+            return "```json\n" + objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(response) + "\n```";
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static AiAnalysisResponse analysis(String productName, List<String> ingredients) {
+        List<IngredientAnalysis> results = new ArrayList<>();
+        for (String ingredient : ingredients) {
+            results.add(verdict(ingredient));
+        }
+        return new AiAnalysisResponse(productName, results, 7, "Generated by the local stand-in model.", new ArrayList<>());
+    }
+
+    // Batched prompts list one "p1 (FOOD): a, b" line per product
+    private static Map<String, AiAnalysisResponse> batchAnswer(String prompt) {
+        Map<String, AiAnalysisResponse> products = new LinkedHashMap<>();
+        String rest = prompt.substring(prompt.indexOf(BATCH_MARKER) + BATCH_MARKER.length());
+        for (String line : rest.split("\n")) {
+            line = line.trim();
+            if (line.isEmpty()) {
+                if (!products.isEmpty()) {
+                    break;
+                }
+                continue;
+            }
+            int colon = line.indexOf(':');
+            int space = line.indexOf(' ');
+            if (colon < 0 || space < 0) {
+                break;
+            }
+            products.put(line.substring(0, space), analysis(null, split(line.substring(colon + 1))));
+        }
+        return products;
+    }
+
+    // The text prompt lists the ingredients on the line after "Ingredients:"; image prompts get a fixed label
+    private static List<String> ingredientsIn(String prompt) {
+        int marker = prompt.indexOf("Ingredients:");
+        if (marker < 0) {
+            return IMAGE_INGREDIENTS;
+        }
+        String rest = prompt.substring(marker + "Ingredients:".length()).stripLeading();
+        int end = rest.indexOf('\n');
+        return split(end < 0 ? rest : rest.substring(0, end));
+    }
+
+    private static List<String> split(String list) {
+        return Arrays.stream(list.split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList();
+    }
+
+    private static IngredientAnalysis verdict(String ingredient) {
+        String risk = RISKS[Math.floorMod(ingredient.toLowerCase(Locale.ROOT).hashCode(), RISKS.length)];
+        String severity = switch (risk) {
+            case "HIGH" -> "Severe";
+            case "MEDIUM" -> "Moderate";
+            default -> "Minimal";
+        };
+        return new IngredientAnalysis(ingredient, risk, severity,
+                "Generated verdict for " + ingredient + ".",
+                ingredient + " is a common ingredient.",
+                "additive",
+                "LOW".equals(risk) ? new ArrayList<>() : new ArrayList<>(List.of("Sensitivity")));
+    }
+
+    private ChatResponse response(String text) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+    }
+
+    private Duration latency() {
+        if (settings.getTailRate() > 0 && ThreadLocalRandom.current().nextDouble() < settings.getTailRate()) {
+            return settings.getTailLatency();
+        }
+        long base = settings.getLatency().toNanos();
+        if (settings.getJitter() <= 0) {
+            return Duration.ofNanos(base);
+        }
+        double factor = Math.exp(ThreadLocalRandom.current().nextGaussian() * settings.getJitter());
+        return Duration.ofNanos((long) (base * factor));
+    }
+
+    private void failRandomly() {
+        if (ThreadLocalRandom.current().nextDouble() < settings.getFailureRate()) {
+            throw new TransientAiException("Fake model failure: 503 UNAVAILABLE");
+        }
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted", e);
+        }
+    }
+}
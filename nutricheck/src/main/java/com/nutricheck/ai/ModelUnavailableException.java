@@ -0,0 +1,17 @@
+package com.nutricheck.ai;
+
+/**
+ * A model call was refused locally (circuit open, rate limit or bulkhead full) without reaching the provider,
+ * or a call made on the caller's behalf already failed (a batched analysis), so calling again right away would
+ * only add load
+ */
+public class ModelUnavailableException extends RuntimeException {
+
+    public ModelUnavailableException(String message) {
+        super(message);
+    }
+
+    public ModelUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
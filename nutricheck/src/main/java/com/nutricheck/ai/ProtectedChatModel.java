@@ -0,0 +1,321 @@
+package com.nutricheck.ai;
+
+import com.google.genai.errors.ApiException;
+import com.nutricheck.concurrency.CallLimiter;
+import com.nutricheck.concurrency.CircuitBreaker;
+import com.nutricheck.concurrency.TokenBucket;
+import com.nutricheck.config.ResilienceProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Wraps one model backend with the protections a shared provider quota needs, outermost first:
+ * retry with jittered exponential backoff, circuit breaker, token-bucket rate limit, bulkhead and timeout.
+ * Calls refused locally throw ModelUnavailableException right away so the router can move on to another backend.
+ * Streams get the same checks except retries (a partly sent answer cannot be replayed).
+ * A timed-out attempt is abandoned, but blocking provider I/O does not stop on interrupt: its bulkhead permit
+ * stays taken until the provider call really returns, so the bulkhead bounds the calls actually in flight.
+ */
+@Slf4j
+public class ProtectedChatModel implements ChatModel {
+
+    // HTTP statuses for throttling and transient server-side failures
+    private static final Set<Integer> RETRYABLE_STATUSES = Set.of(408, 429, 500, 502, 503, 504);
+
+    private final String name;
+    private final ChatModel delegate;
+    private final ResilienceProperties properties;
+    private final AsyncTaskExecutor executor;
+    private final ResilienceProperties.RateLimit quota;
+
+    private final TokenBucket rateLimiter;
+    private final CallLimiter bulkhead;
+    private final CircuitBreaker circuitBreaker;
+
+    private final Counter rateLimited;
+    private final Counter bulkheadFull;
+    private final Counter circuitOpen;
+    private final Counter retries;
+    private final Counter timeouts;
+
+    public ProtectedChatModel(String name, ChatModel delegate, ResilienceProperties properties,
+                              AsyncTaskExecutor executor, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.delegate = delegate;
+        this.properties = properties;
+        this.executor = executor;
+
+        this.quota = properties.getQuotas().getOrDefault(name, properties.getRateLimit());
+        ResilienceProperties.Breaker breaker = properties.getCircuitBreaker();
+        this.rateLimiter = new TokenBucket(quota.getPermitsPerSecond(), quota.getBurst());
+        this.bulkhead = new CallLimiter("model-" + name, properties.getBulkhead().getMaxConcurrent(),
+                properties.getBulkhead().getMaxWait());
+        this.circuitBreaker = new CircuitBreaker(breaker.getFailureRateThreshold(), breaker.getWindow(),
+                breaker.getMinimumCalls(), breaker.getOpenDuration(), breaker.getHalfOpenCalls());
+
+        this.rateLimited = rejections(meterRegistry, "rate_limit");
+        this.bulkheadFull = rejections(meterRegistry, "bulkhead");
+        this.circuitOpen = rejections(meterRegistry, "circuit_open");
+        this.retries = Counter.builder("nutricheck.model.retries").tag("backend", name).register(meterRegistry);
+        this.timeouts = Counter.builder("nutricheck.model.timeouts").tag("backend", name).register(meterRegistry);
+
+        // 0 = closed, 1 = half-open, 2 = open
+        Gauge.builder("nutricheck.model.circuit.state", circuitBreaker, b -> b.getState().ordinal())
+                .tag("backend", name)
+                .register(meterRegistry);
+        Gauge.builder("nutricheck.model.rate.tokens", rateLimiter, TokenBucket::availableTokens)
+                .tag("backend", name)
+                .register(meterRegistry);
+        Gauge.builder("nutricheck.model.bulkhead.available", bulkhead, CallLimiter::availablePermits)
+                .tag("backend", name)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        int maxAttempts = Math.max(1, properties.getRetry().getMaxAttempts());
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return attempt(prompt);
+            } catch (ModelUnavailableException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                if (attempt >= maxAttempts || !isRetryable(e) || !circuitBreaker.isCallPermitted()) {
+                    throw e;
+                }
+                Duration backoff = backoff(attempt);
+                retries.increment();
+                log.debug("Model backend {} failed ({}), retry {} in {} ms",
+                        name, e.getMessage(), attempt, backoff.toMillis());
+                sleep(backoff);
+            }
+        }
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        return Flux.defer(() -> {
+            admit();
+            AtomicBoolean released = new AtomicBoolean();
+            Runnable release = () -> {
+                if (released.compareAndSet(false, true)) {
+                    bulkhead.release();
+                }
+            };
+            Flux<ChatResponse> stream;
+            try {
+                stream = delegate.stream(prompt);
+            } catch (RuntimeException e) {
+                // Failed before returning a Flux: nothing below will release the permits
+                recordFailure(e);
+                release.run();
+                throw e;
+            }
+            // timeout bounds the wait for each chunk, streamTimeout the whole answer
+            long deadline = System.nanoTime() + properties.getStreamTimeout().toNanos();
+            return stream
+                    .timeout(Mono.delay(untilDeadline(properties.getTimeout(), deadline)),
+                            chunk -> Mono.delay(untilDeadline(properties.getTimeout(), deadline)))
+                    .doOnComplete(circuitBreaker::onSuccess)
+                    .doOnError(this::recordFailure)
+                    .doOnCancel(circuitBreaker::onIgnored)
+                    .doFinally(signal -> release.run());
+        });
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return delegate.getDefaultOptions();
+    }
+
+    /**
+     * Whether the circuit currently lets calls through; the router tries closed backends first
+     */
+    public boolean isAvailable() {
+        return circuitBreaker.isCallPermitted();
+    }
+
+    public CircuitBreaker.State circuitState() {
+        return circuitBreaker.getState();
+    }
+
+    private ChatResponse attempt(Prompt prompt) {
+        admit();
+        // Whoever claims the task releases the permit: the task itself once the provider call returns,
+        // or this thread if the task is abandoned before it started
+        AtomicBoolean claimed = new AtomicBoolean();
+        Future<ChatResponse> future;
+        try {
+            future = executor.submit(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    return null;
+                }
+                try {
+                    return delegate.call(prompt);
+                } finally {
+                    bulkhead.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            // The executor refused the task
+            bulkhead.release();
+            circuitBreaker.onIgnored();
+            throw e;
+        }
+
+        try {
+            ChatResponse response = future.get(properties.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            circuitBreaker.onSuccess();
+            return response;
+        } catch (TimeoutException e) {
+            abandon(future, claimed);
+            timeouts.increment();
+            circuitBreaker.onFailure();
+            throw new IllegalStateException("Model backend " + name + " timed out after "
+                    + properties.getTimeout().toMillis() + " ms", e);
+        } catch (ExecutionException e) {
+            RuntimeException cause = e.getCause() instanceof RuntimeException runtime
+                    ? runtime
+                    : new IllegalStateException(e.getCause());
+            recordFailure(cause);
+            throw cause;
+        } catch (InterruptedException e) {
+            // Cancelled by the router (a hedge won): says nothing about the backend
+            abandon(future, claimed);
+            circuitBreaker.onIgnored();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for model backend " + name, e);
+        }
+    }
+
+    private void abandon(Future<ChatResponse> future, AtomicBoolean claimed) {
+        future.cancel(true);
+        if (claimed.compareAndSet(false, true)) {
+            bulkhead.release();
+        }
+    }
+
+    // Time to wait for the next chunk: the per-chunk timeout, cut short by the stream's overall deadline
+    private static Duration untilDeadline(Duration timeout, long deadline) {
+        long left = Math.max(0, deadline - System.nanoTime());
+        return left < timeout.toNanos() ? Duration.ofNanos(left) : timeout;
+    }
+
+    // Circuit, then rate limit, then bulkhead; on success a bulkhead permit and a circuit permit are held
+    private void admit() {
+        if (!circuitBreaker.isCallPermitted()) {
+            circuitOpen.increment();
+            throw new ModelUnavailableException("Model backend " + name + " circuit is open");
+        }
+        if (!rateLimiter.tryAcquire(quota.getMaxWait())) {
+            rateLimited.increment();
+            throw new ModelUnavailableException("Model backend " + name + " rate limit reached");
+        }
+        if (!bulkhead.tryAcquire(properties.getBulkhead().getMaxWait())) {
+            bulkheadFull.increment();
+            throw new ModelUnavailableException("Model backend " + name + " has too many calls in flight");
+        }
+        if (!circuitBreaker.tryAcquire()) {
+            // Another caller took the last half-open trial slot meanwhile
+            bulkhead.release();
+            circuitOpen.increment();
+            throw new ModelUnavailableException("Model backend " + name + " circuit is open");
+        }
+    }
+
+    // Only provider-health failures count against the circuit; a rejected prompt does not
+    private void recordFailure(Throwable error) {
+        if (isRetryable(error)) {
+            if (error instanceof TimeoutException) {
+                timeouts.increment();
+            }
+            circuitBreaker.onFailure();
+        } else {
+            circuitBreaker.onIgnored();
+        }
+    }
+
+    private Duration backoff(int attempt) {
+        ResilienceProperties.Retry retry = properties.getRetry();
+        long ceiling = Math.min(retry.getMaxBackoff().toMillis(),
+                retry.getInitialBackoff().toMillis() << Math.min(attempt - 1, 20));
+        // Full jitter: spreads the retries of callers that failed together
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+
+    /**
+     * Timeouts, I/O errors, throttling and server-side errors are worth retrying; anything else is not.
+     * Decided by exception type and HTTP status only: message text can mention any number.
+     */
+    static boolean isRetryable(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof TimeoutException || t instanceof IOException || t instanceof TransientAiException) {
+                return true;
+            }
+            if (t instanceof NonTransientAiException) {
+                return false;
+            }
+            int status = httpStatus(t);
+            if (status > 0) {
+                return RETRYABLE_STATUSES.contains(status);
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    // Status of a provider error response (Spring HTTP clients, Google GenAI SDK), or -1
+    private static int httpStatus(Throwable error) {
+        if (error instanceof RestClientResponseException e) {
+            return e.getStatusCode().value();
+        }
+        if (error instanceof WebClientResponseException e) {
+            return e.getStatusCode().value();
+        }
+        if (error instanceof ApiException e) {
+            return e.code();
+        }
+        return -1;
+    }
+
+    private Counter rejections(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("nutricheck.model.rejected")
+                .tag("backend", name)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while backing off", e);
+        }
+    }
+}
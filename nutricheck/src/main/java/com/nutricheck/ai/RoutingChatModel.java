@@ -0,0 +1,310 @@
+package com.nutricheck.ai;
+
+import com.nutricheck.config.ModelRoutingProperties;
+import com.nutricheck.config.ResilienceProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.core.task.AsyncTaskExecutor;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * ChatModel that spreads calls over all other ChatModel beans.
+ * Backends are ranked by rolling p50/p99 latency and error rate; when the chosen backend is slower than its own
+ * hedge percentile a second backend is asked as well and the first answer wins. Failures fall through to the
+ * next backend. Streams are not hedged, but fall back when a backend fails before sending anything.
+ * Each backend is wrapped in a ProtectedChatModel; backends whose circuit is open are tried last, and calls they
+ * refuse locally are not counted in their latency statistics.
+ */
+@Slf4j
+public class RoutingChatModel implements ChatModel {
+
+    private final ListableBeanFactory beanFactory;
+    private final ModelRoutingProperties properties;
+    private final ResilienceProperties resilience;
+    private final AsyncTaskExecutor executor;
+    private final MeterRegistry meterRegistry;
+    private final Semaphore hedgeSlots;
+
+    private final Counter hedges;
+    private final Counter hedgeWins;
+    private final Counter fallbacks;
+
+    private volatile List<Backend> backends;
+
+    public RoutingChatModel(ListableBeanFactory beanFactory, ModelRoutingProperties properties,
+                            ResilienceProperties resilience, AsyncTaskExecutor executor, MeterRegistry meterRegistry) {
+        this.beanFactory = beanFactory;
+        this.properties = properties;
+        this.resilience = resilience;
+        this.executor = executor;
+        this.meterRegistry = meterRegistry;
+        this.hedgeSlots = new Semaphore(properties.getHedge().getMaxInFlight());
+
+        this.hedges = Counter.builder("nutricheck.model.hedges").register(meterRegistry);
+        this.hedgeWins = Counter.builder("nutricheck.model.hedge.wins").register(meterRegistry);
+        this.fallbacks = Counter.builder("nutricheck.model.fallbacks").register(meterRegistry);
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        List<Backend> ranked = rank();
+        BlockingQueue<Attempt> outcomes = new LinkedBlockingQueue<>();
+        List<Future<?>> running = new ArrayList<>();
+
+        int next = 0;
+        int pending = 0;
+        boolean hedged = false;
+        boolean allRefused = true;
+        RuntimeException lastError = null;
+
+        running.add(start(ranked.get(next++), prompt, outcomes, false));
+        pending++;
+
+        try {
+            while (true) {
+                boolean canHedge = properties.getHedge().isEnabled() && !hedged && next < ranked.size();
+                Attempt attempt = canHedge
+                        ? outcomes.poll(hedgeDelayNanos(ranked.get(0)), TimeUnit.NANOSECONDS)
+                        : outcomes.take();
+
+                if (attempt == null) {
+                    // First backend is slower than usual: ask the next one too
+                    hedged = true;
+                    if (hedgeSlots.tryAcquire()) {
+                        hedges.increment();
+                        log.debug("Hedging model call: {} is slow, also asking {}",
+                                ranked.get(0).name(), ranked.get(next).name());
+                        running.add(start(ranked.get(next++), prompt, outcomes, true));
+                        pending++;
+                    }
+                    continue;
+                }
+
+                pending--;
+                if (attempt.response() != null) {
+                    if (attempt.hedge()) {
+                        hedgeWins.increment();
+                    }
+                    return attempt.response();
+                }
+
+                lastError = attempt.error();
+                allRefused &= lastError instanceof ModelUnavailableException;
+                if (next < ranked.size()) {
+                    fallbacks.increment();
+                    log.warn("Model backend {} failed ({}), falling back to {}",
+                            attempt.backend().name(), lastError.getMessage(), ranked.get(next).name());
+                    running.add(start(ranked.get(next++), prompt, outcomes, false));
+                    pending++;
+                } else if (pending == 0) {
+                    throw allRefused
+                            ? new ModelUnavailableException("All model backends are unavailable")
+                            : lastError;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the model", e);
+        } finally {
+            // Stop the losers; a cancelled call is not counted against its backend
+            running.forEach(future -> future.cancel(true));
+        }
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        return stream(rank(), 0, prompt);
+    }
+
+    private Flux<ChatResponse> stream(List<Backend> ranked, int index, Prompt prompt) {
+        Backend backend = ranked.get(index);
+        AtomicBoolean emitted = new AtomicBoolean();
+        long[] start = new long[1];
+
+        return Flux.defer(() -> {
+                    start[0] = System.nanoTime();
+                    return backend.model().stream(prompt);
+                })
+                .doOnNext(chunk -> emitted.set(true))
+                .doOnComplete(() -> backend.success(System.nanoTime() - start[0]))
+                .onErrorResume(error -> {
+                    if (!(error instanceof ModelUnavailableException)) {
+                        backend.failure(System.nanoTime() - start[0]);
+                    }
+                    if (emitted.get() || index + 1 >= ranked.size()) {
+                        return Flux.error(error);
+                    }
+                    fallbacks.increment();
+                    log.warn("Model backend {} failed to stream ({}), falling back to {}",
+                            backend.name(), error.getMessage(), ranked.get(index + 1).name());
+                    return stream(ranked, index + 1, prompt);
+                });
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return rank().get(0).model().getDefaultOptions();
+    }
+
+    /**
+     * Backends best first. Backends without enough samples keep their configured order, after the measured ones;
+     * backends with an open circuit come last.
+     */
+    List<Backend> rank() {
+        List<Backend> all = backends();
+        List<Backend> measured = new ArrayList<>();
+        List<Backend> cold = new ArrayList<>();
+        List<Backend> open = new ArrayList<>();
+        for (Backend backend : all) {
+            if (!backend.isAvailable()) {
+                open.add(backend);
+            } else {
+                (backend.stats().samples() >= properties.getMinSamples() ? measured : cold).add(backend);
+            }
+        }
+        measured.sort(Comparator.comparingDouble(this::score));
+        measured.addAll(cold);
+        measured.addAll(open);
+        return measured;
+    }
+
+    private double score(Backend backend) {
+        BackendStats stats = backend.stats();
+        long p50 = stats.percentileNanos(0.5);
+        long p99 = stats.percentileNanos(0.99);
+        if (p50 < 0) {
+            // Only failures in the window
+            return Double.MAX_VALUE;
+        }
+        return p50 * (1 + properties.getErrorPenalty() * stats.errorRate()) + properties.getP99Weight() * p99;
+    }
+
+    private long hedgeDelayNanos(Backend first) {
+        long minimum = properties.getHedge().getMinDelay().toNanos();
+        if (first.stats().samples() < properties.getMinSamples()) {
+            return Math.max(minimum, properties.getHedge().getInitialDelay().toNanos());
+        }
+        return Math.max(minimum, first.stats().percentileNanos(properties.getHedge().getPercentile()));
+    }
+
+    private Future<?> start(Backend backend, Prompt prompt, BlockingQueue<Attempt> outcomes, boolean hedge) {
+        return executor.submit(() -> {
+            long start = System.nanoTime();
+            try {
+                ChatResponse response = backend.model().call(prompt);
+                backend.success(System.nanoTime() - start);
+                outcomes.add(new Attempt(backend, response, null, hedge));
+            } catch (Throwable e) {
+                // Every attempt must post an outcome, or call() waits for it forever
+                RuntimeException error = e instanceof RuntimeException runtime
+                        ? runtime
+                        : new IllegalStateException("Model backend " + backend.name() + " failed: " + e, e);
+                if (!Thread.currentThread().isInterrupted() && !(e instanceof ModelUnavailableException)) {
+                    backend.failure(System.nanoTime() - start);
+                }
+                outcomes.add(new Attempt(backend, null, error, hedge));
+                if (e instanceof Error fatal) {
+                    throw fatal;
+                }
+            } finally {
+                if (hedge) {
+                    hedgeSlots.release();
+                }
+            }
+        });
+    }
+
+    private List<Backend> backends() {
+        List<Backend> resolved = backends;
+        if (resolved == null) {
+            synchronized (this) {
+                resolved = backends;
+                if (resolved == null) {
+                    resolved = resolveBackends();
+                    backends = resolved;
+                }
+            }
+        }
+        return resolved;
+    }
+
+    // Resolved on first use: the other ChatModel beans cannot be injected into the bean that replaces them
+    private List<Backend> resolveBackends() {
+        Map<String, ChatModel> models = new LinkedHashMap<>();
+        beanFactory.getBeansOfType(ChatModel.class).forEach((name, model) -> {
+            if (!(model instanceof RoutingChatModel)) {
+                models.put(name, model);
+            }
+        });
+
+        // Only the listed backends take traffic; a starter on the classpath does not opt its model in
+        List<String> order = new ArrayList<>();
+        if (properties.getBackends().isEmpty()) {
+            order.addAll(models.keySet());
+        } else {
+            properties.getBackends().stream().filter(models::containsKey).forEach(order::add);
+        }
+        if (order.isEmpty()) {
+            throw new IllegalStateException("None of the ChatModel backends " + properties.getBackends()
+                    + " is registered; found " + models.keySet());
+        }
+
+        List<Backend> resolved = new ArrayList<>();
+        for (String name : order) {
+            ChatModel model = resilience.isEnabled()
+                    ? new ProtectedChatModel(name, models.get(name), resilience, executor, meterRegistry)
+                    : models.get(name);
+            Backend backend = new Backend(name, model, new BackendStats(properties.getWindow()),
+                    Timer.builder("nutricheck.model.calls").tag("backend", name).tag("outcome", "success")
+                            .register(meterRegistry),
+                    Timer.builder("nutricheck.model.calls").tag("backend", name).tag("outcome", "failure")
+                            .register(meterRegistry));
+            Gauge.builder("nutricheck.model.error.rate", backend.stats(), BackendStats::errorRate)
+                    .tag("backend", name)
+                    .register(meterRegistry);
+            resolved.add(backend);
+        }
+        log.info("Model routing over backends: {}", order);
+        return List.copyOf(resolved);
+    }
+
+    record Backend(String name, ChatModel model, BackendStats stats, Timer successes, Timer failures) {
+
+        boolean isAvailable() {
+            return !(model instanceof ProtectedChatModel protectedModel) || protectedModel.isAvailable();
+        }
+
+        void success(long nanos) {
+            stats.recordSuccess(nanos);
+            successes.record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        void failure(long nanos) {
+            stats.recordFailure(nanos);
+            failures.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private record Attempt(Backend backend, ChatResponse response, RuntimeException error, boolean hedge) {
+    }
+}
@@ -0,0 +1,129 @@
+package com.nutricheck.bulk;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * RFC 4180 CSV with a header row: an "ingredients" column (quote it, it holds commas), optionally
+ * "product_name" and "category". Blank lines are skipped.
+ */
+class CsvImportReader implements ImportReader {
+
+    private static final Set<String> NAME_COLUMNS = Set.of("product_name", "productname", "product", "name");
+    private static final Set<String> INGREDIENT_COLUMNS = Set.of("ingredients", "ingredient_list");
+    private static final Set<String> CATEGORY_COLUMNS = Set.of("category", "product_category", "productcategory");
+
+    private final BufferedReader reader;
+    private final int nameColumn;
+    private final int ingredientsColumn;
+    private final int categoryColumn;
+    private long index;
+    private long line = 1;
+
+    CsvImportReader(Path file) throws IOException {
+        this.reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        try {
+            List<String> header = readRecord();
+            if (header == null) {
+                throw new IllegalArgumentException("CSV file is empty");
+            }
+            // Spreadsheet exports often start with a byte order mark
+            header.set(0, header.get(0).replace("\uFEFF", ""));
+            this.nameColumn = column(header, NAME_COLUMNS);
+            this.ingredientsColumn = column(header, INGREDIENT_COLUMNS);
+            this.categoryColumn = column(header, CATEGORY_COLUMNS);
+            if (ingredientsColumn < 0) {
+                throw new IllegalArgumentException("CSV header must have an 'ingredients' column");
+            }
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public ImportItem next() throws IOException {
+        List<String> record;
+        while ((record = readRecord()) != null) {
+            if (record.size() == 1 && record.get(0).isBlank()) {
+                continue;
+            }
+            return new ImportItem(index++, field(record, nameColumn), field(record, ingredientsColumn),
+                    field(record, categoryColumn), null, 0);
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private List<String> readRecord() throws IOException {
+        int c = reader.read();
+        if (c == -1) {
+            return null;
+        }
+        long startLine = line;
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IllegalArgumentException("Unterminated quoted field starting on CSV line " + startLine);
+                }
+                if (c == '"') {
+                    int next = reader.read();
+                    if (next != '"') {
+                        // Closing quote; the character after it is handled as unquoted input
+                        quoted = false;
+                        c = next;
+                        continue;
+                    }
+                }
+                if (c == '\n') {
+                    line++;
+                }
+                field.append((char) c);
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n' || c == -1) {
+                line++;
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+            c = reader.read();
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static int column(List<String> header, Set<String> names) {
+        for (int i = 0; i < header.size(); i++) {
+            if (names.contains(header.get(i).trim().toLowerCase(Locale.ROOT))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String field(List<String> record, int column) {
+        if (column < 0 || column >= record.size()) {
+            return null;
+        }
+        String value = record.get(column).trim();
+        return value.isEmpty() ? null : value;
+    }
+}
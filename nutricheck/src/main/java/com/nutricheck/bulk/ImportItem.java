@@ -0,0 +1,14 @@
+package com.nutricheck.bulk;
+
+/**
+ * One product of a bulk import, numbered from 0 in file order.
+ * Rows of CSV/NDJSON files carry the ingredient text (productName and category may be null);
+ * ZIP entries carry the image entry name and its uncompressed size.
+ */
+public record ImportItem(long index, String productName, String ingredients, String category,
+                         String imageName, long imageSize) {
+
+    public boolean isImage() {
+        return imageName != null;
+    }
+}
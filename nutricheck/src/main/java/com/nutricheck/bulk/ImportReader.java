@@ -0,0 +1,65 @@
+package com.nutricheck.bulk;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nutricheck.dto.enums.ImportFormat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the items of an import file in order.
+ * Malformed input is reported as IllegalArgumentException, so it can be rejected when the file is first counted.
+ */
+public interface ImportReader extends AutoCloseable {
+
+    static ImportReader open(Path file, ImportFormat format, ObjectMapper objectMapper) throws IOException {
+        return switch (format) {
+            case CSV -> new CsvImportReader(file);
+            case NDJSON -> new NdjsonImportReader(file, objectMapper);
+            case ZIP -> new ZipImportReader(file);
+        };
+    }
+
+    /**
+     * The next item, or null at the end of the file
+     */
+    ImportItem next() throws IOException;
+
+    /**
+     * Open the image of a ZIP item; safe to call from several threads
+     *
+     * @throws IllegalStateException when the item has no image (every CSV and NDJSON row)
+     */
+    default InputStream openImage(ImportItem item) throws IOException {
+        throw new IllegalStateException("Item has no image");
+    }
+
+    /**
+     * Up to max items; empty at the end of the file
+     */
+    default List<ImportItem> next(int max) throws IOException {
+        List<ImportItem> items = new ArrayList<>(max);
+        ImportItem item;
+        while (items.size() < max && (item = next()) != null) {
+            items.add(item);
+        }
+        return items;
+    }
+
+    /**
+     * Skip the first items (already imported); returns how many were actually skipped
+     */
+    default long skip(long count) throws IOException {
+        long skipped = 0;
+        while (skipped < count && next() != null) {
+            skipped++;
+        }
+        return skipped;
+    }
+
+    @Override
+    void close() throws IOException;
+}
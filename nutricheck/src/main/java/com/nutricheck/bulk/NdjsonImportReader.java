@@ -0,0 +1,75 @@
+package com.nutricheck.bulk;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One JSON object per line, shaped like the /api/scan/ingredients body:
+ * "ingredients" (a string or an array of names), optionally "productName" and "productCategory".
+ */
+class NdjsonImportReader implements ImportReader {
+
+    private final BufferedReader reader;
+    private final ObjectMapper objectMapper;
+    private long index;
+    private long line;
+
+    NdjsonImportReader(Path file, ObjectMapper objectMapper) throws IOException {
+        this.reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public ImportItem next() throws IOException {
+        String text;
+        while ((text = reader.readLine()) != null) {
+            line++;
+            if (text.isBlank()) {
+                continue;
+            }
+            JsonNode node;
+            try {
+                node = objectMapper.readTree(text);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Line " + line + " is not valid JSON: " + e.getOriginalMessage());
+            }
+            if (!node.isObject()) {
+                throw new IllegalArgumentException("Line " + line + " is not a JSON object");
+            }
+            return new ImportItem(index++, text(node, "productName", "name"), ingredients(node.get("ingredients")),
+                    text(node, "productCategory", "category"), null, 0);
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private static String ingredients(JsonNode node) {
+        if (node == null || node.isNull()) {
+            return null;
+        }
+        if (!node.isArray()) {
+            return node.asText();
+        }
+        List<String> names = new ArrayList<>();
+        node.forEach(name -> names.add(name.asText()));
+        return String.join(", ", names);
+    }
+
+    private static String text(JsonNode node, String field, String alternative) {
+        JsonNode value = node.hasNonNull(field) ? node.get(field) : node.get(alternative);
+        return value == null || value.isNull() || value.asText().isBlank() ? null : value.asText().trim();
+    }
+}
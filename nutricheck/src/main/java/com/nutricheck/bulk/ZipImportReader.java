@@ -0,0 +1,74 @@
+package com.nutricheck.bulk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * Label images in a ZIP archive, in archive order; the product name is the file name without extension.
+ * Directories, hidden files and macOS resource forks are skipped; the image format itself is checked when staged.
+ */
+class ZipImportReader implements ImportReader {
+
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of("jpg", "jpeg", "png", "webp", "heic", "heif");
+
+    private final ZipFile zip;
+    private final Iterator<? extends ZipEntry> entries;
+    private long index;
+
+    ZipImportReader(Path file) throws IOException {
+        try {
+            this.zip = new ZipFile(file.toFile());
+        } catch (ZipException e) {
+            throw new IllegalArgumentException("Not a readable ZIP archive: " + e.getMessage());
+        }
+        this.entries = zip.stream().filter(ZipImportReader::isImage).iterator();
+    }
+
+    // The size is the one recorded in the archive (-1 when missing); staging stops reading past it
+    @Override
+    public ImportItem next() {
+        if (!entries.hasNext()) {
+            return null;
+        }
+        ZipEntry entry = entries.next();
+        return new ImportItem(index++, baseName(entry.getName()), null, null, entry.getName(), entry.getSize());
+    }
+
+    // ZipFile hands out independent streams, so chunk items can be staged in parallel
+    @Override
+    public InputStream openImage(ImportItem item) throws IOException {
+        if (!item.isImage()) {
+            throw new IllegalStateException("Item has no image");
+        }
+        ZipEntry entry = zip.getEntry(item.imageName());
+        if (entry == null) {
+            throw new IOException("Entry " + item.imageName() + " disappeared from the archive");
+        }
+        return zip.getInputStream(entry);
+    }
+
+    @Override
+    public void close() throws IOException {
+        zip.close();
+    }
+
+    private static boolean isImage(ZipEntry entry) {
+        String name = entry.getName();
+        String file = name.substring(name.lastIndexOf('/') + 1);
+        int dot = file.lastIndexOf('.');
+        return !entry.isDirectory() && !name.startsWith("__MACOSX/") && !file.startsWith(".") && dot > 0
+                && IMAGE_EXTENSIONS.contains(file.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private static String baseName(String name) {
+        String file = name.substring(name.lastIndexOf('/') + 1);
+        return file.substring(0, file.lastIndexOf('.'));
+    }
+}
@@ -0,0 +1,153 @@
+package com.nutricheck.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nutricheck.config.AnalysisCacheProperties;
+import com.nutricheck.dto.AiAnalysisResponse;
+import com.nutricheck.dto.enums.ProductCategory;
+import com.nutricheck.entity.AnalysisCacheEntry;
+import com.nutricheck.repository.AnalysisCacheEntryRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.function.Supplier;
+
+/**
+ * Content-addressed cache for image analyses.
+ * Tier 1 is a bounded in-memory Caffeine cache, tier 2 the optional analysis_cache table.
+ * Hit/miss/eviction counters are published to the MeterRegistry (see /actuator/metrics).
+ */
+@Slf4j
+@Component
+public class AnalysisCache {
+
+    private static final String CACHE_NAME = "nutricheck.analysis.image";
+
+    private final Cache<String, AiAnalysisResponse> memory;
+    private final AnalysisCacheEntryRepository repository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate persistentTx;
+    private final AnalysisCacheProperties.Image settings;
+
+    private final Counter persistentHits;
+    private final Counter persistentMisses;
+
+    public AnalysisCache(AnalysisCacheProperties properties,
+                         AnalysisCacheEntryRepository repository,
+                         ObjectMapper objectMapper,
+                         PlatformTransactionManager transactionManager,
+                         MeterRegistry meterRegistry) {
+        this.settings = properties.getImage();
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+
+        this.memory = Caffeine.newBuilder()
+                .maximumSize(settings.getMaxEntries())
+                .expireAfterWrite(settings.getTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, memory, CACHE_NAME);
+
+        // Cache reads/writes must never poison the caller's transaction
+        this.persistentTx = new TransactionTemplate(transactionManager);
+        this.persistentTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        this.persistentHits = Counter.builder("nutricheck.analysis.image.persistent")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.persistentMisses = Counter.builder("nutricheck.analysis.image.persistent")
+                .tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Cache key for an uploaded image: SHA-256 of the raw upload (computed while staging it) plus the product category
+     */
+    public static String imageKey(String sha256Hex, ProductCategory category) {
+        return "img:" + category.name() + ":" + sha256Hex;
+    }
+
+    /**
+     * Return the cached analysis for the key, or run the loader and cache its result
+     */
+    public AiAnalysisResponse getOrCompute(String key, Supplier<AiAnalysisResponse> loader) {
+        AiAnalysisResponse cached = getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        AiAnalysisResponse computed = loader.get();
+        put(key, computed);
+        return computed;
+    }
+
+    /**
+     * Cached analysis from memory or the database tier, or null
+     */
+    public AiAnalysisResponse getIfPresent(String key) {
+        AiAnalysisResponse cached = memory.getIfPresent(key);
+        if (cached != null) {
+            log.debug("Analysis cache hit (memory): {}", key);
+            return cached;
+        }
+
+        if (settings.isPersistent()) {
+            AiAnalysisResponse stored = readPersistent(key);
+            if (stored != null) {
+                log.debug("Analysis cache hit (database): {}", key);
+                memory.put(key, stored);
+                return stored;
+            }
+        }
+        return null;
+    }
+
+    public void put(String key, AiAnalysisResponse response) {
+        memory.put(key, response);
+        if (settings.isPersistent()) {
+            writePersistent(key, response);
+        }
+    }
+
+    private AiAnalysisResponse readPersistent(String key) {
+        try {
+            AnalysisCacheEntry entry = persistentTx.execute(status -> repository.findById(key).orElse(null));
+            if (entry == null) {
+                persistentMisses.increment();
+                return null;
+            }
+            if (entry.getCreatedAt() != null
+                    && entry.getCreatedAt().plus(settings.getPersistentTtl()).isBefore(LocalDateTime.now())) {
+                persistentMisses.increment();
+                persistentTx.executeWithoutResult(status -> repository.deleteById(key));
+                return null;
+            }
+            persistentHits.increment();
+            return objectMapper.readValue(entry.getPayload(), AiAnalysisResponse.class);
+        } catch (Exception e) {
+            log.warn("Failed to read persistent analysis cache entry: {}", key, e);
+            return null;
+        }
+    }
+
+    private void writePersistent(String key, AiAnalysisResponse response) {
+        try {
+            AnalysisCacheEntry entry = AnalysisCacheEntry.builder()
+                    .cacheKey(key)
+                    .payload(objectMapper.writeValueAsString(response))
+                    .createdAt(LocalDateTime.now())
+                    .build();
+            persistentTx.executeWithoutResult(status -> repository.save(entry));
+        } catch (Exception e) {
+            log.warn("Failed to write persistent analysis cache entry: {}", key, e);
+        }
+    }
+}
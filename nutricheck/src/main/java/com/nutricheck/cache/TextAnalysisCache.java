@@ -0,0 +1,70 @@
+package com.nutricheck.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nutricheck.config.AnalysisCacheProperties;
+import com.nutricheck.dto.AiAnalysisResponse;
+import com.nutricheck.dto.IngredientAnalysis;
+import com.nutricheck.dto.enums.ProductCategory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import java.util.SortedSet;
+
+/**
+ * Caches for text analyses.
+ * Whole responses are keyed by the canonical ingredient set; single verdicts by normalized ingredient name,
+ * so near-duplicate lists only send their unknown ingredients to the model.
+ */
+@Component
+public class TextAnalysisCache {
+
+    private final Cache<String, AiAnalysisResponse> lists;
+    private final Cache<String, IngredientAnalysis> verdicts;
+
+    public TextAnalysisCache(AnalysisCacheProperties properties, MeterRegistry meterRegistry) {
+        AnalysisCacheProperties.Text settings = properties.getText();
+
+        this.lists = Caffeine.newBuilder()
+                .maximumSize(settings.getMaxEntries())
+                .expireAfterWrite(settings.getTtl())
+                .recordStats()
+                .build();
+        this.verdicts = Caffeine.newBuilder()
+                .maximumSize(settings.getMaxVerdicts())
+                .expireAfterWrite(settings.getVerdictTtl())
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, lists, "nutricheck.analysis.text");
+        CaffeineCacheMetrics.monitor(meterRegistry, verdicts, "nutricheck.analysis.verdict");
+    }
+
+    public static String listKey(SortedSet<String> canonicalIngredients, ProductCategory category) {
+        return "txt:" + category.name() + ":" + String.join("|", canonicalIngredients);
+    }
+
+    public AiAnalysisResponse getList(String key) {
+        return lists.getIfPresent(key);
+    }
+
+    public void putList(String key, AiAnalysisResponse response) {
+        lists.put(key, response);
+    }
+
+    /**
+     * @param ingredient normalized ingredient name (see IngredientNormalizer)
+     */
+    public IngredientAnalysis getVerdict(String ingredient, ProductCategory category) {
+        return verdicts.getIfPresent(verdictKey(ingredient, category));
+    }
+
+    public void putVerdict(String ingredient, ProductCategory category, IngredientAnalysis analysis) {
+        verdicts.put(verdictKey(ingredient, category), analysis);
+    }
+
+    private static String verdictKey(String ingredient, ProductCategory category) {
+        return category.name() + ":" + ingredient;
+    }
+}
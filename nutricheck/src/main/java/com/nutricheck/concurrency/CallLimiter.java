@@ -0,0 +1,81 @@
+package com.nutricheck.concurrency;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Fair semaphore guarding a downstream resource (model API, connection pool).
+ * With virtual threads the number of callers is effectively unbounded, so this is what keeps
+ * the downstream from being overloaded.
+ */
+public class CallLimiter {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final Semaphore permits;
+    private final Duration acquireTimeout;
+
+    public CallLimiter(String name, int maxConcurrent, Duration acquireTimeout) {
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    public <T> T call(Supplier<T> call) {
+        acquire();
+        try {
+            return call.get();
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Wait for a permit, up to the acquire timeout
+     */
+    public void acquire() {
+        try {
+            if (!permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new RuntimeException("Timed out waiting for a " + name + " slot after " + acquireTimeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a " + name + " slot", e);
+        }
+    }
+
+    /**
+     * Wait for a permit up to the given time; false when none became free
+     */
+    public boolean tryAcquire(Duration wait) {
+        try {
+            return permits.tryAcquire(wait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+
+    public int queueLength() {
+        return permits.getQueueLength();
+    }
+}
@@ -0,0 +1,128 @@
+package com.nutricheck.concurrency;
+
+import java.time.Duration;
+
+/**
+ * Count-based circuit breaker.
+ * Opens when the failure rate over the last N calls reaches the threshold, rejects calls while open,
+ * then lets a few trial calls through (half-open) and closes again only if they all succeed.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final double failureRateThreshold;
+    private final int minimumCalls;
+    private final long openNanos;
+    private final int halfOpenCalls;
+
+    private final boolean[] outcomes;
+    private int next;
+    private int count;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    public CircuitBreaker(double failureRateThreshold, int window, int minimumCalls,
+                          Duration openDuration, int halfOpenCalls) {
+        this.failureRateThreshold = failureRateThreshold;
+        this.outcomes = new boolean[window];
+        this.minimumCalls = Math.min(minimumCalls, window);
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+    }
+
+    /**
+     * Whether a call may go ahead; a permitted call must be followed by onSuccess, onFailure or onIgnored
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            halfOpenPermits = 0;
+            halfOpenSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenPermits >= halfOpenCalls) {
+                return false;
+            }
+            halfOpenPermits++;
+        }
+        return true;
+    }
+
+    /**
+     * Whether calls are currently let through, without taking a half-open trial slot
+     */
+    public synchronized boolean isCallPermitted() {
+        return state != State.OPEN || System.nanoTime() - openedAt >= openNanos;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            halfOpenSuccesses++;
+            if (halfOpenSuccesses >= halfOpenCalls) {
+                reset(State.CLOSED);
+            }
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        record(true);
+        if (count >= minimumCalls && (double) failures / count >= failureRateThreshold) {
+            open();
+        }
+    }
+
+    /**
+     * The permitted call was not made (or its outcome says nothing about the provider)
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN && halfOpenPermits > 0) {
+            halfOpenPermits--;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void record(boolean failed) {
+        if (count == outcomes.length && outcomes[next]) {
+            failures--;
+        }
+        outcomes[next] = failed;
+        if (failed) {
+            failures++;
+        }
+        next = (next + 1) % outcomes.length;
+        count = Math.min(count + 1, outcomes.length);
+    }
+
+    private void open() {
+        reset(State.OPEN);
+        openedAt = System.nanoTime();
+    }
+
+    private void reset(State newState) {
+        state = newState;
+        next = 0;
+        count = 0;
+        failures = 0;
+        halfOpenPermits = 0;
+        halfOpenSuccesses = 0;
+    }
+}
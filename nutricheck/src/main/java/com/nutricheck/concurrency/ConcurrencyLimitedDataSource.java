@@ -0,0 +1,86 @@
+package com.nutricheck.concurrency;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DataSource that takes a CallLimiter permit per borrowed connection and gives it back on close().
+ * Callers queue on the fair semaphore instead of timing out inside the Hikari pool.
+ * <p>
+ * A thread that already holds a connection gets its next one without a permit: that is Hibernate fetching
+ * an ID block on a second connection while the transaction keeps its own. Waiting for a permit there would
+ * deadlock once every permit is held by such a transaction, so the limit must stay below the pool size and
+ * the remaining connections serve these short nested borrows.
+ */
+public class ConcurrencyLimitedDataSource extends DelegatingDataSource {
+
+    private final CallLimiter limiter;
+    // Connections the current thread has borrowed and not yet closed
+    private final ThreadLocal<AtomicInteger> open = ThreadLocal.withInitial(AtomicInteger::new);
+
+    public ConcurrencyLimitedDataSource(DataSource target, CallLimiter limiter) {
+        super(target);
+        this.limiter = limiter;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return borrow(() -> obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return borrow(() -> obtainTargetDataSource().getConnection(username, password));
+    }
+
+    private Connection borrow(ConnectionSupplier target) throws SQLException {
+        AtomicInteger held = open.get();
+        boolean permit = held.get() == 0;
+        if (permit) {
+            limiter.acquire();
+        }
+        try {
+            Connection connection = target.get();
+            held.incrementAndGet();
+            return releasing(connection, held, permit);
+        } catch (SQLException | RuntimeException e) {
+            if (permit) {
+                limiter.release();
+            }
+            throw e;
+        }
+    }
+
+    private Connection releasing(Connection connection, AtomicInteger held, boolean permit) {
+        AtomicBoolean released = new AtomicBoolean(false);
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    } finally {
+                        if ("close".equals(method.getName()) && released.compareAndSet(false, true)) {
+                            held.decrementAndGet();
+                            if (permit) {
+                                limiter.release();
+                            }
+                        }
+                    }
+                });
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSupplier {
+        Connection get() throws SQLException;
+    }
+}
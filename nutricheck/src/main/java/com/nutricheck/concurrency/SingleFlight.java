@@ -0,0 +1,111 @@
+package com.nutricheck.concurrency;
+
+import com.nutricheck.ai.ModelUnavailableException;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls with the same key: the first caller (leader) runs the call,
+ * callers arriving while it is in flight (followers) wait for and share its result or exception.
+ * Nothing is remembered after the call finishes; caching is the caller's job.
+ * If the leader is interrupted, its followers are not failed with it: they retry, and one of them takes over.
+ * Followers wait at most followerTimeout, which should cover everything the leader may do (retries, fallbacks);
+ * a leader stuck past it no longer holds them, they fail with ModelUnavailableException while the leader carries on.
+ */
+public class SingleFlight<T> {
+
+    private final String name;
+    private final Duration followerTimeout;
+    private final Map<String, CompletableFuture<T>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder leaders = new LongAdder();
+    private final LongAdder followers = new LongAdder();
+    private final LongAdder followerTimeouts = new LongAdder();
+
+    public SingleFlight(String name, Duration followerTimeout) {
+        this.name = name;
+        this.followerTimeout = followerTimeout;
+    }
+
+    public T execute(String key, Supplier<T> call) {
+        while (true) {
+            CompletableFuture<T> flight = new CompletableFuture<>();
+            CompletableFuture<T> existing = inFlight.putIfAbsent(key, flight);
+            if (existing == null) {
+                leaders.increment();
+                return lead(key, flight, call);
+            }
+
+            followers.increment();
+            try {
+                return existing.get(followerTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                followerTimeouts.increment();
+                throw new ModelUnavailableException("In-flight " + name + " call did not finish within "
+                        + followerTimeout.toMillis() + " ms");
+            } catch (CancellationException e) {
+                // Leader gave up (interrupted); try again, possibly as the new leader
+            } catch (ExecutionException e) {
+                throw rethrow(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for in-flight " + name + " call", e);
+            }
+        }
+    }
+
+    private T lead(String key, CompletableFuture<T> flight, Supplier<T> call) {
+        try {
+            T result = call.get();
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            if (Thread.currentThread().isInterrupted()) {
+                flight.cancel(false);
+            } else {
+                flight.completeExceptionally(e);
+            }
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return new RuntimeException(cause);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    public long leaderCount() {
+        return leaders.sum();
+    }
+
+    public long followerCount() {
+        return followers.sum();
+    }
+
+    public long followerTimeoutCount() {
+        return followerTimeouts.sum();
+    }
+}
@@ -0,0 +1,41 @@
+package com.nutricheck.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Settings for the AI analysis caches (nutricheck.cache.*)
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "nutricheck.cache")
+public class AnalysisCacheProperties {
+
+    private final Image image = new Image();
+    private final Text text = new Text();
+
+    @Data
+    public static class Image {
+        // In-memory tier
+        private long maxEntries = 10_000;
+        private Duration ttl = Duration.ofHours(24);
+
+        // Optional database tier (analysis_cache table)
+        private boolean persistent = false;
+        private Duration persistentTtl = Duration.ofDays(30);
+    }
+
+    @Data
+    public static class Text {
+        // Whole-list cache, keyed by the canonical ingredient set
+        private long maxEntries = 10_000;
+        private Duration ttl = Duration.ofHours(24);
+
+        // Per-ingredient verdicts used to assemble responses for near-duplicate lists
+        private long maxVerdicts = 50_000;
+        private Duration verdictTtl = Duration.ofDays(7);
+    }
+}
@@ -0,0 +1,72 @@
+package com.nutricheck.config;
+
+import org.springframework.boot.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.support.ContextPropagatingTaskDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class AsyncConfig {
+
+    /**
+     * Bounded pool for asynchronous image scans.
+     * The queue is capped so excess submissions are rejected instead of piling up in memory.
+     * On virtual threads the workers are cheap, so the pool is sized for many in-flight scans and
+     * the model/database semaphores in ConcurrencyConfig do the limiting.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor scanJobExecutor(ScanJobProperties properties,
+                                                  ConcurrencyProperties concurrency,
+                                                  Environment environment) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        if (Threading.VIRTUAL.isActive(environment)) {
+            executor.setVirtualThreads(true);
+            executor.setCorePoolSize(concurrency.getVirtualScanJobs());
+            executor.setMaxPoolSize(concurrency.getVirtualScanJobs());
+            executor.setAllowCoreThreadTimeOut(true);
+        } else {
+            executor.setCorePoolSize(properties.getCorePoolSize());
+            executor.setMaxPoolSize(properties.getMaxPoolSize());
+        }
+        executor.setQueueCapacity(properties.getQueueCapacity());
+        executor.setThreadNamePrefix("scan-job-");
+        // Jobs continue the submitting request's trace
+        executor.setTaskDecorator(new ContextPropagatingTaskDecorator());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    /**
+     * Runs bulk imports, one thread per import; imports beyond the queue are rejected.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor bulkImportExecutor(BulkImportProperties properties) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(properties.getMaxConcurrentJobs());
+        executor.setMaxPoolSize(properties.getMaxConcurrentJobs());
+        executor.setQueueCapacity(properties.getQueueCapacity());
+        executor.setThreadNamePrefix("bulk-import-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    /**
+     * Analyzes the items of bulk imports, shared by all running imports so their total parallelism stays bounded.
+     * The queue needs no cap: each import waits for its chunk before reading the next one.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor bulkItemExecutor(BulkImportProperties properties) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(properties.getParallelism());
+        executor.setMaxPoolSize(properties.getParallelism());
+        executor.setThreadNamePrefix("bulk-item-");
+        executor.setTaskDecorator(new ContextPropagatingTaskDecorator());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
@@ -0,0 +1,29 @@
+package com.nutricheck.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Settings for micro-batching text analyses into one model call (nutricheck.batching.*)
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "nutricheck.batching")
+public class BatchingProperties {
+
+    private boolean enabled = false;
+
+    // A batch is sent when it has this many products or its first product has waited maxWait
+    private int maxBatchSize = 8;
+    private Duration maxWait = Duration.ofMillis(20);
+
+    // Upper bound on ingredients per batch, so one prompt cannot grow past the model's output limit
+    private int maxIngredients = 120;
+
+    // How long a caller waits for its batch (queueing plus the model call, see nutricheck.resilience.timeout)
+    // before answering as if the model were unavailable
+    private Duration timeout = Duration.ofSeconds(90);
+}
@@ -0,0 +1,39 @@
+package com.nutricheck.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Settings for bulk scan imports (nutricheck.imports.*)
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "nutricheck.imports")
+public class BulkImportProperties {
+
+    // Where import files are kept until their job completes; empty means java.io.tmpdir
+    private String dir = "";
+
+    // Largest accepted import file, and largest image inside a ZIP
+    private DataSize maxBytes = DataSize.ofGigabytes(1);
+    private DataSize maxImageBytes = DataSize.ofMegabytes(20);
+
+    // Items analyzed before their scans are written (and progress is saved) in one transaction
+    private int chunkSize = 100;
+
+    // Items analyzed at once, across all running imports
+    private int parallelism = 4;
+
+    // Imports running at once; further submissions wait in a queue of queueCapacity, then get a 503
+    private int maxConcurrentJobs = 2;
+    private int queueCapacity = 20;
+
+    // Interrupted imports are picked up again at startup; paused ones (model unavailable, upload budget full)
+    // are retried every resumeInterval
+    private boolean resumeOnStartup = true;
+    private Duration resumeInterval = Duration.ofMinutes(5);
+}
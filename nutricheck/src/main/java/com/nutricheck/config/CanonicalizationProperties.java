@@ -0,0 +1,41 @@
+package com.nutricheck.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Settings for the ingredient canonicalization job (nutricheck.canonicalization.*)
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "nutricheck.canonicalization")
+public class CanonicalizationProperties {
+
+    // Scheduled incremental runs; "-" disables them (runs can still be started through the API)
+    private String cron = "-";
+
+    // Ingredient names read per query while loading the table
+    private int pageSize = 5000;
+
+    // MinHash/LSH banding: bands * rows values per name; more bands catch less similar pairs at more comparisons
+    private int bands = 16;
+    private int rows = 4;
+
+    // Two different names are grouped when their edit-distance similarity reaches this (and word counts and
+    // numbers match); names shorter than minLength only on an exact canonical match
+    private double minSimilarity = 0.85;
+    private int minLength = 5;
+
+    // Larger groups are skipped and logged for review
+    private int maxClusterSize = 20;
+
+    // scan_results rows repointed per UPDATE statement, each committed on its own to keep locks short
+    private int repointBatchSize = 500;
+
+    // Merged rows are deleted after this long; must exceed nutricheck.ingredient-index.refresh-interval so no
+    // instance still hands out their IDs
+    private Duration purgeAfter = Duration.ofHours(1);
+}
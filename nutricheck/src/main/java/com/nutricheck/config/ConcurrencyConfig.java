@@ -0,0 +1,115 @@
+package com.nutricheck.config;
+
+import com.nutricheck.concurrency.CallLimiter;
+import com.nutricheck.concurrency.ConcurrencyLimitedDataSource;
+import com.nutricheck.concurrency.SingleFlight;
+import com.nutricheck.dto.AiAnalysisResponse;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Semaphores around the model API and the connection pool, and request coalescing for analyses.
+ * The database cap is only applied on virtual threads (spring.threads.virtual.enabled=true, Java 21+);
+ * on platform threads the servlet pool already bounds it.
+ */
+@Slf4j
+@Configuration
+public class ConcurrencyConfig {
+
+    @Bean
+    public CallLimiter modelCallLimiter(ConcurrencyProperties properties, MeterRegistry meterRegistry) {
+        CallLimiter limiter = new CallLimiter("model call", properties.getMaxModelCalls(), properties.getAcquireTimeout());
+        registerGauges(limiter, "model", meterRegistry);
+        return limiter;
+    }
+
+    /**
+     * Shared by image and text analyses; their keys are already namespaced ("img:", "txt:").
+     * Followers wait as long as the leader may legitimately take (nutricheck.singleflight.follower-timeout)
+     */
+    @Bean
+    public SingleFlight<AiAnalysisResponse> analysisSingleFlight(SingleFlightProperties properties,
+                                                                ConcurrencyProperties concurrency,
+                                                                ResilienceProperties resilience,
+                                                                ModelRoutingProperties routing,
+                                                                OcrProperties ocr,
+                                                                MeterRegistry meterRegistry) {
+        Duration followerTimeout = properties.getFollowerTimeout() != null
+                ? properties.getFollowerTimeout()
+                : leaderBudget(concurrency, resilience, routing, ocr);
+        log.info("Analysis single-flight followers wait up to {} s", followerTimeout.toSeconds());
+        SingleFlight<AiAnalysisResponse> singleFlight = new SingleFlight<>("analysis", followerTimeout);
+        FunctionCounter.builder("nutricheck.singleflight.calls", singleFlight, SingleFlight::leaderCount)
+                .tag("role", "leader")
+                .register(meterRegistry);
+        FunctionCounter.builder("nutricheck.singleflight.calls", singleFlight, SingleFlight::followerCount)
+                .tag("role", "follower")
+                .register(meterRegistry);
+        FunctionCounter.builder("nutricheck.singleflight.timeouts", singleFlight, SingleFlight::followerTimeoutCount)
+                .register(meterRegistry);
+        Gauge.builder("nutricheck.singleflight.in-flight", singleFlight, SingleFlight::inFlight)
+                .register(meterRegistry);
+        return singleFlight;
+    }
+
+    // OCR, a model call slot, then the protected call on every backend in turn (fallbacks run one after another)
+    private static Duration leaderBudget(ConcurrencyProperties concurrency, ResilienceProperties resilience,
+                                         ModelRoutingProperties routing, OcrProperties ocr) {
+        int backends = Math.max(1, routing.getBackends().size());
+        Duration perBackend = resilience.isEnabled() ? resilience.callBudget() : resilience.getTimeout();
+        return ocr.getTimeout()
+                .plus(concurrency.getAcquireTimeout())
+                .plus(perBackend.multipliedBy(backends));
+    }
+
+    @Bean
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public static BeanPostProcessor databaseCallLimiter(ObjectProvider<ConcurrencyProperties> properties,
+                                                        ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+                if (!(bean instanceof DataSource dataSource) || bean instanceof ConcurrencyLimitedDataSource) {
+                    return bean;
+                }
+                ConcurrencyProperties settings = properties.getObject();
+                if (dataSource instanceof HikariDataSource pool
+                        && settings.getMaxDatabaseConnections() >= pool.getMaximumPoolSize()) {
+                    // Transactions holding every pooled connection would wait forever for their ID blocks
+                    throw new IllegalStateException("nutricheck.concurrency.max-database-connections ("
+                            + settings.getMaxDatabaseConnections() + ") must be below the connection pool size ("
+                            + pool.getMaximumPoolSize() + ")");
+                }
+                CallLimiter limiter = new CallLimiter("database connection",
+                        settings.getMaxDatabaseConnections(), settings.getAcquireTimeout());
+                registerGauges(limiter, "database", meterRegistry.getObject());
+
+                log.info("Virtual threads enabled - limiting DataSource '{}' to {} concurrent connections",
+                        beanName, settings.getMaxDatabaseConnections());
+                return new ConcurrencyLimitedDataSource(dataSource, limiter);
+            }
+        };
+    }
+
+    private static void registerGauges(CallLimiter limiter, String resource, MeterRegistry meterRegistry) {
+        Gauge.builder("nutricheck.concurrency.available", limiter, CallLimiter::availablePermits)
+                .tag("resource", resource)
+                .register(meterRegistry);
+        Gauge.builder("nutricheck.concurrency.waiting", limiter, CallLimiter::queueLength)
+                .tag("resource", resource)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,29 @@
+package com.nutricheck.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Concurrency caps for blocking downstream calls (nutricheck.concurrency.*)
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "nutricheck.concurrency")
+public class ConcurrencyProperties {
+
+    // Concurrent ChatModel calls
+    private int maxModelCalls = 32;
+
+    // Concurrent JDBC connections when running on virtual threads; must stay below the Hikari pool size,
+    // whose remaining connections serve the ID blocks Hibernate fetches beside an open transaction
+    private int maxDatabaseConnections = 8;
+
+    // How long a caller waits for a slot before failing
+    private Duration acquireTimeout = Duration.ofSeconds(30);
+
+    // Scan job workers when running on virtual threads (replaces the platform pool sizes)
+    private int virtualScanJobs = 1_000;
+}
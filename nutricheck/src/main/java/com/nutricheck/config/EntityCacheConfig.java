@@ -0,0 +1,82 @@
+package com.nutricheck.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import com.nutricheck.entity.Ingredient;
+import com.nutricheck.entity.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Hibernate second-level cache on Caffeine (through JCache) for the read-mostly entities, Ingredient and User.
+ * It serves lookups by ID; queries (the name lookups included) always run their SQL.
+ * Every region is created here with a size bound and TTL; Hibernate fails on startup if it asks for one that is not.
+ * The cache only covers reads through JPA: IngredientIndex keeps its own detached copies of the ingredient rows,
+ * which are not invalidated by cache updates and only change with the index's refresh or its after-commit adds.
+ */
+@Slf4j
+@Configuration
+public class EntityCacheConfig {
+
+    // A manager of its own per application context: the provider's default one is shared by every context in the
+    // JVM (tests), and closing it with one context would close the regions of the others
+    @Bean(destroyMethod = "close")
+    public CacheManager entityCacheManager(EntityCacheProperties properties, MeterRegistry meterRegistry) {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(
+                URI.create("nutricheck:entity-cache:" + UUID.randomUUID()), getClass().getClassLoader());
+        if (!properties.isEnabled()) {
+            return cacheManager;
+        }
+
+        monitor(createRegion(cacheManager, Ingredient.class.getName(), properties.getIngredients()), meterRegistry);
+        monitor(createRegion(cacheManager, User.class.getName(), properties.getUsers()), meterRegistry);
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer entityCacheCustomizer(EntityCacheProperties properties,
+                                                              CacheManager entityCacheManager) {
+        return hibernateProperties -> {
+            hibernateProperties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, properties.isEnabled());
+            if (properties.isEnabled()) {
+                hibernateProperties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+                hibernateProperties.put(ConfigSettings.CACHE_MANAGER, entityCacheManager);
+                hibernateProperties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+                log.info("Second-level cache enabled for ingredients and users");
+            }
+        };
+    }
+
+    private static Cache<Object, Object> createRegion(CacheManager cacheManager, String name,
+                                                      EntityCacheProperties.Region region) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(region.getMaxEntries()));
+        Duration ttl = region.getTtl();
+        if (ttl != null) {
+            configuration.setExpireAfterWrite(OptionalLong.of(ttl.toNanos()));
+        }
+        configuration.setStatisticsEnabled(true);
+        return cacheManager.createCache(name, configuration);
+    }
+
+    // Hits, misses and evictions under cache.gets / cache.evictions{cache=...}
+    private static void monitor(Cache<Object, Object> cache, MeterRegistry meterRegistry) {
+        JCacheMetrics.monitor(meterRegistry, cache);
+    }
+}
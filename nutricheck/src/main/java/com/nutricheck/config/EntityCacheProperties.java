@@ -0,0 +1,34 @@
+package com.nutricheck.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Settings for the Hibernate second-level cache of ingredient and user rows (nutricheck.entity-cache.*)
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "nutricheck.entity-cache")
+public class EntityCacheProperties {
+
+    // Off means every lookup goes to the database
+    private boolean enabled = true;
+
+    // Entries per region, and how long an entry may serve reads after it was loaded.
+    // Writes through JPA update the cache right away; the TTL bounds staleness from other instances or manual SQL.
+    private Region ingredients = new Region(20_000, Duration.ofHours(1));
+    private Region users = new Region(10_000, Duration.ofMinutes(30));
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Region {
+        private long maxEntries;
+        private Duration ttl;
+    }
+}
@@ -0,0 +1,56 @@
+package com.nutricheck.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.generator.Generator;
+import org.hibernate.id.enhanced.DatabaseStructure;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.TableStructure;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves the Hibernate sequence tables past the highest existing ID.
+ * Rows written while the entities still used IDENTITY would otherwise collide with the first
+ * pooled block handed out by a freshly created *_seq table.
+ * Runs once all beans exist and before the web server starts, and fails startup if a table cannot be aligned.
+ * Only generators backed by a table are touched (MySQL); where the dialect has real sequences (H2) there is
+ * nothing to align.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IdSequenceAligner implements SmartInitializingSingleton {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        sessionFactory.getMappingMetamodel().forEachEntityDescriptor(persister -> {
+            Generator generator = persister.getGenerator();
+            if (!(generator instanceof SequenceStyleGenerator sequenceGenerator)
+                    || !(sequenceGenerator.getDatabaseStructure() instanceof TableStructure)
+                    || !(persister instanceof AbstractEntityPersister entityPersister)) {
+                return;
+            }
+            DatabaseStructure structure = sequenceGenerator.getDatabaseStructure();
+            String sequence = structure.getPhysicalName().render();
+            String table = entityPersister.getTableName();
+            String id = entityPersister.getIdentifierColumnNames()[0];
+            try {
+                int updated = jdbcTemplate.update(String.format(
+                        "UPDATE %s SET next_val = GREATEST(next_val, (SELECT COALESCE(MAX(%s), 0) FROM %s) + %d)",
+                        sequence, id, table, structure.getIncrementSize() + 1));
+                log.debug("Aligned {} with {} ({} row)", sequence, table, updated);
+            } catch (Exception e) {
+                throw new IllegalStateException("Could not align sequence table " + sequence + " with " + table, e);
+            }
+        });
+    }
+}
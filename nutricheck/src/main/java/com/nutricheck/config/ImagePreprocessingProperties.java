@@ -0,0 +1,30 @@
+package com.nutricheck.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings for shrinking label photos before the multimodal call (nutricheck.image.*)
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "nutricheck.image")
+public class ImagePreprocessingProperties {
+
+    private boolean enabled = true;
+
+    // Longest edge after downscaling, in pixels
+    private int maxEdge = 1600;
+
+    private boolean grayscale = true;
+
+    // Crop away low-detail borders around the label text
+    private boolean crop = true;
+
+    // 0.0 - 1.0
+    private float jpegQuality = 0.8f;
+
+    // Uploads smaller than this are sent as they are
+    private long minBytes = 256 * 1024;
+}
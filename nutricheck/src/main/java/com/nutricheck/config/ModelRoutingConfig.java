@@ -0,0 +1,45 @@
+package com.nutricheck.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nutricheck.ai.FakeChatModel;
+import com.nutricheck.ai.RoutingChatModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.support.ContextPropagatingTaskDecorator;
+
+/**
+ * Puts RoutingChatModel in front of every provider ChatModel (Google GenAI, Ollama, the local stand-in),
+ * so AiService keeps injecting a single ChatModel.
+ */
+@Configuration
+public class ModelRoutingConfig {
+
+    @Bean
+    @Primary
+    public RoutingChatModel routingChatModel(ListableBeanFactory beanFactory,
+                                             ModelRoutingProperties properties,
+                                             ResilienceProperties resilienceProperties,
+                                             MeterRegistry meterRegistry,
+                                             Environment environment) {
+        // Hedged calls need a thread each while the first call is still blocked, and per-backend timeouts one more.
+        // The backend bulkheads bound them: a timed-out call keeps its permit until the provider call returns
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("model-call-");
+        executor.setVirtualThreads(Threading.VIRTUAL.isActive(environment));
+        // Backend calls (and the provider client's own spans) stay in the caller's trace
+        executor.setTaskDecorator(new ContextPropagatingTaskDecorator());
+        return new RoutingChatModel(beanFactory, properties, resilienceProperties, executor, meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "nutricheck.models.fake.enabled", havingValue = "true")
+    public FakeChatModel fakeChatModel(ObjectMapper objectMapper, ModelRoutingProperties properties) {
+        return new FakeChatModel(objectMapper, properties.getFake());
+    }
+}
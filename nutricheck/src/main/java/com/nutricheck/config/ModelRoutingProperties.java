@@ -0,0 +1,72 @@
+package com.nutricheck.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings for routing model calls across ChatModel backends (nutricheck.models.*)
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "nutricheck.models")
+public class ModelRoutingProperties {
+
+    // ChatModel bean names allowed to take traffic, in order of preference while there is no latency data
+    // (empty = every registered ChatModel)
+    private List<String> backends = new ArrayList<>();
+
+    // Rolling window of calls per backend used for latency percentiles and error rate
+    private int window = 200;
+
+    // Calls a backend needs in its window before its statistics are trusted
+    private int minSamples = 20;
+
+    // Ranking score: p50 * (1 + errorPenalty * errorRate) + p99Weight * p99
+    private double errorPenalty = 5.0;
+    private double p99Weight = 0.25;
+
+    private final Hedge hedge = new Hedge();
+    private final Fake fake = new Fake();
+
+    @Data
+    public static class Hedge {
+        private boolean enabled = true;
+
+        // A second backend is asked once the first has taken longer than this percentile of its latency
+        private double percentile = 0.95;
+
+        // Lower bound for the hedge delay, and the delay used while the first backend has too few samples
+        private Duration minDelay = Duration.ofMillis(500);
+        private Duration initialDelay = Duration.ofSeconds(5);
+
+        // Hedged calls allowed at the same time, so a slow provider cannot double the load
+        private int maxInFlight = 8;
+    }
+
+    @Data
+    public static class Fake {
+        // Registers "fakeChatModel", a local stand-in that answers with generated analyses
+        private boolean enabled = false;
+
+        private Duration latency = Duration.ofMillis(800);
+
+        // Log-normal spread around the latency (0 = constant)
+        private double jitter = 0.3;
+
+        // Share of calls that take tailLatency instead (a slow provider tail on top of the jitter)
+        private double tailRate = 0.0;
+        private Duration tailLatency = Duration.ofSeconds(5);
+
+        // Share of calls that fail, with the transient error a throttled or overloaded provider returns
+        private double failureRate = 0.0;
+
+        // Characters per streamed chunk, and the pause between chunks
+        private int chunkSize = 40;
+        private Duration chunkDelay = Duration.ofMillis(20);
+    }
+}
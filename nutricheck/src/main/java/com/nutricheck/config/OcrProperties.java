@@ -0,0 +1,43 @@
+package com.nutricheck.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * On-box OCR of label photos before the multimodal model call (nutricheck.ocr.*)
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "nutricheck.ocr")
+public class OcrProperties {
+
+    // Needs the Tesseract native library and traineddata files on the host
+    private boolean enabled = false;
+
+    // Directory containing <language>.traineddata; empty uses TESSDATA_PREFIX
+    private String tessdataPath = "";
+
+    // Tesseract language(s), e.g. "eng" or "eng+fra"
+    private String language = "eng";
+
+    // Mean word confidence (0-100) over the ingredient panel needed to skip the multimodal call
+    private float minConfidence = 75;
+
+    // Fewer ingredients than this usually means the panel was not found or only partly read
+    private int minIngredients = 3;
+
+    // Longest image edge given to Tesseract; more pixels help small print but cost time
+    private int maxEdge = 2400;
+
+    // OCR threads; 0 = one per core (OCR is CPU bound)
+    private int workers = 0;
+
+    // Images waiting for a worker; beyond this the scan goes straight to the model
+    private int queueCapacity = 64;
+
+    // Longest a scan waits for OCR before going to the model instead
+    private Duration timeout = Duration.ofSeconds(10);
+}
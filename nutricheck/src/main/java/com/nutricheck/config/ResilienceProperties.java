@@ -0,0 +1,98 @@
+package com.nutricheck.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Protection around each model backend: rate limit, bulkhead, timeout, retry and circuit breaker (nutricheck.resilience.*)
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "nutricheck.resilience")
+public class ResilienceProperties {
+
+    private boolean enabled = true;
+
+    // Default request rate per backend; set it a little under the provider's quota
+    private RateLimit rateLimit = new RateLimit();
+
+    // Per-backend overrides keyed by ChatModel bean name (e.g. googleGenAiChatModel), for providers with their own quota
+    private Map<String, RateLimit> quotas = new HashMap<>();
+
+    private final Bulkhead bulkhead = new Bulkhead();
+    private final Retry retry = new Retry();
+    private final Breaker circuitBreaker = new Breaker();
+
+    // Longest a single model call may take before it is abandoned and counted as a failure
+    private Duration timeout = Duration.ofSeconds(60);
+
+    // Streams: timeout bounds the wait for each chunk, this the whole answer
+    private Duration streamTimeout = Duration.ofMinutes(2);
+
+    /**
+     * Worst case for one protected call on one backend: waiting for a rate-limit token and a bulkhead slot,
+     * then every attempt running into the timeout, with the longest backoff between them
+     */
+    public Duration callBudget() {
+        Duration tokenWait = rateLimit.getMaxWait();
+        for (RateLimit quota : quotas.values()) {
+            tokenWait = quota.getMaxWait().compareTo(tokenWait) > 0 ? quota.getMaxWait() : tokenWait;
+        }
+        int attempts = Math.max(1, retry.getMaxAttempts());
+        return tokenWait
+                .plus(bulkhead.getMaxWait())
+                .plus(timeout.multipliedBy(attempts))
+                .plus(retry.getMaxBackoff().multipliedBy(attempts - 1L));
+    }
+
+    @Data
+    public static class RateLimit {
+        private double permitsPerSecond = 10;
+
+        // Calls allowed at once after an idle period
+        private int burst = 20;
+
+        // How long a call may wait for a token before it is rejected
+        private Duration maxWait = Duration.ofSeconds(2);
+    }
+
+    @Data
+    public static class Bulkhead {
+        // Calls in flight per backend
+        private int maxConcurrent = 16;
+
+        // Short on purpose: a full backend should fail over quickly instead of queueing threads
+        private Duration maxWait = Duration.ofMillis(500);
+    }
+
+    @Data
+    public static class Retry {
+        // Attempts per backend, including the first; only timeouts, throttling and server errors are retried
+        private int maxAttempts = 3;
+
+        // Backoff before retry n is random between 0 and min(maxBackoff, initialBackoff * 2^(n-1))
+        private Duration initialBackoff = Duration.ofMillis(200);
+        private Duration maxBackoff = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class Breaker {
+        // Open when this share of the last calls failed
+        private double failureRateThreshold = 0.5;
+        private int window = 20;
+
+        // Calls needed in the window before the failure rate is acted on
+        private int minimumCalls = 10;
+
+        // How long to fail fast before letting trial calls through
+        private Duration openDuration = Duration.ofSeconds(30);
+
+        // Trial calls that must all succeed to close again
+        private int halfOpenCalls = 3;
+    }
+}
@@ -0,0 +1,20 @@
+package com.nutricheck.config;
+
+import com.nutricheck.dto.enums.ProductCategory;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings for the local ingredient rule engine (nutricheck.rules.*)
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "nutricheck.rules")
+public class RuleEngineProperties {
+
+    private boolean enabled = true;
+
+    // Rows written before the product category was recorded hold verdicts for this category
+    private ProductCategory unlabelledCategory = ProductCategory.FOOD;
+}
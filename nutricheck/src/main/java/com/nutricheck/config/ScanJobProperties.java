@@ -0,0 +1,27 @@
+package com.nutricheck.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Settings for asynchronous scan jobs (nutricheck.jobs.*)
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "nutricheck.jobs")
+public class ScanJobProperties {
+
+    // Worker pool; submissions beyond queueCapacity are rejected
+    private int corePoolSize = 4;
+    private int maxPoolSize = 8;
+    private int queueCapacity = 100;
+
+    // How long finished jobs can still be polled
+    private Duration retention = Duration.ofHours(1);
+
+    // SSE connections are closed after this long
+    private Duration sseTimeout = Duration.ofMinutes(2);
+}
@@ -0,0 +1,20 @@
+package com.nutricheck.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Request coalescing for analyses (nutricheck.singleflight.*)
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "nutricheck.singleflight")
+public class SingleFlightProperties {
+
+    // How long callers wait for an identical analysis already in flight. Unset = the leader's whole budget:
+    // OCR, a model call slot, and every attempt with backoff on each configured backend
+    private Duration followerTimeout;
+}
@@ -0,0 +1,26 @@
+package com.nutricheck.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Settings for staging image uploads on disk (nutricheck.upload.*)
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "nutricheck.upload")
+public class UploadProperties {
+
+    // Directory for staged uploads; empty means java.io.tmpdir
+    private String tempDir = "";
+
+    // Total size of uploads being processed (including queued async scans); excess uploads wait, then get a 503
+    private DataSize maxInFlightBytes = DataSize.ofMegabytes(256);
+
+    // How long an upload waits for room in the budget before it is rejected
+    private Duration acquireTimeout = Duration.ofSeconds(5);
+}
@@ -0,0 +1,45 @@
+package com.nutricheck.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Settings for writing scan results behind the response (nutricheck.write-behind.*)
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "nutricheck.write-behind")
+public class WriteBehindProperties {
+
+    // When off, every scan is written in its own transaction before the response is sent
+    private boolean enabled = false;
+
+    // Journal of accepted scans not yet in the database; replayed at startup. Required when enabled: an absolute
+    // path on persistent storage, one directory per instance (locked while in use)
+    private String journalDir;
+
+    // Force each journal append to disk before responding (appends arriving together share one fsync).
+    // Off trades the last few scans on a machine crash for lower latency.
+    private boolean fsync = true;
+
+    // Journal segment size; a segment is deleted once every scan in it is committed
+    private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+    // Scans waiting for the writer; further scans wait for room (their journal entry is already written)
+    private int queueCapacity = 10000;
+
+    // Scans written in one transaction, and how long the writer waits to fill a batch
+    private int maxBatch = 200;
+    private Duration maxDelay = Duration.ofMillis(50);
+
+    // Backoff while the database is unavailable, doubling up to maxRetryBackoff
+    private Duration retryBackoff = Duration.ofMillis(500);
+    private Duration maxRetryBackoff = Duration.ofSeconds(30);
+
+    // How long shutdown waits for the queue to drain; anything left is replayed from the journal
+    private Duration shutdownTimeout = Duration.ofSeconds(30);
+}
@@ -0,0 +1,93 @@
+package com.nutricheck.controller;
+
+import com.nutricheck.dto.ImportJobResponse;
+import com.nutricheck.dto.enums.ProductCategory;
+import com.nutricheck.entity.ImportJob;
+import com.nutricheck.service.BulkImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/scan/bulk")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class BulkImportController {
+
+    private final BulkImportService bulkImportService;
+
+//    Import a retailer catalogue: the request body is a CSV or NDJSON file of ingredient lists, or a ZIP of
+//    label images (sent as is, not as multipart, so it is not bound by the image upload size limit).
+//    Returns 202 with the import job; poll /api/scan/bulk/{jobId} for progress
+    @PostMapping
+    public ResponseEntity<?> submit(
+            HttpServletRequest request,
+            @RequestParam("userId") Long userId,
+            @RequestParam(value = "category", defaultValue = "FOOD") String categoryStr) {
+
+        ProductCategory category;
+        try {
+            category = ProductCategory.valueOf(categoryStr.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Invalid category. Must be: FOOD, COSMETICS, or BEVERAGES"));
+        }
+
+        try {
+            ImportJob job = bulkImportService.submit(request.getInputStream(), request.getContentType(), userId, category);
+
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/scan/bulk/" + job.getId()))
+                    .body(bulkImportService.toResponse(job));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "60")
+                    .body(Map.of("error", "Too many imports in progress, please retry later"));
+        } catch (Exception e) {
+            log.error("Failed to accept import for user: {}", userId, e);
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", "Import failed: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Progress of an import: item counts, throughput and estimated time left
+     */
+    @GetMapping("/{jobId}")
+    public ResponseEntity<ImportJobResponse> getJob(@PathVariable String jobId) {
+        return bulkImportService.getJob(jobId)
+                .map(job -> ResponseEntity.ok(bulkImportService.toResponse(job)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Continue a paused import from its last saved chunk without waiting for the automatic retry
+     */
+    @PostMapping("/{jobId}/resume")
+    public ResponseEntity<?> resume(@PathVariable String jobId) {
+        try {
+            return bulkImportService.resume(jobId)
+                    .<ResponseEntity<?>>map(job -> ResponseEntity.accepted().body(bulkImportService.toResponse(job)))
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "60")
+                    .body(Map.of("error", "Too many imports in progress, please retry later"));
+        }
+    }
+}
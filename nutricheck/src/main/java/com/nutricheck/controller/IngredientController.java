@@ -0,0 +1,41 @@
+package com.nutricheck.controller;
+
+import com.nutricheck.dto.CanonicalizationReport;
+import com.nutricheck.service.IngredientCanonicalizationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/ingredients")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class IngredientController {
+
+    private final IngredientCanonicalizationService canonicalizationService;
+
+//    Merge near-duplicate ingredients in the background. By default only ingredients added since the last run
+//    are compared; full=true compares the whole table. Poll GET /api/ingredients/canonicalize for the report
+    @PostMapping("/canonicalize")
+    public ResponseEntity<?> canonicalize(@RequestParam(value = "full", defaultValue = "false") boolean full) {
+        if (!canonicalizationService.start(full)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "Canonicalization is already running"));
+        }
+        return ResponseEntity.accepted()
+                .body(Map.of("status", "started", "full", full));
+    }
+
+    /**
+     * Report of the last finished canonicalization run
+     */
+    @GetMapping("/canonicalize")
+    public ResponseEntity<CanonicalizationReport> getReport() {
+        return canonicalizationService.getLastReport()
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
@@ -1,18 +1,39 @@
 package com.nutricheck.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nutricheck.ai.ModelUnavailableException;
+import com.nutricheck.config.ScanJobProperties;
+import com.nutricheck.dto.ScanJobResponse;
+import com.nutricheck.dto.ScanPage;
 import com.nutricheck.dto.ScanResponse;
 import com.nutricheck.dto.enums.ProductCategory;
-import com.nutricheck.entity.Scan;
+import com.nutricheck.service.AiService;
 import com.nutricheck.service.OcrService;
+import com.nutricheck.service.ScanJob;
+import com.nutricheck.service.ScanJobService;
+import com.nutricheck.service.ScanMetrics;
 import com.nutricheck.service.ScanService;
+import com.nutricheck.upload.StagedUpload;
+import com.nutricheck.upload.UploadRejectedException;
+import com.nutricheck.upload.UploadStager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @Slf4j
 @RestController
@@ -21,17 +42,29 @@ import java.util.Map;
 @CrossOrigin(origins = "*")
 public class OcrController {
 
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int STREAM_PAGE_SIZE = 100;
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final OcrService ocrService;
     private final ScanService scanService;
+    private final ScanJobService scanJobService;
+    private final ObjectMapper objectMapper;
+    private final UploadStager uploadStager;
+    private final AiService aiService;
+    private final ScanJobProperties scanJobProperties;
+    private final ScanMetrics scanMetrics;
 
 
 //    Upload and analyze product image
-//    Returns complete analysis with all ingredients
+//    Returns complete analysis with all ingredients,
+//    or 202 with a job ID when async=true (poll /jobs/{jobId} or stream /jobs/{jobId}/events)
     @PostMapping("/image")
     public ResponseEntity<?> uploadScan(
             @RequestParam("image") MultipartFile file,
             @RequestParam("userId") Long userId,
-            @RequestParam(value = "category", defaultValue = "FOOD") String categoryStr) {
+            @RequestParam(value = "category", defaultValue = "FOOD") String categoryStr,
+            @RequestParam(value = "async", defaultValue = "false") boolean async) {
 
         try {
             // Validate category
@@ -52,22 +85,40 @@ public class OcrController {
             log.info("Processing image scan - User: {}, Category: {}, File size: {} bytes",
                     userId, category, file.getSize());
 
-            // Process the scan
-            Scan scan = ocrService.processImageScan(
-                    file.getBytes(),
-                    file.getContentType(),
-                    userId,
-                    category
-            );
+            // Stream the upload to a temp file; only the preprocessed payload is ever held in memory
+            StagedUpload upload;
+            try {
+                upload = scanMetrics.stage(ScanMetrics.UPLOAD_READ, category, () -> uploadStager.stage(file));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", e.getMessage()));
+            }
 
-            // Get detailed response
-            ScanResponse response = scanService.getScanById(scan.getId());
+            if (async) {
+                return submitAsync(upload, userId, category);
+            }
 
-            log.info("Successfully processed scan ID: {} with {} ingredients",
-                    scan.getId(), response.getResults().size());
+            try (upload) {
+                ScanResponse response = scanMetrics.scan("image", category,
+                        () -> ocrService.processImageScan(upload, userId, category));
 
-            return ResponseEntity.ok(response);
+                log.info("Successfully processed scan ID: {} with {} ingredients",
+                        response.getScanId(), response.getResults().size());
 
+                return ResponseEntity.ok(response);
+            }
+
+        } catch (UploadRejectedException e) {
+            log.warn("Rejecting upload from user {}: {}", userId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .body(Map.of("error", e.getMessage()));
+        } catch (ModelUnavailableException e) {
+            // Images cannot be answered locally; fail fast and let the client come back
+            log.warn("Model unavailable for image scan from user {}: {}", userId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .body(Map.of("error", "Analysis is temporarily unavailable, please retry shortly"));
         } catch (Exception e) {
             log.error("Failed to process image", e);
             return ResponseEntity.internalServerError()
@@ -78,6 +129,97 @@ public class OcrController {
         }
     }
 
+    private ResponseEntity<?> submitAsync(StagedUpload upload, Long userId, ProductCategory category) {
+        try {
+            // The job owns the staged file from here on and deletes it when it finishes
+            ScanJob job = scanJobService.submit(upload, userId, category);
+
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/scan/jobs/" + job.getId()))
+                    .body(job.toResponse());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .body(Map.of("error", "Scan queue is full, please retry shortly"));
+        }
+    }
+
+    /**
+     * Upload and analyze a product image, streaming the analysis as server-sent events:
+     * one "ingredient" event per ingredient as the model produces it, then "complete" with the saved scan
+     */
+    @PostMapping(value = "/image/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamScan(
+            @RequestParam("image") MultipartFile file,
+            @RequestParam("userId") Long userId,
+            @RequestParam(value = "category", defaultValue = "FOOD") String categoryStr) {
+
+        SseEmitter emitter = new SseEmitter(scanJobProperties.getSseTimeout().toMillis());
+
+        ProductCategory category;
+        try {
+            category = ProductCategory.valueOf(categoryStr.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return failStream(emitter, "Invalid category. Must be: FOOD, COSMETICS, or BEVERAGES");
+        }
+        if (file.isEmpty()) {
+            return failStream(emitter, "Image file is required");
+        }
+
+        StagedUpload upload;
+        try {
+            upload = scanMetrics.stage(ScanMetrics.UPLOAD_READ, category, () -> uploadStager.stage(file));
+        } catch (IllegalArgumentException | UploadRejectedException e) {
+            return failStream(emitter, e.getMessage());
+        } catch (IOException e) {
+            log.error("Failed to stage upload", e);
+            return failStream(emitter, "Processing failed: " + e.getMessage());
+        }
+
+        log.info("Streaming image scan - User: {}, Category: {}, File size: {} bytes", userId, category, upload.size());
+
+        // The upload stays on disk until the model stream has finished
+        SseAnalysisListener listener = new SseAnalysisListener(emitter,
+                analysis -> ocrService.recordScan(analysis, userId, category),
+                upload::close);
+        try {
+            aiService.streamImageAnalysis(upload, category, listener);
+        } catch (RuntimeException e) {
+            listener.onError(e);
+        }
+        return emitter;
+    }
+
+    private SseEmitter failStream(SseEmitter emitter, String message) {
+        try {
+            emitter.send(SseEmitter.event().name("error").data(Map.of("error", message)));
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    /**
+     * Poll the status of an asynchronous scan
+     */
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<ScanJobResponse> getJob(@PathVariable String jobId) {
+        return scanJobService.getJob(jobId)
+                .map(job -> ResponseEntity.ok(job.toResponse()))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Stream status changes of an asynchronous scan as server-sent events
+     */
+    @GetMapping(value = "/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamJob(@PathVariable String jobId) {
+        return scanJobService.subscribe(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     /**
      * Get scan details by ID
      */
@@ -105,4 +247,53 @@ public class OcrController {
             return ResponseEntity.internalServerError().build();
         }
     }
+
+    /**
+     * Get one page of a user's scans, newest first
+     * Pass the returned nextCursor to get the following page; details=true adds per-ingredient results
+     */
+    @GetMapping("/user/{userId}/page")
+    public ResponseEntity<?> getUserScanPage(
+            @PathVariable Long userId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "20") int limit,
+            @RequestParam(value = "details", defaultValue = "false") boolean details) {
+        try {
+            int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+            ScanPage page = scanService.getScanPage(userId, cursor, pageSize, details);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error retrieving scan page for user: {}", userId, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Stream all scans of a user as NDJSON (one ScanResponse per line), newest first
+     */
+    @GetMapping("/user/{userId}/stream")
+    public ResponseEntity<StreamingResponseBody> streamUserScans(
+            @PathVariable Long userId,
+            @RequestParam(value = "details", defaultValue = "false") boolean details) {
+        StreamingResponseBody body = out -> scanService.streamScansByUserId(userId, STREAM_PAGE_SIZE, details,
+                page -> writeNdjson(out, page));
+
+        return ResponseEntity.ok()
+                .contentType(NDJSON)
+                .body(body);
+    }
+
+    private void writeNdjson(OutputStream out, List<ScanResponse> scans) {
+        try {
+            for (ScanResponse scan : scans) {
+                out.write(objectMapper.writeValueAsBytes(scan));
+                out.write('\n');
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
\ No newline at end of file
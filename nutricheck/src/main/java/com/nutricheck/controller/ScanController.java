@@ -1,12 +1,16 @@
 package com.nutricheck.controller;
 
+import com.nutricheck.config.ScanJobProperties;
 import com.nutricheck.dto.AiAnalysisResponse;
 import com.nutricheck.dto.ScanRequest;
 import com.nutricheck.service.AiService;
+import com.nutricheck.service.ScanMetrics;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @Slf4j
 @RestController
@@ -16,10 +20,26 @@ import org.springframework.web.bind.annotation.*;
 public class ScanController {
 
     private final AiService aiService;
+    private final ScanJobProperties scanJobProperties;
+    private final ScanMetrics scanMetrics;
+
     @PostMapping("/ingredients")
     public ResponseEntity<AiAnalysisResponse> analyzeIngredients(@RequestBody ScanRequest scanRequest) {
         log.info("Analyzing ingredients for category: {}", scanRequest.getProductCategory());
-        AiAnalysisResponse response = aiService.generateAiReply(scanRequest);
+        AiAnalysisResponse response = scanMetrics.scan("text", scanRequest.getProductCategory(),
+                () -> aiService.generateAiReply(scanRequest));
         return ResponseEntity.ok(response);
     }
-}
\ No newline at end of file
+
+    /**
+     * Same analysis as server-sent events: one "ingredient" event per ingredient as soon as it is known,
+     * then "complete" with the full response
+     */
+    @PostMapping(value = "/ingredients/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamIngredients(@RequestBody ScanRequest scanRequest) {
+        log.info("Streaming ingredient analysis for category: {}", scanRequest.getProductCategory());
+        SseEmitter emitter = new SseEmitter(scanJobProperties.getSseTimeout().toMillis());
+        aiService.streamAiReply(scanRequest, new SseAnalysisListener(emitter, response -> response, () -> { }));
+        return emitter;
+    }
+}
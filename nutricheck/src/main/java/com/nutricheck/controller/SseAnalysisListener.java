@@ -0,0 +1,71 @@
+package com.nutricheck.controller;
+
+import com.nutricheck.dto.AiAnalysisResponse;
+import com.nutricheck.dto.IngredientAnalysis;
+import com.nutricheck.service.AnalysisListener;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Forwards a streamed analysis to an SSE client.
+ * Events: "ingredient" per IngredientAnalysis, then "complete" with the final body, or "error".
+ */
+@Slf4j
+class SseAnalysisListener implements AnalysisListener {
+
+    private final SseEmitter emitter;
+    private final Function<AiAnalysisResponse, Object> completion;
+    private final Runnable cleanup;
+
+    /**
+     * @param completion turns the finished analysis into the "complete" event body (e.g. persist and return the scan)
+     * @param cleanup    runs after the last event, successful or not
+     */
+    SseAnalysisListener(SseEmitter emitter, Function<AiAnalysisResponse, Object> completion, Runnable cleanup) {
+        this.emitter = emitter;
+        this.completion = completion;
+        this.cleanup = cleanup;
+    }
+
+    @Override
+    public void onIngredient(IngredientAnalysis analysis) {
+        send("ingredient", analysis);
+    }
+
+    @Override
+    public void onComplete(AiAnalysisResponse response) {
+        try {
+            send("complete", completion.apply(response));
+            emitter.complete();
+        } catch (Exception e) {
+            onError(e);
+            return;
+        }
+        cleanup.run();
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        try {
+            send("error", Map.of("error", "Processing failed: " + error.getMessage()));
+            emitter.complete();
+        } catch (Exception e) {
+            emitter.completeWithError(error);
+        } finally {
+            cleanup.run();
+        }
+    }
+
+    // A client that went away must not stop the analysis; later events are simply dropped
+    private void send(String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data));
+        } catch (IOException | IllegalStateException e) {
+            log.debug("SSE client gone, dropping {} event: {}", name, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.nutricheck.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Outcome of one ingredient canonicalization run
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CanonicalizationReport {
+    private boolean full; // false when only ingredients added since the previous run were compared
+    private int scannedIngredients;
+    private int clusters;
+    private int mergedIngredients; // rows folded into a canonical row
+    private long repointedResults; // scan_results moved to the canonical rows
+    private int purgedIngredients; // merged rows deleted after the grace period
+    private long durationMs;
+    private LocalDateTime finishedAt;
+}
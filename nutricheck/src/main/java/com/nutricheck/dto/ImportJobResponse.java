@@ -0,0 +1,37 @@
+package com.nutricheck.dto;
+
+import com.nutricheck.dto.enums.ImportFormat;
+import com.nutricheck.dto.enums.ImportJobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of a bulk scan import.
+ * itemsPerSecond covers the current run (or the last one once the import stopped);
+ * etaSeconds is null when it cannot be estimated yet.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportJobResponse {
+    private String jobId;
+    private ImportJobStatus status;
+    private ImportFormat format;
+    private long totalItems;
+    private long processedItems;
+    private long succeededItems;
+    private long failedItems;
+    private long deduplicatedItems;
+    private double percentComplete;
+    private double itemsPerSecond;
+    private Long etaSeconds;
+    private LocalDateTime createdAt;
+    private LocalDateTime runStartedAt;
+    private LocalDateTime finishedAt;
+    private String error;
+}
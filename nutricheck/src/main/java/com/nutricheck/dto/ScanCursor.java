@@ -0,0 +1,36 @@
+package com.nutricheck.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Keyset position in a user's scan history: the (scannedAt, id) of the last scan returned.
+ * Sent to clients as an opaque URL-safe string. Older rows may have no scannedAt; their cursor holds only the id.
+ */
+public record ScanCursor(LocalDateTime scannedAt, Long id) {
+
+    public String encode() {
+        String raw = scannedAt == null ? String.valueOf(id) : scannedAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException when the cursor was not produced by encode()
+     */
+    public static ScanCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            if (separator < 0) {
+                return new ScanCursor(null, Long.parseLong(raw));
+            }
+            return new ScanCursor(
+                    LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.nutricheck.dto;
+
+import com.nutricheck.dto.enums.ScanJobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Status of an asynchronous image scan.
+ * result is set once the job is COMPLETED, error once it FAILED.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScanJobResponse {
+    private String jobId;
+    private ScanJobStatus status;
+    private LocalDateTime submittedAt;
+    private LocalDateTime completedAt;
+    private ScanResponse result;
+    private String error;
+}
@@ -0,0 +1,21 @@
+package com.nutricheck.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of a user's scan history
+ * nextCursor is null on the last page
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScanPage {
+    private List<ScanResponse> items;
+    private String nextCursor;
+}
@@ -22,7 +22,10 @@ public class ScanResponse {
     private LocalDateTime scannedAt;
     private Long userId;
     private String userName;
-    private List<ScanResultDto> results;
+    private List<ScanResultDto> results; // null in summary-only list views
     private ScanSummary summary;
+    private Integer safetyScore;
+    private String overallAssessment;
+    private List<String> warningsFor;
 }
 
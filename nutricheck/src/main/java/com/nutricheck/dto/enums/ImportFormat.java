@@ -0,0 +1,7 @@
+package com.nutricheck.dto.enums;
+
+public enum ImportFormat {
+    CSV,
+    NDJSON,
+    ZIP
+}
@@ -0,0 +1,9 @@
+package com.nutricheck.dto.enums;
+
+public enum ImportJobStatus {
+    QUEUED,
+    RUNNING,
+    PAUSED,
+    COMPLETED,
+    FAILED
+}
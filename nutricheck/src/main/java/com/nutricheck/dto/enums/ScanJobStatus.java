@@ -0,0 +1,8 @@
+package com.nutricheck.dto.enums;
+
+public enum ScanJobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
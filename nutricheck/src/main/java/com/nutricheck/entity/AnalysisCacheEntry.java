@@ -0,0 +1,31 @@
+package com.nutricheck.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Persistent tier of the analysis cache.
+ * Keyed by content hash + product category, holds the parsed AI response as JSON.
+ */
+@Entity
+@Table(name = "analysis_cache")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class AnalysisCacheEntry {
+
+    @Id
+    @Column(length = 100)
+    private String cacheKey;
+
+    @Column(columnDefinition = "MEDIUMTEXT", nullable = false)
+    private String payload;
+
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,73 @@
+package com.nutricheck.entity;
+
+import com.nutricheck.dto.enums.ImportFormat;
+import com.nutricheck.dto.enums.ImportJobStatus;
+import com.nutricheck.dto.enums.ProductCategory;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * A bulk scan import and its progress.
+ * processedItems only moves forward together with the scans of a finished chunk (same transaction),
+ * so an interrupted import resumes at the first item that was not saved yet.
+ */
+@Entity
+@Table(name = "import_jobs")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ImportJob {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    // Default for rows without their own category, and for every image
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private ProductCategory category;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 10)
+    private ImportFormat format;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private ImportJobStatus status;
+
+    private long sourceBytes;
+
+    private long totalItems;
+    private long processedItems;
+    private long succeededItems;
+    private long failedItems;
+
+    // Items answered by another item of the same chunk with the same ingredient list
+    private long deduplicatedItems;
+
+    @Column(columnDefinition = "TEXT")
+    private String error;
+
+    // Start of the current (or last) run and the progress at that point, for throughput
+    private LocalDateTime runStartedAt;
+    private long runStartItem;
+
+    private LocalDateTime finishedAt;
+
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    private LocalDateTime updatedAt;
+}
@@ -1,21 +1,30 @@
 package com.nutricheck.entity;
 
+import com.nutricheck.dto.enums.ProductCategory;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "ingredients")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
 public class Ingredient {
 
+    // Pooled sequence instead of IDENTITY so Hibernate can batch inserts (see IdSequenceAligner)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ingredients_seq")
+    @SequenceGenerator(name = "ingredients_seq", sequenceName = "ingredients_seq", allocationSize = 50)
     private Long id;
 
     private String name;
@@ -27,9 +36,24 @@ public class Ingredient {
 
     private String riskLevel;
 
+    // Product category the verdict was given for (an additive can be fine in food and not on skin);
+    // null on rows written before it was recorded
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private ProductCategory productCategory;
+
     @Column(columnDefinition = "TEXT")
     private String description;
 
     @Column(columnDefinition = "TEXT")
     private String sideEffects;
+
+    // Set by the canonicalization job when this row was folded into another one (its name is then an alias there).
+    // Merged rows stay until every instance has stopped handing out their ID, then they are deleted.
+    private Long mergedInto;
+    private LocalDateTime mergedAt;
+
+    // Set once the canonicalization job has compared this row; incremental runs pick up the rows still null.
+    // Not the ID: pooled IDs are committed out of order, so a lower ID can appear after a higher one was seen
+    private LocalDateTime comparedAt;
 }
\ No newline at end of file
@@ -5,10 +5,12 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Entity
 @Table(name = "scans")
@@ -19,14 +21,33 @@ import java.time.LocalDateTime;
 public class Scan {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "scans_seq")
+    @SequenceGenerator(name = "scans_seq", sequenceName = "scans_seq", allocationSize = 50)
     private Long id;
 
     private String productName;
 
     private LocalDateTime scannedAt;
 
-    @ManyToOne
+    // Summary computed when the scan is written, so list views never need scan_results.
+    // Null on scans created before these columns existed.
+    private Integer totalIngredients;
+    private Integer lowRiskCount;
+    private Integer mediumRiskCount;
+    private Integer highRiskCount;
+    private String overallRisk;
+
+    private Integer safetyScore;
+
+    @Column(columnDefinition = "TEXT")
+    private String overallAssessment;
+
+    @Convert(converter = StringListConverter.class)
+    @Column(columnDefinition = "TEXT")
+    private List<String> warningsFor;
+
+    @ToString.Exclude
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private User user;
 
@@ -0,0 +1,33 @@
+package com.nutricheck.entity;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stores a list of short strings as one newline-separated TEXT column
+ */
+@Converter
+public class StringListConverter implements AttributeConverter<List<String>, String> {
+
+    private static final String SEPARATOR = "\n";
+
+    @Override
+    public String convertToDatabaseColumn(List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        return String.join(SEPARATOR, values.stream().map(v -> v.replace(SEPARATOR, " ")).toList());
+    }
+
+    @Override
+    public List<String> convertToEntityAttribute(String column) {
+        if (column == null || column.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(Arrays.asList(column.split(SEPARATOR)));
+    }
+}
@@ -1,4 +1,133 @@
 package com.nutricheck.mapper;
 
+import com.nutricheck.dto.ScanResponse;
+import com.nutricheck.dto.ScanResultDto;
+import com.nutricheck.dto.ScanSummary;
+import com.nutricheck.entity.Scan;
+import com.nutricheck.entity.ScanResult;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Maps scans and their results to response DTOs.
+ * Expects the user and ingredients to be fetched already (see ScanRepository / ScanResultRepository fetch joins).
+ * Summaries come from the columns stored on the scan; older scans fall back to counting their results.
+ */
+@Component
 public class ScanMapper {
+
+    public ScanResponse toResponse(Scan scan, List<ScanResult> scanResults) {
+        List<ScanResultDto> resultDtos = new ArrayList<>(scanResults.size());
+        for (ScanResult sr : scanResults) {
+            resultDtos.add(toResultDto(sr));
+        }
+
+        ScanResponse response = toSummaryResponse(scan, scanResults);
+        response.setResults(resultDtos);
+        return response;
+    }
+
+    /**
+     * Response without per-ingredient results, built from the scans row alone.
+     *
+     * @param legacyResults results of scans written before the summary was stored, may be null otherwise
+     */
+    public ScanResponse toSummaryResponse(Scan scan, List<ScanResult> legacyResults) {
+        ScanSummary summary = hasStoredSummary(scan)
+                ? storedSummary(scan)
+                : summarize(legacyResults != null ? legacyResults : List.of());
+
+        return ScanResponse.builder()
+                .scanId(scan.getId())
+                .productName(scan.getProductName())
+                .scannedAt(scan.getScannedAt())
+                .userId(scan.getUser().getId())
+                .userName(scan.getUser().getName())
+                .summary(summary)
+                .safetyScore(scan.getSafetyScore())
+                .overallAssessment(scan.getOverallAssessment())
+                .warningsFor(scan.getWarningsFor())
+                .build();
+    }
+
+    public boolean hasStoredSummary(Scan scan) {
+        return scan.getTotalIngredients() != null;
+    }
+
+    /**
+     * Copy the summary onto the scan before it is saved
+     */
+    public void applySummary(Scan scan, ScanSummary summary) {
+        scan.setTotalIngredients(summary.getTotalIngredients());
+        scan.setLowRiskCount(summary.getLowRiskCount());
+        scan.setMediumRiskCount(summary.getMediumRiskCount());
+        scan.setHighRiskCount(summary.getHighRiskCount());
+        scan.setOverallRisk(summary.getOverallRisk());
+    }
+
+    public ScanResultDto toResultDto(ScanResult sr) {
+        return ScanResultDto.builder()
+                .resultId(sr.getId())
+                .ingredientName(sr.getIngredient().getName())
+                .risk(sr.getRisk())
+                .severity(sr.getSeverity())
+                .explanation(sr.getExplanation())
+                .description(sr.getIngredient().getDescription())
+                .category(sr.getIngredient().getCategory())
+                .sideEffects(sr.getIngredient().getSideEffects())
+                .build();
+    }
+
+    public ScanSummary summarize(List<ScanResult> scanResults) {
+        List<String> risks = new ArrayList<>(scanResults.size());
+        for (ScanResult sr : scanResults) {
+            risks.add(sr.getRisk());
+        }
+        return summarizeRisks(risks);
+    }
+
+    /**
+     * Risk counts in a single pass; overall risk is the highest risk present
+     */
+    public ScanSummary summarizeRisks(Collection<String> risks) {
+        int lowCount = 0;
+        int mediumCount = 0;
+        int highCount = 0;
+
+        for (String risk : risks) {
+            if (risk == null) {
+                continue;
+            }
+            switch (risk.toUpperCase(Locale.ROOT)) {
+                case "LOW" -> lowCount++;
+                case "MEDIUM" -> mediumCount++;
+                case "HIGH" -> highCount++;
+                default -> { }
+            }
+        }
+
+        String overallRisk = highCount > 0 ? "HIGH" : (mediumCount > 0 ? "MEDIUM" : "LOW");
+
+        return ScanSummary.builder()
+                .totalIngredients(risks.size())
+                .lowRiskCount(lowCount)
+                .mediumRiskCount(mediumCount)
+                .highRiskCount(highCount)
+                .overallRisk(overallRisk)
+                .build();
+    }
+
+    private ScanSummary storedSummary(Scan scan) {
+        return ScanSummary.builder()
+                .totalIngredients(scan.getTotalIngredients())
+                .lowRiskCount(scan.getLowRiskCount())
+                .mediumRiskCount(scan.getMediumRiskCount())
+                .highRiskCount(scan.getHighRiskCount())
+                .overallRisk(scan.getOverallRisk())
+                .build();
+    }
 }
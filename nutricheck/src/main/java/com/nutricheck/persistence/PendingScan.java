@@ -0,0 +1,17 @@
+package com.nutricheck.persistence;
+
+import com.nutricheck.dto.AiAnalysisResponse;
+import com.nutricheck.dto.enums.ProductCategory;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * A scan accepted by the write-behind queue but maybe not in the database yet.
+ * IDs are assigned up front (scan, and one per entry of analysis.results), so the response can name them
+ * and a replayed journal entry is recognized when it was already written.
+ * category is null on entries journaled before it was recorded.
+ */
+public record PendingScan(long scanId, long userId, LocalDateTime scannedAt, AiAnalysisResponse analysis,
+                          List<Long> resultIds, ProductCategory category) {
+}
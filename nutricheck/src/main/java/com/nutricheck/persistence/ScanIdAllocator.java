@@ -0,0 +1,60 @@
+package com.nutricheck.persistence;
+
+import com.nutricheck.entity.Scan;
+import com.nutricheck.entity.ScanResult;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.Generator;
+import org.hibernate.id.IdentifierGenerator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hands out scan and scan result IDs before the rows are written.
+ * The IDs come from the entities' own Hibernate generators (and their pooled blocks), so rows inserted later
+ * by the write-behind queue never collide with rows saved through JPA.
+ */
+@Component
+public class ScanIdAllocator {
+
+    private final SessionFactoryImplementor sessionFactory;
+    private final IdentifierGenerator scanIds;
+    private final IdentifierGenerator resultIds;
+
+    public ScanIdAllocator(EntityManagerFactory entityManagerFactory) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        this.scanIds = generator(Scan.class);
+        this.resultIds = generator(ScanResult.class);
+    }
+
+    public long nextScanId() {
+        return next(scanIds, 1)[0];
+    }
+
+    public long[] nextResultIds(int count) {
+        return next(resultIds, count);
+    }
+
+    // Only a new block (one in allocationSize IDs) touches the database, in its own short transaction
+    private long[] next(IdentifierGenerator generator, int count) {
+        long[] ids = new long[count];
+        if (count == 0) {
+            return ids;
+        }
+        try (Session session = sessionFactory.openSession()) {
+            for (int i = 0; i < count; i++) {
+                ids[i] = ((Number) generator.generate((SharedSessionContractImplementor) session, null)).longValue();
+            }
+        }
+        return ids;
+    }
+
+    private IdentifierGenerator generator(Class<?> entity) {
+        Generator generator = sessionFactory.getMappingMetamodel().getEntityDescriptor(entity).getGenerator();
+        if (!(generator instanceof IdentifierGenerator identifierGenerator)) {
+            throw new IllegalStateException("Unexpected ID generator for " + entity.getSimpleName() + ": " + generator);
+        }
+        return identifierGenerator;
+    }
+}
@@ -0,0 +1,282 @@
+package com.nutricheck.persistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of scans accepted but not yet committed to the database, one JSON line per scan,
+ * split into segment files. An append returns once its line is on disk (appends waiting at the same time share
+ * one fsync); a segment is deleted once every scan in it has been committed. Scans found in the journal at
+ * startup are handed out once by recover(); a torn last line is from an append that never returned, and is skipped.
+ * The directory is locked while the journal is open: two instances sharing it would replay each other's scans.
+ */
+@Slf4j
+public class ScanJournal implements AutoCloseable {
+
+    private static final String PREFIX = "scans-";
+    private static final String SUFFIX = ".journal";
+    private static final String DEAD_LETTERS = "dead-letters.ndjson";
+    private static final String LOCK = "journal.lock";
+
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+    private final long segmentBytes;
+    private final boolean fsync;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+
+    // Guarded by this
+    private final Map<Long, Segment> segments = new HashMap<>();
+    private Segment current;
+    private List<Entry> recovered;
+
+    /**
+     * A journaled scan and the segment holding it (needed to report the commit)
+     */
+    public record Entry(long segment, PendingScan scan) {
+    }
+
+    public ScanJournal(Path directory, ObjectMapper objectMapper, long segmentBytes, boolean fsync) throws IOException {
+        this.directory = directory;
+        this.objectMapper = objectMapper;
+        this.segmentBytes = segmentBytes;
+        this.fsync = fsync;
+        Files.createDirectories(directory);
+        this.lockChannel = FileChannel.open(directory.resolve(LOCK),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.lock = tryLock(lockChannel, directory);
+
+        try {
+            this.recovered = readSegments();
+            this.current = open(segments.keySet().stream().mapToLong(Long::longValue).max().orElse(0) + 1);
+        } catch (IOException | RuntimeException e) {
+            lock.release();
+            lockChannel.close();
+            throw e;
+        }
+    }
+
+    // Segments left by a previous run; empty ones are deleted
+    private List<Entry> readSegments() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        for (Path file : segmentFiles()) {
+            long number = segmentNumber(file);
+            List<PendingScan> scans = read(file);
+            if (scans.isEmpty()) {
+                Files.deleteIfExists(file);
+                continue;
+            }
+            Segment segment = new Segment(number, file, null);
+            segment.pending = scans.size();
+            segments.put(number, segment);
+            scans.forEach(scan -> entries.add(new Entry(number, scan)));
+        }
+        return entries;
+    }
+
+    /**
+     * Scans journaled by a previous run and not known to be committed; empty after the first call
+     */
+    public synchronized List<Entry> recover() {
+        List<Entry> entries = recovered;
+        recovered = List.of();
+        return entries;
+    }
+
+    /**
+     * Write a scan to the journal; durable (when fsync is on) once this returns
+     *
+     * @return the segment to pass to committed
+     */
+    public long append(PendingScan scan) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(scan);
+        ByteBuffer line = ByteBuffer.allocate(json.length + 1).put(json).put((byte) '\n').flip();
+
+        Segment segment;
+        long end;
+        synchronized (this) {
+            if (current.written >= segmentBytes) {
+                Segment full = current;
+                current = open(full.number + 1);
+                if (full.pending == 0) {
+                    remove(full);
+                }
+            }
+            segment = current;
+            while (line.hasRemaining()) {
+                segment.channel.write(line);
+            }
+            segment.written += json.length + 1;
+            end = segment.written;
+            segment.pending++;
+        }
+        if (fsync) {
+            segment.sync(end);
+        }
+        return segment.number;
+    }
+
+    /**
+     * Report scans of a segment as committed; the segment file goes once nothing in it is pending
+     */
+    public synchronized void committed(long segmentNumber, int count) {
+        Segment segment = segments.get(segmentNumber);
+        if (segment == null) {
+            return;
+        }
+        segment.pending -= count;
+        if (segment.pending <= 0 && segment != current) {
+            remove(segment);
+        }
+    }
+
+    /**
+     * Keep a scan that can never be written (for manual repair) and take it out of the journal
+     */
+    public void deadLetter(Entry entry) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(entry.scan());
+        synchronized (this) {
+            Files.write(directory.resolve(DEAD_LETTERS), (new String(json, StandardCharsets.UTF_8) + "\n")
+                    .getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        committed(entry.segment(), 1);
+    }
+
+    public synchronized int pendingSegments() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            for (Segment segment : segments.values()) {
+                if (segment.channel != null && segment.channel.isOpen()) {
+                    segment.channel.force(false);
+                    segment.channel.close();
+                }
+            }
+        } finally {
+            lock.release();
+            lockChannel.close();
+        }
+    }
+
+    // Held by another process, or by another journal in this JVM
+    private static FileLock tryLock(FileChannel channel, Path directory) throws IOException {
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IOException("Scan journal directory " + directory + " is in use by another instance");
+        }
+        return lock;
+    }
+
+    private Segment open(long number) throws IOException {
+        Path file = directory.resolve(String.format("%s%012d%s", PREFIX, number, SUFFIX));
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        Segment segment = new Segment(number, file, channel);
+        segments.put(number, segment);
+        return segment;
+    }
+
+    private void remove(Segment segment) {
+        segments.remove(segment.number);
+        try {
+            if (segment.channel != null) {
+                segment.channel.close();
+            }
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            log.warn("Could not delete journal segment {}: {}", segment.path, e.getMessage());
+        }
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private List<PendingScan> read(Path file) throws IOException {
+        List<PendingScan> scans = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    scans.add(objectMapper.readValue(line, PendingScan.class));
+                } catch (IOException e) {
+                    log.warn("Skipping unreadable entry in journal segment {}: {}", file, e.getMessage());
+                }
+            }
+        }
+        return scans;
+    }
+
+    private static final class Segment {
+
+        private final long number;
+        private final Path path;
+        // Null for segments recovered at startup, which are only read and deleted
+        private final FileChannel channel;
+        private final Object syncLock = new Object();
+
+        // Guarded by the journal
+        private volatile long written;
+        private int pending;
+
+        // Guarded by syncLock
+        private long forced;
+
+        private Segment(long number, Path path, FileChannel channel) {
+            this.number = number;
+            this.path = path;
+            this.channel = channel;
+        }
+
+        // Group commit: whoever forces the channel covers every append written before it
+        private void sync(long upTo) throws IOException {
+            synchronized (syncLock) {
+                if (forced >= upTo) {
+                    return;
+                }
+                long target = written;
+                channel.force(false);
+                forced = target;
+            }
+        }
+    }
+}
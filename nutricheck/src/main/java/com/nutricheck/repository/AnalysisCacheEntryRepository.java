@@ -0,0 +1,9 @@
+package com.nutricheck.repository;
+
+import com.nutricheck.entity.AnalysisCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface AnalysisCacheEntryRepository extends JpaRepository<AnalysisCacheEntry, String> {
+}
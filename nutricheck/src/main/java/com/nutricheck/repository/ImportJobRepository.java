@@ -0,0 +1,18 @@
+package com.nutricheck.repository;
+
+import com.nutricheck.dto.enums.ImportJobStatus;
+import com.nutricheck.entity.ImportJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ImportJobRepository extends JpaRepository<ImportJob, String> {
+
+    /**
+     * Find the imports in any of the given states, oldest first
+     */
+    List<ImportJob> findByStatusInOrderByCreatedAt(Collection<ImportJobStatus> statuses);
+}
@@ -1,17 +1,64 @@
 package com.nutricheck.repository;
 
 import com.nutricheck.entity.Ingredient;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.util.Optional;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 @Repository
 public interface IngredientRepository extends JpaRepository<Ingredient, Long> {
 
     /**
-     * Find ingredient by name (case-insensitive)
-     * Used to prevent duplicate ingredients
+     * Find all ingredients whose lower-cased name is in the given set
+     * Used to resolve a whole ingredient list in one query. Not query-cached: the key would be the whole name set,
+     * which rarely repeats, so the SQL runs on every call
      */
-    Optional<Ingredient> findByNameIgnoreCase(String name);
-}
\ No newline at end of file
+    @Query("select i from Ingredient i where lower(i.name) in :names")
+    List<Ingredient> findByLowerCaseNameIn(@Param("names") Collection<String> names);
+
+    /**
+     * Next page of live (not merged) ingredient names after the given ID, for the canonicalization job.
+     * A projection, so a full pass does not push master data out of the second-level cache.
+     */
+    @Query("select i.id as id, i.name as name from Ingredient i where i.id > :afterId and i.mergedInto is null"
+            + " order by i.id")
+    List<NameView> findNamePage(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Like findNamePage, limited to rows the canonicalization job has not compared yet
+     */
+    @Query("select i.id as id, i.name as name from Ingredient i where i.id > :afterId and i.mergedInto is null"
+            + " and i.comparedAt is null order by i.id")
+    List<NameView> findUncomparedNamePage(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Record that the canonicalization job has compared these rows; a JPQL update, so Hibernate drops the
+     * cached ingredients instead of keeping a stale comparedAt that a later save would write back
+     */
+    @Modifying
+    @Query("update Ingredient i set i.comparedAt = :comparedAt where i.id in :ids")
+    int markCompared(@Param("ids") Collection<Long> ids, @Param("comparedAt") LocalDateTime comparedAt);
+
+    /**
+     * Rows merged into another ingredient before the cutoff, ready to be deleted
+     */
+    List<Ingredient> findByMergedAtBefore(LocalDateTime cutoff);
+
+    /**
+     * Rows already merged into any of the given ingredients
+     */
+    List<Ingredient> findByMergedIntoIn(Collection<Long> ids);
+
+    interface NameView {
+        Long getId();
+
+        String getName();
+    }
+}
@@ -1,10 +1,16 @@
 package com.nutricheck.repository;
 
 import com.nutricheck.entity.Scan;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ScanRepository extends JpaRepository<Scan, Long> {
@@ -18,4 +24,50 @@ public interface ScanRepository extends JpaRepository<Scan, Long> {
      * Find scans by product name (case-insensitive, partial match)
      */
     List<Scan> findByProductNameContainingIgnoreCase(String productName);
-}
\ No newline at end of file
+
+    /**
+     * Find a scan together with its user (single query)
+     */
+    @Query("select s from Scan s join fetch s.user where s.id = :scanId")
+    Optional<Scan> findWithUserById(@Param("scanId") Long scanId);
+
+    /**
+     * Find all scans for a user together with the user, newest first (single query)
+     */
+    @Query("select s from Scan s join fetch s.user u where u.id = :userId order by s.scannedAt desc, s.id desc")
+    List<Scan> findWithUserByUserId(@Param("userId") Long userId);
+
+    /**
+     * First page of a user's scans, newest first (keyset pagination)
+     */
+    @Query("select s from Scan s join fetch s.user u where u.id = :userId order by s.scannedAt desc, s.id desc")
+    List<Scan> findPageByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    /**
+     * Next page of a user's scans: everything strictly older than the (scannedAt, id) cursor.
+     * Scans without a time sort after all others (NULL is lowest in MySQL and H2), so they always follow
+     */
+    @Query("select s from Scan s join fetch s.user u where u.id = :userId"
+            + " and (s.scannedAt < :scannedAt or (s.scannedAt = :scannedAt and s.id < :id) or s.scannedAt is null)"
+            + " order by s.scannedAt desc, s.id desc")
+    List<Scan> findPageByUserIdBefore(@Param("userId") Long userId,
+                                      @Param("scannedAt") LocalDateTime scannedAt,
+                                      @Param("id") Long id,
+                                      Pageable pageable);
+
+    /**
+     * Next page after a cursor on a scan without a time: the remaining untimed scans, by descending id
+     */
+    @Query("select s from Scan s join fetch s.user u where u.id = :userId"
+            + " and s.scannedAt is null and s.id < :id"
+            + " order by s.id desc")
+    List<Scan> findUntimedPageByUserIdBefore(@Param("userId") Long userId,
+                                             @Param("id") Long id,
+                                             Pageable pageable);
+
+    /**
+     * Which of the given scan IDs exist (replaying the write-behind journal skips them)
+     */
+    @Query("select s.id from Scan s where s.id in :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+}
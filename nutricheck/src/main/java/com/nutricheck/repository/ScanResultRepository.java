@@ -2,8 +2,11 @@ package com.nutricheck.repository;
 
 import com.nutricheck.entity.ScanResult;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -18,4 +21,10 @@ public interface ScanResultRepository extends JpaRepository<ScanResult, Long> {
      * Find all results by risk level
      */
     List<ScanResult> findByRiskIgnoreCase(String risk);
+
+    /**
+     * Find all results for a set of scans with their ingredients fetched in the same query
+     */
+    @Query("select sr from ScanResult sr join fetch sr.ingredient where sr.scan.id in :scanIds order by sr.id")
+    List<ScanResult> findWithIngredientByScanIdIn(@Param("scanIds") Collection<Long> scanIds);
 }
\ No newline at end of file
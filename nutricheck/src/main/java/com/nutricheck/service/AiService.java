@@ -1,8 +1,20 @@
 package com.nutricheck.service;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nutricheck.ai.ModelUnavailableException;
+import com.nutricheck.cache.AnalysisCache;
+import com.nutricheck.cache.TextAnalysisCache;
+import com.nutricheck.concurrency.CallLimiter;
+import com.nutricheck.concurrency.SingleFlight;
 import com.nutricheck.dto.AiAnalysisResponse;
+import com.nutricheck.dto.IngredientAnalysis;
 import com.nutricheck.dto.ScanRequest;
 import com.nutricheck.dto.enums.ProductCategory;
+import com.nutricheck.upload.StagedUpload;
+import com.nutricheck.util.IngredientNormalizer;
+import com.nutricheck.util.LabelTextParser;
+import com.nutricheck.util.StreamingAnalysisParser;
+import lombok.AccessLevel;
+import lombok.Builder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.messages.UserMessage;
@@ -10,40 +22,320 @@ import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.content.Media;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.stereotype.Service;
 import org.springframework.util.MimeTypeUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.SortedSet;
+import java.util.function.UnaryOperator;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
+// Package-private builder for wiring a partial service by name outside Spring (src/jmh)
+@Builder(access = AccessLevel.PACKAGE)
 public class AiService {
 
     private final ChatModel chatModel;
     private final ObjectMapper objectMapper;
+    private final AnalysisCache analysisCache;
+    private final TextAnalysisCache textAnalysisCache;
+    private final AnalysisAssembler analysisAssembler;
+    private final CallLimiter modelCallLimiter;
+    private final IngredientRuleEngine ingredientRuleEngine;
+    private final ImagePreprocessor imagePreprocessor;
+    private final SingleFlight<AiAnalysisResponse> analysisSingleFlight;
+    private final TextAnalysisBatcher textAnalysisBatcher;
+    private final ScanMetrics scanMetrics;
+    private final LabelTextExtractor labelTextExtractor;
 
     /**
-     * Text-based analysis
+     * Text-based analysis.
+     * The list is canonicalized first; whole lists and single ingredients already seen are served from cache,
+     * ingredients in the master table are classified by the local rule engine,
+     * and only the remaining unknown ingredients are sent to the model (batched with other requests when enabled).
+     * While every model backend is refusing calls the answer is built from cached and local verdicts alone.
      */
     public AiAnalysisResponse generateAiReply(ScanRequest scanRequest) {
-        String prompt = buildTextPrompt(scanRequest.getIngredients(), scanRequest.getProductCategory());
+        ProductCategory category = scanRequest.getProductCategory();
+        SortedSet<String> ingredients = IngredientNormalizer.canonicalize(scanRequest.getIngredients());
 
-        log.info("Calling Gemini for text analysis...");
-        String response = chatModel.call(prompt);
+        try {
+            return analyzeIngredients(ingredients, category);
+        } catch (ModelUnavailableException e) {
+            List<IngredientAnalysis> known = new ArrayList<>();
+            List<String> unknown = new ArrayList<>();
+            classify(ingredients, category, known, unknown);
+            log.warn("Model unavailable ({}), answering from local verdicts, {} ingredients left unanalyzed",
+                    e.getMessage(), unknown.size());
+            // Only exact and alias verdicts: a near miss (nitrite/nitrate) is no safer for the model being down.
+            // Not cached: the next request should get the full analysis once the provider recovers
+            return analysisAssembler.degraded(known, unknown);
+        }
+    }
+
+    /**
+     * Text-based analysis for batch work: same caching and local lookups as generateAiReply, but throws
+     * ModelUnavailableException instead of answering from local verdicts, so the caller can retry later.
+     */
+    public AiAnalysisResponse analyzeIngredientList(ScanRequest scanRequest) {
+        return analyzeIngredients(IngredientNormalizer.canonicalize(scanRequest.getIngredients()),
+                scanRequest.getProductCategory());
+    }
+
+    /**
+     * Cached analysis of a canonical ingredient list.
+     * Throws ModelUnavailableException when unknown ingredients are left and every model backend is refusing calls.
+     */
+    private AiAnalysisResponse analyzeIngredients(SortedSet<String> ingredients, ProductCategory category) {
+        String listKey = TextAnalysisCache.listKey(ingredients, category);
+        AiAnalysisResponse cached = textAnalysisCache.getList(listKey);
+        if (cached != null) {
+            log.debug("Text analysis cache hit for {} ingredients", ingredients.size());
+            return cached;
+        }
+
+        // Identical lists arriving while one is being analyzed share that analysis
+        return analysisSingleFlight.execute(listKey, () -> analyzeText(ingredients, category, listKey));
+    }
+
+    private AiAnalysisResponse analyzeText(SortedSet<String> ingredients, ProductCategory category, String listKey) {
+        AiAnalysisResponse cached = textAnalysisCache.getList(listKey);
+        if (cached != null) {
+            return cached;
+        }
+
+        List<IngredientAnalysis> known = new ArrayList<>();
+        List<String> unknown = new ArrayList<>();
+        classify(ingredients, category, known, unknown);
+
+        AiAnalysisResponse response;
+        if (unknown.isEmpty()) {
+            log.info("All {} ingredients known, assembling response without model call", known.size());
+            response = scanMetrics.stage(ScanMetrics.RESPONSE_ASSEMBLY, category,
+                    () -> analysisAssembler.fromVerdicts(known));
+        } else {
+            AiAnalysisResponse modelResponse = analyzeUnknown(unknown, category, known.size());
+            rememberVerdicts(modelResponse, category);
+
+            response = known.isEmpty()
+                    ? modelResponse
+                    : scanMetrics.stage(ScanMetrics.RESPONSE_ASSEMBLY, category,
+                            () -> analysisAssembler.merge(modelResponse, known));
+        }
+
+        textAnalysisCache.putList(listKey, response);
+        return response;
+    }
+
+    private AiAnalysisResponse analyzeUnknown(List<String> unknown, ProductCategory category, int knownCount) {
+        if (textAnalysisBatcher.isEnabled()) {
+            try {
+                return textAnalysisBatcher.analyze(unknown, category);
+            } catch (ModelUnavailableException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                // Not batched (batcher stopped) or left out of the answer; a failed batch call is not retried here
+                log.warn("Batched analysis failed, analyzing on its own: {}", e.getMessage());
+            }
+        }
+
+        log.info("Calling Gemini for text analysis of {} unknown ingredients ({} known)...", unknown.size(), knownCount);
+        Prompt prompt = scanMetrics.stage(ScanMetrics.PROMPT_BUILD, category,
+                () -> new Prompt(buildTextPrompt(String.join(", ", unknown), category)));
+        return callModel(prompt, "text", category);
+    }
+
+    /**
+     * Streaming text analysis.
+     * Cached and rule-engine verdicts are emitted right away; unknown ingredients are streamed from the model
+     * and emitted one by one as their JSON objects complete. Returns once the model stream is subscribed.
+     */
+    public void streamAiReply(ScanRequest scanRequest, AnalysisListener listener) {
+        ProductCategory category = scanRequest.getProductCategory();
+        SortedSet<String> ingredients = IngredientNormalizer.canonicalize(scanRequest.getIngredients());
+
+        String listKey = TextAnalysisCache.listKey(ingredients, category);
+        AiAnalysisResponse cached = textAnalysisCache.getList(listKey);
+        if (cached != null) {
+            replay(cached, listener);
+            return;
+        }
+
+        List<IngredientAnalysis> known = new ArrayList<>();
+        List<String> unknown = new ArrayList<>();
+        classify(ingredients, category, known, unknown);
+        known.forEach(listener::onIngredient);
+
+        if (unknown.isEmpty()) {
+            AiAnalysisResponse response = analysisAssembler.fromVerdicts(known);
+            textAnalysisCache.putList(listKey, response);
+            listener.onComplete(response);
+            return;
+        }
+
+        log.info("Streaming Gemini text analysis of {} unknown ingredients ({} known)...", unknown.size(), known.size());
+        Prompt prompt = scanMetrics.stage(ScanMetrics.PROMPT_BUILD, category,
+                () -> new Prompt(buildTextPrompt(String.join(", ", unknown), category)));
+        streamModel(prompt, "text", category, listener, modelResponse -> {
+            rememberVerdicts(modelResponse, category);
+            AiAnalysisResponse response = known.isEmpty() ? modelResponse : analysisAssembler.merge(modelResponse, known);
+            textAnalysisCache.putList(listKey, response);
+            return response;
+        });
+    }
+
+    private void classify(SortedSet<String> ingredients, ProductCategory category,
+                          List<IngredientAnalysis> known, List<String> unknown) {
+        for (String ingredient : ingredients) {
+            IngredientAnalysis verdict = textAnalysisCache.getVerdict(ingredient, category);
+            if (verdict == null) {
+                verdict = ingredientRuleEngine.classify(ingredient, category).orElse(null);
+            }
+            if (verdict != null) {
+                known.add(verdict);
+            } else {
+                unknown.add(ingredient);
+            }
+        }
+    }
+
+    private void rememberVerdicts(AiAnalysisResponse response, ProductCategory category) {
+        if (response.getResults() == null) {
+            return;
+        }
+        for (IngredientAnalysis analysis : response.getResults()) {
+            String name = IngredientNormalizer.normalize(analysis.getIngredientName());
+            if (!name.isEmpty()) {
+                textAnalysisCache.putVerdict(name, category, analysis);
+            }
+        }
+    }
+
+    /**
+     * Image-based analysis, served from the content-addressed cache when the same image was seen before.
+     * Concurrent uploads of the same image share one model call.
+     * When local OCR reads the ingredient panel confidently, the label is analyzed as text (cached and known
+     * ingredients need no model call at all); the multimodal model only sees photos OCR could not read.
+     */
+    public AiAnalysisResponse analyzeImage(StagedUpload upload, ProductCategory category) {
+        String cacheKey = AnalysisCache.imageKey(upload.sha256(), category);
+        // The cache is checked again by the leader, so a request arriving just after a call finished still hits it
+        return analysisSingleFlight.execute(cacheKey,
+                () -> analysisCache.getOrCompute(cacheKey, () -> analyzeLabel(upload, category)));
+    }
+
+    private AiAnalysisResponse analyzeLabel(StagedUpload upload, ProductCategory category) {
+        Optional<LabelTextParser.LabelText> label = readLabel(upload, category);
+        if (label.isEmpty()) {
+            return callImageModel(upload, category);
+        }
+        log.info("Label read by OCR (confidence {}), analyzing its ingredients as text", label.get().confidence());
+        SortedSet<String> ingredients = IngredientNormalizer.canonicalize(label.get().ingredients());
+        return withProductName(analyzeIngredients(ingredients, category), label.get().productName());
+    }
+
+    private Optional<LabelTextParser.LabelText> readLabel(StagedUpload upload, ProductCategory category) {
+        if (!labelTextExtractor.isEnabled()) {
+            return Optional.empty();
+        }
+        return scanMetrics.stage(ScanMetrics.OCR, category, () -> labelTextExtractor.extract(upload.path()));
+    }
+
+    // The text analysis is cached and shared by every label with the same ingredients, so it is copied, never renamed
+    private static AiAnalysisResponse withProductName(AiAnalysisResponse response, String productName) {
+        if (productName == null) {
+            return response;
+        }
+        return new AiAnalysisResponse(productName, response.getResults(), response.getSafetyScore(),
+                response.getOverallAssessment(), response.getWarningsFor());
+    }
+
+    /**
+     * Streaming image analysis: ingredients are emitted as the model generates them.
+     * A cached analysis is replayed immediately, and a label read by OCR is streamed as a text analysis.
+     * Returns once the model stream is subscribed;
+     * the upload must stay open until the listener completes.
+     */
+    public void streamImageAnalysis(StagedUpload upload, ProductCategory category, AnalysisListener listener) {
+        String cacheKey = AnalysisCache.imageKey(upload.sha256(), category);
+        AiAnalysisResponse cached = analysisCache.getIfPresent(cacheKey);
+        if (cached != null) {
+            replay(cached, listener);
+            return;
+        }
+
+        Optional<LabelTextParser.LabelText> label = readLabel(upload, category);
+        if (label.isPresent()) {
+            log.info("Label read by OCR (confidence {}), streaming its ingredients as text", label.get().confidence());
+            ScanRequest request = new ScanRequest();
+            request.setIngredients(label.get().ingredients());
+            request.setProductCategory(category);
+            streamAiReply(request, new AnalysisListener() {
+                @Override
+                public void onIngredient(IngredientAnalysis analysis) {
+                    listener.onIngredient(analysis);
+                }
+
+                @Override
+                public void onComplete(AiAnalysisResponse response) {
+                    AiAnalysisResponse named = withProductName(response, label.get().productName());
+                    analysisCache.put(cacheKey, named);
+                    listener.onComplete(named);
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    listener.onError(error);
+                }
+            });
+            return;
+        }
 
-        return parseAiResponse(response);
+        log.info("Streaming Gemini image analysis...");
+        Prompt prompt = scanMetrics.stage(ScanMetrics.PROMPT_BUILD, category, () -> imagePrompt(upload, category));
+        streamModel(prompt, "image", category, listener, response -> {
+            analysisCache.put(cacheKey, response);
+            return response;
+        });
     }
 
     /**
      * Image-based analysis using the Builder and getText()
      */
-    public AiAnalysisResponse analyzeImage(byte[] imageBytes, String mimeType, ProductCategory category) {
+    private AiAnalysisResponse callImageModel(StagedUpload upload, ProductCategory category) {
+        Prompt prompt = scanMetrics.stage(ScanMetrics.PROMPT_BUILD, category, () -> imagePrompt(upload, category));
+
+        log.info("Calling Gemini-2.0-Flash for image analysis...");
+
+        return callModel(prompt, "image", category);
+    }
+
+    // Package-private (like the parser and prompt builders below) for the benchmarks in src/jmh
+    AiAnalysisResponse callModel(Prompt prompt, String operation, ProductCategory category) {
+        // 3. Execute the call using a Prompt object
+        ChatResponse response = scanMetrics.stage(ScanMetrics.MODEL_CALL, category,
+                () -> modelCallLimiter.call(() -> chatModel.call(prompt)));
+        scanMetrics.recordTokens(response, operation, category);
+
+        // 4. FIX: Use getText() to retrieve the content in 1.1.2
+        String resultJson = response.getResult().getOutput().getText();
+
+        return scanMetrics.stage(ScanMetrics.PARSE, category, () -> parseAiResponse(resultJson));
+    }
+
+    private Prompt imagePrompt(StagedUpload upload, ProductCategory category) {
         String promptText = buildImagePrompt(category);
 
+        // Downscaled, grayscale, cropped JPEG (or the staged file itself); the cache key above stays on the original upload
+        ImagePreprocessor.PreprocessedImage image = imagePreprocessor.preprocess(upload.path(), upload.contentType());
+
         // 1. Create Media object using the updated 1.1.2 package
-        var media = new Media(MimeTypeUtils.parseMimeType(mimeType), new ByteArrayResource(imageBytes));
+        var media = new Media(MimeTypeUtils.parseMimeType(image.mimeType()), image.payload());
 
         // 2. FIX: Use UserMessage.builder() for multimodal input
         // This avoids the 'private access' error with the constructor
@@ -52,25 +344,92 @@ public class AiService {
                 .media(List.of(media))
                 .build();
 
-        log.info("Calling Gemini-2.0-Flash for image analysis...");
+        return new Prompt(userMessage);
+    }
 
-        // 3. Execute the call using a Prompt object
-        ChatResponse response = chatModel.call(new Prompt(userMessage));
+    /**
+     * Stream the model answer through the incremental parser.
+     * The model call slot is taken on subscription and held until the stream terminates, so no failure while
+     * setting it up can leak it; finisher turns the parsed answer into what the listener receives (merging, caching).
+     * The model.call stage covers the whole stream, parsing included.
+     */
+    private void streamModel(Prompt prompt, String operation, ProductCategory category, AnalysisListener listener,
+                             UnaryOperator<AiAnalysisResponse> finisher) {
+        StreamingAnalysisParser parser = new StreamingAnalysisParser(objectMapper, listener::onIngredient);
+        long start = System.nanoTime();
+        // Providers report usage on the last chunk (or cumulatively); keep the latest
+        ChatResponse[] usage = new ChatResponse[1];
 
-        // 4. FIX: Use getText() to retrieve the content in 1.1.2
-        String resultJson = response.getResult().getOutput().getText();
+        Flux.using(
+                        () -> {
+                            modelCallLimiter.acquire();
+                            try {
+                                return scanMetrics.startStage(ScanMetrics.MODEL_CALL, category);
+                            } catch (RuntimeException e) {
+                                modelCallLimiter.release();
+                                throw e;
+                            }
+                        },
+                        observation -> chatModel.stream(prompt).doOnError(observation::error),
+                        observation -> {
+                            modelCallLimiter.release();
+                            observation.stop();
+                            scanMetrics.recordTokens(usage[0], operation, category);
+                        })
+                // Never run the model client on the request thread: SSE events sent there are only flushed after it returns
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe(
+                        chunk -> {
+                            if (hasUsage(chunk)) {
+                                usage[0] = chunk;
+                            }
+                            parser.feed(textOf(chunk));
+                        },
+                        error -> {
+                            log.error("Streaming AI analysis failed", error);
+                            listener.onError(error);
+                        },
+                        () -> {
+                            try {
+                                AiAnalysisResponse response = finisher.apply(parser.finish());
+                                log.info("Streamed {} ingredients in {} ms",
+                                        parser.ingredientCount(), (System.nanoTime() - start) / 1_000_000);
+                                listener.onComplete(response);
+                            } catch (Exception e) {
+                                log.error("Failed to complete streamed AI analysis", e);
+                                listener.onError(e);
+                            }
+                        });
+    }
 
-        return parseAiResponse(resultJson);
+    private static String textOf(ChatResponse chunk) {
+        if (chunk == null || chunk.getResult() == null || chunk.getResult().getOutput() == null) {
+            return null;
+        }
+        return chunk.getResult().getOutput().getText();
     }
 
-    private AiAnalysisResponse parseAiResponse(String jsonResponse) {
-        try {
-            String cleanJson = jsonResponse
-                    .replaceAll("```json\\s*", "")
-                    .replaceAll("```\\s*", "")
-                    .trim();
+    private static boolean hasUsage(ChatResponse chunk) {
+        if (chunk.getMetadata() == null || chunk.getMetadata().getUsage() == null) {
+            return false;
+        }
+        Integer total = chunk.getMetadata().getUsage().getTotalTokens();
+        return total != null && total > 0;
+    }
+
+    private static void replay(AiAnalysisResponse response, AnalysisListener listener) {
+        if (response.getResults() != null) {
+            response.getResults().forEach(listener::onIngredient);
+        }
+        listener.onComplete(response);
+    }
 
-            return objectMapper.readValue(cleanJson, AiAnalysisResponse.class);
+    // Same parser as the streaming path, fed in one go: tolerates markdown fences without regex passes
+    AiAnalysisResponse parseAiResponse(String jsonResponse) {
+        try {
+            StreamingAnalysisParser parser = new StreamingAnalysisParser(objectMapper, analysis -> { });
+            parser.feed(jsonResponse);
+            return parser.finish();
         } catch (Exception e) {
             log.error("Failed to parse AI response: {}", jsonResponse, e);
             throw new RuntimeException("Invalid AI JSON response", e);
@@ -80,7 +439,7 @@ public class AiService {
     /**
      * Build prompt for text-based ingredient analysis
      */
-    private String buildTextPrompt(String ingredientList, ProductCategory category) {
+    String buildTextPrompt(String ingredientList, ProductCategory category) {
         return String.format("""
         You are a Nutritionist and Product Safety Expert analyzing a %s product.
 
@@ -112,6 +471,7 @@ public class AiService {
         - Sort ingredients from LEAST to MOST harmful
         - Be factual and concise
         - Include all ingredients from the list
+        - Keep each ingredientName exactly as written in the list
         - Risk levels: LOW, MEDIUM, or HIGH only
         """, category.name(), ingredientList);
     }
@@ -119,7 +479,7 @@ public class AiService {
     /**
      * Build prompt for image-based analysis
      */
-    private String buildImagePrompt(ProductCategory category) {
+    String buildImagePrompt(ProductCategory category) {
         return String.format("""
         You are a Nutritionist and Product Safety Expert analyzing a %s product.
 
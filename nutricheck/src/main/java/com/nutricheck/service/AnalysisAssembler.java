@@ -0,0 +1,134 @@
+package com.nutricheck.service;
+
+import com.nutricheck.dto.AiAnalysisResponse;
+import com.nutricheck.dto.IngredientAnalysis;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Builds an AiAnalysisResponse from per-ingredient verdicts that did not all come from one model call
+ */
+@Component
+public class AnalysisAssembler {
+
+    private static final String UNKNOWN_PRODUCT = "Unknown Product";
+
+    /**
+     * Response made entirely from already-known verdicts (no model call)
+     */
+    public AiAnalysisResponse fromVerdicts(Collection<IngredientAnalysis> verdicts) {
+        List<IngredientAnalysis> results = sorted(verdicts);
+        return new AiAnalysisResponse(
+                UNKNOWN_PRODUCT,
+                results,
+                safetyScore(results),
+                summarize(results),
+                new ArrayList<>()
+        );
+    }
+
+    /**
+     * Response from local verdicts only, while the model is unavailable; names the ingredients left unanalyzed
+     */
+    public AiAnalysisResponse degraded(Collection<IngredientAnalysis> verdicts, Collection<String> unanalyzed) {
+        AiAnalysisResponse response = fromVerdicts(verdicts);
+        if (!unanalyzed.isEmpty()) {
+            response.setOverallAssessment(response.getOverallAssessment()
+                    + " Analysis is temporarily unavailable for " + unanalyzed.size() + " ingredient(s): "
+                    + String.join(", ", unanalyzed) + ".");
+        }
+        return response;
+    }
+
+    /**
+     * Combine a model response for the unknown ingredients with the known verdicts.
+     * The model only saw the unknown ingredients, so when there are known verdicts its assessment and warnings
+     * are labelled as covering just those; the counts and safety score cover the whole list.
+     */
+    public AiAnalysisResponse merge(AiAnalysisResponse modelResponse, Collection<IngredientAnalysis> known) {
+        List<IngredientAnalysis> analyzed = modelResponse.getResults() != null
+                ? modelResponse.getResults()
+                : List.of();
+        List<IngredientAnalysis> all = new ArrayList<>(known);
+        all.addAll(analyzed);
+        List<IngredientAnalysis> results = sorted(all);
+        List<String> warnings = modelResponse.getWarningsFor() != null
+                ? modelResponse.getWarningsFor()
+                : new ArrayList<>();
+
+        String assessment = summarize(results);
+        String modelAssessment = modelResponse.getOverallAssessment();
+        if (known.isEmpty()) {
+            if (modelAssessment != null && !modelAssessment.isBlank()) {
+                assessment = assessment + " " + modelAssessment;
+            }
+        } else if (!analyzed.isEmpty()) {
+            String scope = "the " + analyzed.size() + " newly analyzed ingredient(s)";
+            if (modelAssessment != null && !modelAssessment.isBlank()) {
+                assessment = assessment + " About " + scope + ": " + modelAssessment.strip();
+            }
+            if (!warnings.isEmpty()) {
+                assessment = assessment + " Warnings cover only " + scope + ".";
+            }
+        }
+
+        return new AiAnalysisResponse(
+                modelResponse.getProductName() != null ? modelResponse.getProductName() : UNKNOWN_PRODUCT,
+                results,
+                safetyScore(results),
+                assessment,
+                warnings
+        );
+    }
+
+    /**
+     * LOW = 0, MEDIUM = 1, HIGH = 2; anything unexpected is treated as MEDIUM
+     */
+    public static int riskRank(String risk) {
+        if ("LOW".equalsIgnoreCase(risk)) {
+            return 0;
+        }
+        if ("HIGH".equalsIgnoreCase(risk)) {
+            return 2;
+        }
+        return 1;
+    }
+
+    // Same ordering the prompts ask the model for: LEAST to MOST harmful
+    private List<IngredientAnalysis> sorted(Collection<IngredientAnalysis> verdicts) {
+        List<IngredientAnalysis> results = new ArrayList<>(verdicts);
+        results.sort(Comparator.comparingInt(a -> riskRank(a.getRisk())));
+        return results;
+    }
+
+    // 1-10 where 10 is safest, weighted by the share of medium/high risk ingredients
+    private int safetyScore(List<IngredientAnalysis> results) {
+        if (results.isEmpty()) {
+            return 10;
+        }
+        double weighted = 0;
+        for (IngredientAnalysis result : results) {
+            int rank = riskRank(result.getRisk());
+            weighted += rank == 2 ? 1.0 : (rank == 1 ? 0.4 : 0.0);
+        }
+        int score = (int) Math.round(10 - 9 * weighted / results.size());
+        return Math.max(1, Math.min(10, score));
+    }
+
+    private String summarize(List<IngredientAnalysis> results) {
+        int low = 0, medium = 0, high = 0;
+        for (IngredientAnalysis result : results) {
+            switch (riskRank(result.getRisk())) {
+                case 0 -> low++;
+                case 2 -> high++;
+                default -> medium++;
+            }
+        }
+        return String.format("%d ingredients analyzed: %d high, %d medium and %d low risk.",
+                results.size(), high, medium, low);
+    }
+}
@@ -0,0 +1,17 @@
+package com.nutricheck.service;
+
+import com.nutricheck.dto.AiAnalysisResponse;
+import com.nutricheck.dto.IngredientAnalysis;
+
+/**
+ * Receives a streamed analysis: each ingredient as soon as it is known, then the complete response.
+ * Exactly one of onComplete or onError is called last; callbacks may run on a model client thread.
+ */
+public interface AnalysisListener {
+
+    void onIngredient(IngredientAnalysis analysis);
+
+    void onComplete(AiAnalysisResponse response);
+
+    void onError(Throwable error);
+}
@@ -0,0 +1,557 @@
+package com.nutricheck.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nutricheck.ai.ModelUnavailableException;
+import com.nutricheck.bulk.ImportItem;
+import com.nutricheck.bulk.ImportReader;
+import com.nutricheck.cache.TextAnalysisCache;
+import com.nutricheck.config.BulkImportProperties;
+import com.nutricheck.dto.AiAnalysisResponse;
+import com.nutricheck.dto.ImportJobResponse;
+import com.nutricheck.dto.ScanRequest;
+import com.nutricheck.dto.enums.ImportFormat;
+import com.nutricheck.dto.enums.ImportJobStatus;
+import com.nutricheck.dto.enums.ProductCategory;
+import com.nutricheck.entity.ImportJob;
+import com.nutricheck.repository.ImportJobRepository;
+import com.nutricheck.repository.UserRepository;
+import com.nutricheck.upload.StagedUpload;
+import com.nutricheck.upload.UploadRejectedException;
+import com.nutricheck.upload.UploadStager;
+import com.nutricheck.util.IngredientNormalizer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Bulk scan imports: a CSV/NDJSON file of ingredient lists or a ZIP of label images, analyzed in chunks.
+ * The items of a chunk are analyzed in parallel (bounded by the shared item pool) through the same cached paths
+ * as single scans, so known ingredients, cached lists and images seen before cost no model call, and identical
+ * lists within a chunk are analyzed once. Each chunk's scans are then written in one batch together with the
+ * job's progress, so an interrupted or paused import resumes exactly after the last saved chunk.
+ */
+@Slf4j
+@Service
+public class BulkImportService implements ApplicationRunner {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ImportJobRepository importJobRepository;
+    private final UserRepository userRepository;
+    private final AiService aiService;
+    private final OcrService ocrService;
+    private final UploadStager uploadStager;
+    private final ObjectMapper objectMapper;
+    private final ScanMetrics scanMetrics;
+    private final ThreadPoolTaskExecutor bulkImportExecutor;
+    private final ThreadPoolTaskExecutor bulkItemExecutor;
+    private final BulkImportProperties properties;
+    private final TransactionTemplate chunkTx;
+    private final Path directory;
+
+    // Jobs with a runner in this instance, so a resume never starts a second one
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+    private volatile boolean stopping;
+
+    private final Counter succeeded;
+    private final Counter failed;
+    private final Counter deduplicated;
+
+    // shared: answered by the analysis of an earlier item of the chunk with the same ingredient list
+    private record Outcome(ImportItem item, AiAnalysisResponse response, String error, boolean shared) {
+    }
+
+    public BulkImportService(ImportJobRepository importJobRepository,
+                             UserRepository userRepository,
+                             AiService aiService,
+                             OcrService ocrService,
+                             UploadStager uploadStager,
+                             ObjectMapper objectMapper,
+                             ScanMetrics scanMetrics,
+                             ThreadPoolTaskExecutor bulkImportExecutor,
+                             ThreadPoolTaskExecutor bulkItemExecutor,
+                             BulkImportProperties properties,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry) throws IOException {
+        this.importJobRepository = importJobRepository;
+        this.userRepository = userRepository;
+        this.aiService = aiService;
+        this.ocrService = ocrService;
+        this.uploadStager = uploadStager;
+        this.objectMapper = objectMapper;
+        this.scanMetrics = scanMetrics;
+        this.bulkImportExecutor = bulkImportExecutor;
+        this.bulkItemExecutor = bulkItemExecutor;
+        this.properties = properties;
+        this.chunkTx = new TransactionTemplate(transactionManager);
+        this.directory = properties.getDir().isBlank()
+                ? Path.of(System.getProperty("java.io.tmpdir"), "nutricheck-imports")
+                : Path.of(properties.getDir());
+        Files.createDirectories(directory);
+
+        this.succeeded = Counter.builder("nutricheck.import.items").tag("outcome", "succeeded").register(meterRegistry);
+        this.failed = Counter.builder("nutricheck.import.items").tag("outcome", "failed").register(meterRegistry);
+        this.deduplicated = Counter.builder("nutricheck.import.items").tag("outcome", "deduplicated")
+                .register(meterRegistry);
+        Gauge.builder("nutricheck.import.running", running, Set::size).register(meterRegistry);
+    }
+
+    /**
+     * Store an import file, check that every item can be read, and queue the import.
+     *
+     * @throws IllegalArgumentException   when the user does not exist or the file is too large, empty or malformed
+     * @throws RejectedExecutionException when the import queue is full
+     */
+    public ImportJob submit(InputStream body, String contentType, Long userId, ProductCategory category)
+            throws IOException {
+        if (!userRepository.existsById(userId)) {
+            throw new IllegalArgumentException("User not found with id: " + userId);
+        }
+
+        String id = UUID.randomUUID().toString();
+        Path file = sourceFile(id);
+        try {
+            long size = copy(body, file);
+            ImportFormat format = detectFormat(file, contentType);
+            long total = count(file, format);
+            if (total == 0) {
+                throw new IllegalArgumentException("The import contains no products");
+            }
+
+            ImportJob job = importJobRepository.save(ImportJob.builder()
+                    .id(id)
+                    .userId(userId)
+                    .category(category)
+                    .format(format)
+                    .status(ImportJobStatus.QUEUED)
+                    .sourceBytes(size)
+                    .totalItems(total)
+                    .build());
+            start(job.getId());
+
+            log.info("Queued {} import {} with {} items ({} bytes) for user: {}", format, id, total, size, userId);
+            return job;
+        } catch (IOException | RuntimeException e) {
+            importJobRepository.findById(id).ifPresent(importJobRepository::delete);
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    public Optional<ImportJob> getJob(String jobId) {
+        return importJobRepository.findById(jobId);
+    }
+
+    /**
+     * Continue a paused or interrupted import from its last saved chunk
+     *
+     * @throws IllegalStateException      when the import already finished or is running
+     * @throws RejectedExecutionException when the import queue is full
+     */
+    public Optional<ImportJob> resume(String jobId) {
+        return importJobRepository.findById(jobId).map(job -> {
+            if (job.getStatus() == ImportJobStatus.COMPLETED || job.getStatus() == ImportJobStatus.FAILED) {
+                throw new IllegalStateException("Import " + jobId + " already finished (" + job.getStatus() + ")");
+            }
+            if (running.contains(jobId)) {
+                throw new IllegalStateException("Import " + jobId + " is already running");
+            }
+            start(jobId);
+            return job;
+        });
+    }
+
+    public ImportJobResponse toResponse(ImportJob job) {
+        long total = job.getTotalItems();
+        long processed = job.getProcessedItems();
+
+        double itemsPerSecond = 0;
+        Long etaSeconds = null;
+        if (job.getRunStartedAt() != null) {
+            LocalDateTime until = job.getStatus() == ImportJobStatus.RUNNING || job.getUpdatedAt() == null
+                    ? LocalDateTime.now()
+                    : job.getUpdatedAt();
+            double seconds = Duration.between(job.getRunStartedAt(), until).toMillis() / 1000.0;
+            long done = processed - job.getRunStartItem();
+            if (seconds > 0 && done > 0) {
+                itemsPerSecond = done / seconds;
+                if (job.getStatus() == ImportJobStatus.RUNNING) {
+                    etaSeconds = Math.round((total - processed) / itemsPerSecond);
+                }
+            }
+        }
+
+        return ImportJobResponse.builder()
+                .jobId(job.getId())
+                .status(job.getStatus())
+                .format(job.getFormat())
+                .totalItems(total)
+                .processedItems(processed)
+                .succeededItems(job.getSucceededItems())
+                .failedItems(job.getFailedItems())
+                .deduplicatedItems(job.getDeduplicatedItems())
+                .percentComplete(total == 0 ? 100 : Math.round(processed * 1000.0 / total) / 10.0)
+                .itemsPerSecond(Math.round(itemsPerSecond * 100) / 100.0)
+                .etaSeconds(etaSeconds)
+                .createdAt(job.getCreatedAt())
+                .runStartedAt(job.getRunStartedAt())
+                .finishedAt(job.getFinishedAt())
+                .error(job.getError())
+                .build();
+    }
+
+    /**
+     * Pick up imports that were queued or running when the previous instance stopped
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!properties.isResumeOnStartup()) {
+            return;
+        }
+        resumeAll(List.of(ImportJobStatus.QUEUED, ImportJobStatus.RUNNING));
+    }
+
+    @Scheduled(initialDelayString = "${nutricheck.imports.resume-interval:PT5M}",
+            fixedDelayString = "${nutricheck.imports.resume-interval:PT5M}")
+    public void resumePaused() {
+        resumeAll(List.of(ImportJobStatus.PAUSED));
+    }
+
+    private void resumeAll(List<ImportJobStatus> statuses) {
+        for (ImportJob job : importJobRepository.findByStatusInOrderByCreatedAt(statuses)) {
+            if (running.contains(job.getId())) {
+                continue;
+            }
+            try {
+                start(job.getId());
+                log.info("Resuming import {} at item {} of {}", job.getId(), job.getProcessedItems(), job.getTotalItems());
+            } catch (RejectedExecutionException e) {
+                log.warn("Import queue full, import {} stays {}", job.getId(), job.getStatus());
+                return;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        // Runners stop at the next chunk boundary and leave their job QUEUED for the next start
+        stopping = true;
+    }
+
+    private void start(String jobId) {
+        bulkImportExecutor.execute(() -> run(jobId));
+    }
+
+    private void run(String jobId) {
+        if (!running.add(jobId)) {
+            return;
+        }
+        ImportJob job = null;
+        try {
+            job = importJobRepository.findById(jobId).orElseThrow();
+            if (job.getStatus() == ImportJobStatus.COMPLETED || job.getStatus() == ImportJobStatus.FAILED) {
+                return;
+            }
+            if (job.getStatus() == ImportJobStatus.PAUSED) {
+                job.setError(null);
+            }
+            job.setStatus(ImportJobStatus.RUNNING);
+            job.setRunStartedAt(LocalDateTime.now());
+            job.setRunStartItem(job.getProcessedItems());
+            job = importJobRepository.save(job);
+
+            try (ImportReader reader = ImportReader.open(sourceFile(jobId), job.getFormat(), objectMapper)) {
+                reader.skip(job.getProcessedItems());
+                List<ImportItem> chunk;
+                while (!(chunk = reader.next(properties.getChunkSize())).isEmpty()) {
+                    if (stopping) {
+                        job.setStatus(ImportJobStatus.QUEUED);
+                        importJobRepository.save(job);
+                        log.info("Import {} interrupted at item {} by shutdown", jobId, job.getProcessedItems());
+                        return;
+                    }
+                    job = commit(job, analyze(job, reader, chunk));
+                    log.debug("Import {}: {} of {} items", jobId, job.getProcessedItems(), job.getTotalItems());
+                }
+            }
+
+            job.setStatus(ImportJobStatus.COMPLETED);
+            job.setFinishedAt(LocalDateTime.now());
+            job = importJobRepository.save(job);
+            Files.deleteIfExists(sourceFile(jobId));
+            log.info("Import {} completed: {} scans saved, {} items failed", jobId,
+                    job.getSucceededItems(), job.getFailedItems());
+        } catch (Exception e) {
+            if (job == null) {
+                log.error("Import {} could not be started", jobId, e);
+                return;
+            }
+            boolean transientFailure = isTransient(e);
+            if (transientFailure) {
+                log.warn("Import {} paused: {}", jobId, e.getMessage());
+            } else {
+                log.error("Import {} failed", jobId, e);
+            }
+            try {
+                // Progress as last committed; a failed chunk may have advanced the counters in memory
+                ImportJob current = importJobRepository.findById(jobId).orElse(job);
+                current.setStatus(transientFailure ? ImportJobStatus.PAUSED : ImportJobStatus.FAILED);
+                current.setError((transientFailure ? "Paused at item " : "Import failed at item ")
+                        + current.getProcessedItems() + ": " + e.getMessage());
+                if (!transientFailure) {
+                    current.setFinishedAt(LocalDateTime.now());
+                }
+                importJobRepository.save(current);
+                if (!transientFailure) {
+                    Files.deleteIfExists(sourceFile(jobId));
+                }
+            } catch (Exception saveError) {
+                log.error("Could not record the state of import {}", jobId, saveError);
+            }
+        } finally {
+            running.remove(jobId);
+        }
+    }
+
+    /**
+     * Analyze a chunk in parallel. Items sharing a canonical ingredient list share one analysis.
+     * A transient failure (model unavailable, upload budget full) aborts the chunk once every item has finished;
+     * the analyses that did succeed are cached, so the retry is cheap.
+     */
+    private List<Outcome> analyze(ImportJob job, ImportReader reader, List<ImportItem> chunk) {
+        Map<String, CompletableFuture<AiAnalysisResponse>> byList = new HashMap<>();
+        List<CompletableFuture<AiAnalysisResponse>> futures = new ArrayList<>(chunk.size());
+        List<String> errors = new ArrayList<>(chunk.size());
+        List<Boolean> shared = new ArrayList<>(chunk.size());
+
+        for (ImportItem item : chunk) {
+            CompletableFuture<AiAnalysisResponse> future = null;
+            String error = null;
+            boolean duplicate = false;
+            ProductCategory category = category(item, job.getCategory());
+            if (category == null) {
+                error = "Invalid category: " + item.category();
+            } else if (item.isImage()) {
+                if (item.imageSize() < 0) {
+                    error = "Image size unknown";
+                } else if (item.imageSize() > properties.getMaxImageBytes().toBytes()) {
+                    error = "Image larger than " + properties.getMaxImageBytes();
+                } else {
+                    future = CompletableFuture.supplyAsync(() -> analyzeImage(reader, item, category), bulkItemExecutor);
+                }
+            } else if (item.ingredients() == null || item.ingredients().isBlank()) {
+                error = "No ingredients";
+            } else {
+                String listKey = TextAnalysisCache.listKey(IngredientNormalizer.canonicalize(item.ingredients()), category);
+                future = byList.get(listKey);
+                duplicate = future != null;
+                if (future == null) {
+                    future = CompletableFuture.supplyAsync(() -> analyzeText(item, category), bulkItemExecutor);
+                    byList.put(listKey, future);
+                }
+            }
+            futures.add(future);
+            errors.add(error);
+            shared.add(duplicate);
+        }
+
+        CompletableFuture.allOf(futures.stream().filter(Objects::nonNull).toArray(CompletableFuture[]::new))
+                .exceptionally(e -> null)
+                .join();
+
+        List<Outcome> outcomes = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            ImportItem item = chunk.get(i);
+            CompletableFuture<AiAnalysisResponse> future = futures.get(i);
+            if (future == null) {
+                outcomes.add(new Outcome(item, null, errors.get(i), false));
+                continue;
+            }
+            try {
+                outcomes.add(new Outcome(item, named(future.join(), item), null, shared.get(i)));
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                if (isTransient(cause)) {
+                    throw cause instanceof RuntimeException runtime ? runtime : e;
+                }
+                outcomes.add(new Outcome(item, null, cause.getMessage(), false));
+            }
+        }
+        return outcomes;
+    }
+
+    private AiAnalysisResponse analyzeText(ImportItem item, ProductCategory category) {
+        ScanRequest request = new ScanRequest();
+        request.setIngredients(item.ingredients());
+        request.setProductCategory(category);
+        return scanMetrics.scan("text", category, () -> aiService.analyzeIngredientList(request));
+    }
+
+    private AiAnalysisResponse analyzeImage(ImportReader reader, ImportItem item, ProductCategory category) {
+        try (InputStream in = reader.openImage(item);
+             StagedUpload upload = scanMetrics.stage(ScanMetrics.UPLOAD_READ, category,
+                     () -> uploadStager.stage(in, item.imageSize()))) {
+            return scanMetrics.scan("image", category, () -> aiService.analyzeImage(upload, category));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Write the chunk's scans and advance the job in one transaction
+     */
+    private ImportJob commit(ImportJob job, List<Outcome> outcomes) {
+        List<AiAnalysisResponse> responses = new ArrayList<>(outcomes.size());
+        long failures = 0;
+        long duplicates = 0;
+        String firstError = null;
+        for (Outcome outcome : outcomes) {
+            if (outcome.response() != null) {
+                responses.add(outcome.response());
+                if (outcome.shared()) {
+                    duplicates++;
+                }
+            } else {
+                failures++;
+                if (firstError == null) {
+                    firstError = "Item " + (outcome.item().index() + 1) + ": " + outcome.error();
+                }
+            }
+        }
+
+        job.setProcessedItems(job.getProcessedItems() + outcomes.size());
+        job.setSucceededItems(job.getSucceededItems() + responses.size());
+        job.setFailedItems(job.getFailedItems() + failures);
+        job.setDeduplicatedItems(job.getDeduplicatedItems() + duplicates);
+        if (firstError != null && job.getError() == null) {
+            // Only the first failure is kept; the counters tell how many there were
+            job.setError(firstError);
+        }
+
+        ImportJob saved = chunkTx.execute(status -> {
+            ocrService.saveScans(responses, job.getUserId(), job.getCategory());
+            return importJobRepository.save(job);
+        });
+
+        succeeded.increment(responses.size());
+        failed.increment(failures);
+        deduplicated.increment(duplicates);
+        return saved;
+    }
+
+    // Text analyses are shared; the row's product name goes on a copy. Images keep the name read from the label.
+    private static AiAnalysisResponse named(AiAnalysisResponse response, ImportItem item) {
+        boolean unnamed = response.getProductName() == null || response.getProductName().isBlank()
+                || "Unknown Product".equalsIgnoreCase(response.getProductName());
+        String name = item.isImage() ? (unnamed ? item.productName() : null) : item.productName();
+        if (name == null) {
+            return response;
+        }
+        return new AiAnalysisResponse(name, response.getResults(), response.getSafetyScore(),
+                response.getOverallAssessment(), response.getWarningsFor());
+    }
+
+    private static ProductCategory category(ImportItem item, ProductCategory fallback) {
+        if (item.category() == null) {
+            return fallback;
+        }
+        try {
+            return ProductCategory.valueOf(item.category().trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean isTransient(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof ModelUnavailableException || t instanceof UploadRejectedException
+                    || t instanceof TransientDataAccessException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long count(Path file, ImportFormat format) throws IOException {
+        try (ImportReader reader = ImportReader.open(file, format, objectMapper)) {
+            long count = 0;
+            while (reader.next() != null) {
+                count++;
+            }
+            return count;
+        }
+    }
+
+    private long copy(InputStream body, Path file) throws IOException {
+        long max = properties.getMaxBytes().toBytes();
+        long size = 0;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (OutputStream out = Files.newOutputStream(file)) {
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                size += read;
+                if (size > max) {
+                    throw new IllegalArgumentException("Import larger than " + properties.getMaxBytes());
+                }
+                out.write(buffer, 0, read);
+            }
+        }
+        return size;
+    }
+
+    // The magic bytes decide between ZIP and text; the Content-Type (or the first character) between NDJSON and CSV
+    private static ImportFormat detectFormat(Path file, String contentType) throws IOException {
+        byte[] header = new byte[4];
+        int length;
+        try (InputStream in = Files.newInputStream(file)) {
+            length = in.readNBytes(header, 0, header.length);
+        }
+        if (length == 4 && header[0] == 'P' && header[1] == 'K' && header[2] == 3 && header[3] == 4) {
+            return ImportFormat.ZIP;
+        }
+        String type = contentType == null ? "" : contentType.toLowerCase(Locale.ROOT);
+        if (type.contains("ndjson") || type.contains("jsonl") || type.contains("json")) {
+            return ImportFormat.NDJSON;
+        }
+        if (type.contains("csv")) {
+            return ImportFormat.CSV;
+        }
+        return length > 0 && header[0] == '{' ? ImportFormat.NDJSON : ImportFormat.CSV;
+    }
+
+    private Path sourceFile(String jobId) {
+        return directory.resolve(jobId + ".import");
+    }
+}
@@ -0,0 +1,379 @@
+package com.nutricheck.service;
+
+import com.drew.imaging.ImageMetadataReader;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.ExifIFD0Directory;
+import com.nutricheck.config.ImagePreprocessingProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Shrinks label photos before they are sent to the model:
+ * decode, EXIF orientation, downscale, grayscale, crop to the text region, re-encode as JPEG.
+ * Per-stage timings go to nutricheck.image.preprocess{stage}, sizes to nutricheck.image.preprocess.bytes{side}.
+ * Anything that cannot be decoded (e.g. HEIC) is passed through unchanged.
+ */
+@Slf4j
+@Component
+public class ImagePreprocessor {
+
+    public static final String OUTPUT_MIME_TYPE = "image/jpeg";
+
+    // Rows/columns below this share of the mean detail level count as background
+    private static final double CROP_THRESHOLD = 0.35;
+    private static final double CROP_MARGIN = 0.03;
+    // Never crop away more than this share of either dimension
+    private static final double MAX_CROP = 0.5;
+
+    private final ImagePreprocessingProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> stageTimers = new HashMap<>();
+    private final DistributionSummary bytesIn;
+    private final DistributionSummary bytesOut;
+
+    public record PreprocessedImage(Resource payload, long size, String mimeType, boolean changed) {
+    }
+
+    public ImagePreprocessor(ImagePreprocessingProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        for (String stage : new String[]{"decode", "orient", "downscale", "grayscale", "crop", "encode"}) {
+            stageTimers.put(stage, Timer.builder("nutricheck.image.preprocess")
+                    .tag("stage", stage)
+                    .register(meterRegistry));
+        }
+        this.bytesIn = DistributionSummary.builder("nutricheck.image.preprocess.bytes")
+                .baseUnit("bytes")
+                .tag("side", "in")
+                .register(meterRegistry);
+        this.bytesOut = DistributionSummary.builder("nutricheck.image.preprocess.bytes")
+                .baseUnit("bytes")
+                .tag("side", "out")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Preprocess an image file. The original file is returned as the payload when it is small,
+     * cannot be decoded, or would not get any smaller.
+     */
+    public PreprocessedImage preprocess(Path file, String mimeType) {
+        long originalSize;
+        try {
+            originalSize = Files.size(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        PreprocessedImage original = new PreprocessedImage(new FileSystemResource(file), originalSize, mimeType, false);
+        if (!properties.isEnabled() || originalSize < properties.getMinBytes()) {
+            return original;
+        }
+
+        try {
+            BufferedImage image = stage("decode", () -> decode(file, properties.getMaxEdge()));
+            if (image == null) {
+                log.debug("Image format not decodable ({}), sending original", mimeType);
+                return original;
+            }
+
+            int orientation = exifOrientation(file);
+            BufferedImage current = stage("downscale", () -> downscale(image, properties.getMaxEdge()));
+            if (properties.isGrayscale()) {
+                BufferedImage scaled = current;
+                current = stage("grayscale", () -> toGray(scaled));
+            }
+            if (orientation > 1) {
+                BufferedImage unrotated = current;
+                current = stage("orient", () -> orient(unrotated, orientation));
+            }
+            if (properties.isCrop()) {
+                BufferedImage uncropped = current;
+                current = stage("crop", () -> cropToDetail(uncropped));
+            }
+            BufferedImage finalImage = current;
+            byte[] encoded = stage("encode", () -> encodeJpeg(finalImage, properties.getJpegQuality()));
+
+            if (encoded.length >= originalSize) {
+                return original;
+            }
+
+            bytesIn.record(originalSize);
+            bytesOut.record(encoded.length);
+            log.info("Preprocessed image {} bytes -> {}x{} {} bytes",
+                    originalSize, finalImage.getWidth(), finalImage.getHeight(), encoded.length);
+
+            return new PreprocessedImage(new ByteArrayResource(encoded), encoded.length, OUTPUT_MIME_TYPE, true);
+        } catch (Exception e) {
+            log.warn("Image preprocessing failed, sending original: {}", e.getMessage());
+            return original;
+        }
+    }
+
+    /**
+     * Grayscale, upright image with its longest edge at most maxEdge, for on-box OCR; null when not decodable
+     */
+    public BufferedImage decodeForOcr(Path file, int maxEdge) {
+        BufferedImage image = stage("decode", () -> decode(file, maxEdge));
+        if (image == null) {
+            return null;
+        }
+        BufferedImage gray = toGray(downscale(image, maxEdge));
+        int orientation = exifOrientation(file);
+        return orientation > 1 ? orient(gray, orientation) : gray;
+    }
+
+    private <T> T stage(String name, Supplier<T> work) {
+        return stageTimers.get(name).record(work);
+    }
+
+    /**
+     * Decode straight from the file, subsampling rows and columns so the raster is never much larger
+     * than twice the target edge (a 12 MP photo is not materialized at full resolution).
+     * Returns null for formats ImageIO has no reader for.
+     */
+    private static BufferedImage decode(Path file, int maxEdge) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, longest / maxEdge);
+                if (step > 1) {
+                    param.setSourceSubsampling(step, step, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * EXIF orientation tag (1-8), 1 when absent
+     */
+    private static int exifOrientation(Path file) {
+        try {
+            Metadata metadata = ImageMetadataReader.readMetadata(file.toFile());
+            ExifIFD0Directory exif = metadata.getFirstDirectoryOfType(ExifIFD0Directory.class);
+            if (exif != null && exif.containsTag(ExifIFD0Directory.TAG_ORIENTATION)) {
+                return exif.getInt(ExifIFD0Directory.TAG_ORIENTATION);
+            }
+        } catch (Exception e) {
+            log.debug("No readable EXIF orientation: {}", e.getMessage());
+        }
+        return 1;
+    }
+
+    /**
+     * Downscale so the longest edge is at most maxEdge, halving first for quality on large reductions
+     */
+    static BufferedImage downscale(BufferedImage image, int maxEdge) {
+        int longest = Math.max(image.getWidth(), image.getHeight());
+        if (longest <= maxEdge) {
+            return toRgb(image);
+        }
+
+        BufferedImage current = image;
+        int targetW = (int) Math.round((double) image.getWidth() * maxEdge / longest);
+        int targetH = (int) Math.round((double) image.getHeight() * maxEdge / longest);
+
+        while (current.getWidth() / 2 >= targetW && current.getHeight() / 2 >= targetH) {
+            current = resize(current, current.getWidth() / 2, current.getHeight() / 2);
+        }
+        if (current.getWidth() != targetW || current.getHeight() != targetH) {
+            current = resize(current, targetW, targetH);
+        }
+        return current;
+    }
+
+    private static BufferedImage resize(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    // JPEG cannot carry alpha, so everything is flattened to RGB first
+    private static BufferedImage toRgb(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            return image;
+        }
+        return resize(image, image.getWidth(), image.getHeight());
+    }
+
+    static BufferedImage toGray(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            return image;
+        }
+        BufferedImage gray = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = gray.createGraphics();
+        try {
+            g.drawImage(image, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return gray;
+    }
+
+    /**
+     * Apply EXIF orientation 2-8 so the label is upright
+     */
+    static BufferedImage orient(BufferedImage image, int orientation) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        boolean swap = orientation >= 5;
+
+        AffineTransform t = new AffineTransform();
+        switch (orientation) {
+            case 2 -> { t.translate(w, 0); t.scale(-1, 1); }
+            case 3 -> { t.translate(w, h); t.rotate(Math.PI); }
+            case 4 -> { t.translate(0, h); t.scale(1, -1); }
+            case 5 -> { t.rotate(-Math.PI / 2); t.scale(-1, 1); }
+            case 6 -> { t.translate(h, 0); t.rotate(Math.PI / 2); }
+            case 7 -> { t.translate(h, w); t.rotate(Math.PI / 2); t.scale(-1, 1); }
+            case 8 -> { t.translate(0, w); t.rotate(-Math.PI / 2); }
+            default -> { return image; }
+        }
+
+        int type = image.getType() == BufferedImage.TYPE_BYTE_GRAY ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB;
+        BufferedImage rotated = new BufferedImage(swap ? h : w, swap ? w : h, type);
+        Graphics2D g = rotated.createGraphics();
+        try {
+            g.drawImage(image, t, null);
+        } finally {
+            g.dispose();
+        }
+        return rotated;
+    }
+
+    /**
+     * Crop to the band of rows and columns that carry detail (text edges).
+     * Detail is the summed horizontal/vertical luminance gradient per row and column.
+     */
+    static BufferedImage cropToDetail(BufferedImage image) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        if (w < 32 || h < 32) {
+            return image;
+        }
+
+        double[] rowEnergy = new double[h];
+        double[] colEnergy = new double[w];
+        int[] previousRow = luminanceRow(image, 0);
+        for (int y = 1; y < h; y++) {
+            int[] row = luminanceRow(image, y);
+            for (int x = 1; x < w; x++) {
+                int energy = Math.abs(row[x] - row[x - 1]) + Math.abs(row[x] - previousRow[x]);
+                rowEnergy[y] += energy;
+                colEnergy[x] += energy;
+            }
+            previousRow = row;
+        }
+
+        int[] rows = detailBand(rowEnergy);
+        int[] cols = detailBand(colEnergy);
+        int top = rows[0], bottom = rows[1], left = cols[0], right = cols[1];
+
+        int marginY = (int) (h * CROP_MARGIN);
+        int marginX = (int) (w * CROP_MARGIN);
+        top = Math.max(0, top - marginY);
+        bottom = Math.min(h - 1, bottom + marginY);
+        left = Math.max(0, left - marginX);
+        right = Math.min(w - 1, right + marginX);
+
+        int cropW = right - left + 1;
+        int cropH = bottom - top + 1;
+        if (cropW < w * (1 - MAX_CROP) || cropH < h * (1 - MAX_CROP) || (cropW == w && cropH == h)) {
+            return image;
+        }
+        return image.getSubimage(left, top, cropW, cropH);
+    }
+
+    private static int[] luminanceRow(BufferedImage image, int y) {
+        int w = image.getWidth();
+        int[] rgb = image.getRGB(0, y, w, 1, null, 0, w);
+        int[] lum = new int[w];
+        for (int x = 0; x < w; x++) {
+            int p = rgb[x];
+            lum[x] = (((p >> 16) & 0xff) * 299 + ((p >> 8) & 0xff) * 587 + (p & 0xff) * 114) / 1000;
+        }
+        return lum;
+    }
+
+    // First and last index whose energy is above CROP_THRESHOLD x mean
+    private static int[] detailBand(double[] energy) {
+        double mean = 0;
+        for (double e : energy) {
+            mean += e;
+        }
+        mean /= energy.length;
+        double threshold = mean * CROP_THRESHOLD;
+
+        int first = 0;
+        while (first < energy.length - 1 && energy[first] < threshold) {
+            first++;
+        }
+        int last = energy.length - 1;
+        while (last > first && energy[last] < threshold) {
+            last--;
+        }
+        return new int[]{first, last};
+    }
+
+    static byte[] encodeJpeg(BufferedImage image, float quality) {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } catch (IOException e) {
+            throw new IllegalStateException("JPEG encoding failed", e);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,456 @@
+package com.nutricheck.service;
+
+import com.nutricheck.config.CanonicalizationProperties;
+import com.nutricheck.dto.CanonicalizationReport;
+import com.nutricheck.dto.enums.ProductCategory;
+import com.nutricheck.entity.Ingredient;
+import com.nutricheck.repository.IngredientRepository;
+import com.nutricheck.util.IngredientClusterer;
+import com.nutricheck.util.IngredientNormalizer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Offline job that folds near-duplicate ingredients (plurals, E-number and spelling variants, typos) into one
+ * canonical row per ingredient.
+ * The table is read page by page as a projection, clustered in memory (see IngredientClusterer), and each cluster
+ * is merged in its own short transaction: the canonical row (the best confirmed spelling) gets the other names as
+ * aliases, and the other rows are marked merged. Rows whose risk level or category disagree with the canonical row
+ * are never merged; they are logged for review. scan_results are then repointed with batched UPDATEs, each committed
+ * on its own, so no lock is held for long. Merged rows are deleted on a later run, once every instance has reloaded
+ * its IngredientIndex and stopped handing out their IDs.
+ * Incremental runs only keep the ingredients no run has compared yet (Ingredient.comparedAt), plus the compared ones
+ * sharing a canonical key or an LSH band with them, so memory follows the number of new rows rather than the table
+ * size. New rows are found by that column rather than by an ID high-water mark: pooled IDs are committed out of
+ * order across instances, so a row can appear below an ID the previous run already passed.
+ */
+@Slf4j
+@Service
+public class IngredientCanonicalizationService {
+
+    private final CanonicalizationProperties properties;
+    private final IngredientRepository ingredientRepository;
+    private final IngredientIndex ingredientIndex;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTx;
+    private final IngredientClusterer clusterer;
+    private final Counter mergedCounter;
+    private final Counter repointedCounter;
+
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ingredient-canonicalization");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile CanonicalizationReport lastReport;
+
+    public IngredientCanonicalizationService(CanonicalizationProperties properties,
+                                             IngredientRepository ingredientRepository,
+                                             IngredientIndex ingredientIndex, JdbcTemplate jdbcTemplate,
+                                             PlatformTransactionManager transactionManager,
+                                             MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.ingredientRepository = ingredientRepository;
+        this.ingredientIndex = ingredientIndex;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.clusterer = new IngredientClusterer(properties.getBands(), properties.getRows(),
+                properties.getMinSimilarity(), properties.getMinLength(), properties.getMaxClusterSize());
+        this.mergedCounter = Counter.builder("nutricheck.canonicalization.merged")
+                .description("Ingredient rows folded into a canonical row")
+                .register(meterRegistry);
+        this.repointedCounter = Counter.builder("nutricheck.canonicalization.repointed")
+                .description("Scan results moved to a canonical ingredient")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${nutricheck.canonicalization.cron:-}")
+    public void scheduledRun() {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Ingredient canonicalization still running, skipping scheduled run");
+            return;
+        }
+        try {
+            run(false);
+        } catch (Exception e) {
+            log.error("Ingredient canonicalization failed", e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Start a run in the background
+     *
+     * @param full compare every ingredient instead of only those added since the last run
+     * @return false when a run is already in progress
+     */
+    public boolean start(boolean full) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        runner.execute(() -> {
+            try {
+                run(full);
+            } catch (Exception e) {
+                log.error("Ingredient canonicalization failed", e);
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public Optional<CanonicalizationReport> getLastReport() {
+        return Optional.ofNullable(lastReport);
+    }
+
+    void run(boolean full) {
+        long start = System.nanoTime();
+        int purged = purgeMerged();
+
+        List<IngredientClusterer.Name> names = loadNames(full);
+        List<List<IngredientClusterer.Name>> clusters = clusterer.cluster(names);
+        log.info("Ingredient canonicalization ({}): {} ingredients, {} clusters", full ? "full" : "incremental",
+                names.size(), clusters.size());
+
+        int merged = 0;
+        long repointed = 0;
+        Map<String, Integer> wordCounts = wordCounts(names);
+        for (List<IngredientClusterer.Name> cluster : clusters) {
+            try {
+                MergeResult result = merge(cluster, wordCounts);
+                merged += result.merged();
+                repointed += result.repointed();
+            } catch (Exception e) {
+                // Left for the next full run; typically a concurrent change to one of the rows
+                log.warn("Could not merge ingredients {}: {}", cluster, e.getMessage());
+            }
+        }
+
+        markCompared(names);
+
+        if (merged > 0 || purged > 0) {
+            ingredientIndex.refresh();
+        }
+
+        lastReport = CanonicalizationReport.builder()
+                .full(full)
+                .scannedIngredients(names.size())
+                .clusters(clusters.size())
+                .mergedIngredients(merged)
+                .repointedResults(repointed)
+                .purgedIngredients(purged)
+                .durationMs((System.nanoTime() - start) / 1_000_000)
+                .finishedAt(LocalDateTime.now())
+                .build();
+        log.info("Ingredient canonicalization finished: {}", lastReport);
+    }
+
+    private List<IngredientClusterer.Name> loadNames(boolean full) {
+        List<IngredientClusterer.Name> names = new ArrayList<>();
+        forEachNamePage(!full, page -> page.forEach(view ->
+                names.add(new IngredientClusterer.Name(view.getId(), view.getName(), true))));
+        if (full || names.isEmpty()) {
+            return names;
+        }
+        Set<Long> freshIds = names.stream().map(IngredientClusterer.Name::id).collect(Collectors.toSet());
+
+        // Older rows only matter when they could pair with a fresh one: same canonical key or a shared band
+        Set<String> freshKeys = new HashSet<>();
+        Set<Long> freshBands = new HashSet<>();
+        for (IngredientClusterer.Name name : names) {
+            String key = IngredientClusterer.canonicalKey(name.name());
+            freshKeys.add(key);
+            for (long band : clusterer.bandKeys(key)) {
+                freshBands.add(band);
+            }
+        }
+        forEachNamePage(false, page -> {
+            for (IngredientRepository.NameView view : page) {
+                if (freshIds.contains(view.getId())) {
+                    continue;
+                }
+                String key = IngredientClusterer.canonicalKey(view.getName());
+                if (freshKeys.contains(key) || Arrays.stream(clusterer.bandKeys(key)).anyMatch(freshBands::contains)) {
+                    names.add(new IngredientClusterer.Name(view.getId(), view.getName(), false));
+                }
+            }
+        });
+        return names;
+    }
+
+    // Live rows (only those not compared yet, if asked) in ID order, one read-only transaction per page
+    private void forEachNamePage(boolean uncomparedOnly, Consumer<List<IngredientRepository.NameView>> consumer) {
+        long cursor = 0;
+        while (true) {
+            long from = cursor;
+            PageRequest pageRequest = PageRequest.of(0, properties.getPageSize());
+            List<IngredientRepository.NameView> page = readOnlyTx.execute(status -> uncomparedOnly
+                    ? ingredientRepository.findUncomparedNamePage(from, pageRequest)
+                    : ingredientRepository.findNamePage(from, pageRequest));
+            consumer.accept(page);
+            if (page.size() < properties.getPageSize()) {
+                return;
+            }
+            cursor = page.get(page.size() - 1).getId();
+        }
+    }
+
+    // Only the rows this run loaded: one inserted meanwhile stays null and is picked up by the next run
+    private void markCompared(List<IngredientClusterer.Name> names) {
+        List<Long> ids = names.stream().filter(IngredientClusterer.Name::fresh).map(IngredientClusterer.Name::id).toList();
+        LocalDateTime now = LocalDateTime.now();
+        for (int from = 0; from < ids.size(); from += properties.getPageSize()) {
+            List<Long> batch = ids.subList(from, Math.min(ids.size(), from + properties.getPageSize()));
+            transactionTemplate.executeWithoutResult(status -> ingredientRepository.markCompared(batch, now));
+        }
+    }
+
+    private record MergeResult(int merged, long repointed) {
+    }
+
+    private MergeResult merge(List<IngredientClusterer.Name> cluster, Map<String, Integer> wordCounts) {
+        IngredientClusterer.Name canonical = chooseCanonical(cluster, wordCounts);
+        // Grouping is transitive; every row must be close to the one it is folded into
+        List<Long> variantIds = cluster.stream()
+                .filter(name -> name.id() != canonical.id())
+                .filter(name -> clusterer.sameIngredient(canonical.name(), name.name()))
+                .map(IngredientClusterer.Name::id)
+                .toList();
+        if (variantIds.isEmpty()) {
+            return new MergeResult(0, 0);
+        }
+
+        List<Long> mergedIds = transactionTemplate.execute(status -> fold(canonical.id(), variantIds));
+        if (mergedIds == null || mergedIds.isEmpty()) {
+            return new MergeResult(0, 0);
+        }
+        long repointed = repoint(mergedIds, canonical.id());
+        mergedCounter.increment(mergedIds.size());
+        log.info("Merged ingredients {} into {} ({}), repointed {} scan results",
+                mergedIds, canonical.id(), canonical.name(), repointed);
+        return new MergeResult(mergedIds.size(), repointed);
+    }
+
+    /**
+     * The spelling to keep: the one whose rarest word is most common across the loaded names (a typo makes a word
+     * rare, so a typo does not win over a spelling other names confirm), then the key most rows share, then the
+     * oldest row. Scan references play no part: a popular typo is still a typo.
+     */
+    static IngredientClusterer.Name chooseCanonical(List<IngredientClusterer.Name> cluster,
+                                                    Map<String, Integer> wordCounts) {
+        Map<String, Long> keyCounts = cluster.stream()
+                .collect(Collectors.groupingBy(name -> IngredientClusterer.canonicalKey(name.name()),
+                        Collectors.counting()));
+        return cluster.stream()
+                .min(Comparator.<IngredientClusterer.Name>comparingInt(name -> -rarestWordCount(name, wordCounts))
+                        .thenComparingLong(name -> -keyCounts.get(IngredientClusterer.canonicalKey(name.name())))
+                        .thenComparingLong(IngredientClusterer.Name::id))
+                .orElseThrow();
+    }
+
+    private static int rarestWordCount(IngredientClusterer.Name name, Map<String, Integer> wordCounts) {
+        int rarest = Integer.MAX_VALUE;
+        for (String word : IngredientClusterer.canonicalKey(name.name()).split(" ")) {
+            rarest = Math.min(rarest, wordCounts.getOrDefault(word, 0));
+        }
+        return rarest;
+    }
+
+    /**
+     * In how many names each canonical word occurs
+     */
+    static Map<String, Integer> wordCounts(List<IngredientClusterer.Name> names) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (IngredientClusterer.Name name : names) {
+            for (String word : new HashSet<>(List.of(IngredientClusterer.canonicalKey(name.name()).split(" ")))) {
+                counts.merge(word, 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    // Runs in one short transaction: aliases and missing details move to the canonical row, the others are marked
+    private List<Long> fold(long canonicalId, List<Long> variantIds) {
+        Ingredient canonical = ingredientRepository.findById(canonicalId).orElse(null);
+        if (canonical == null || canonical.getMergedInto() != null) {
+            return List.of();
+        }
+        List<Ingredient> variants = new ArrayList<>();
+        for (Ingredient variant : ingredientRepository.findAllById(variantIds)) {
+            if (variant.getMergedInto() != null) {
+                continue;
+            }
+            // A different verdict is not a spelling variant to fold away silently
+            if (conflicts(canonical.getRiskLevel(), variant.getRiskLevel())
+                    || conflicts(canonical.getCategory(), variant.getCategory())
+                    || conflicts(canonical.getProductCategory(), variant.getProductCategory())) {
+                log.warn("Not merging ingredient {} ({}, risk {}, category {}) into {} ({}, risk {}, category {}):"
+                                + " needs review",
+                        variant.getId(), variant.getName(), variant.getRiskLevel(), variant.getCategory(),
+                        canonical.getId(), canonical.getName(), canonical.getRiskLevel(), canonical.getCategory());
+                continue;
+            }
+            if (canonical.getRiskLevel() == null) {
+                canonical.setRiskLevel(variant.getRiskLevel());
+            }
+            if (canonical.getCategory() == null) {
+                canonical.setCategory(variant.getCategory());
+            }
+            if (canonical.getProductCategory() == null) {
+                canonical.setProductCategory(variant.getProductCategory());
+            }
+            variants.add(variant);
+        }
+        if (variants.isEmpty()) {
+            return List.of();
+        }
+
+        Map<String, String> aliases = new LinkedHashMap<>();
+        addAliases(aliases, canonical.getAliases());
+        LocalDateTime now = LocalDateTime.now();
+        for (Ingredient variant : variants) {
+            addAlias(aliases, variant.getName());
+            addAliases(aliases, variant.getAliases());
+            if (canonical.getDescription() == null) {
+                canonical.setDescription(variant.getDescription());
+            }
+            if (canonical.getSideEffects() == null) {
+                canonical.setSideEffects(variant.getSideEffects());
+            }
+            variant.setMergedInto(canonicalId);
+            variant.setMergedAt(now);
+        }
+        aliases.remove(IngredientNormalizer.normalize(canonical.getName()));
+        canonical.setAliases(aliases.isEmpty() ? null : String.join(", ", aliases.values()));
+
+        List<Long> mergedIds = variants.stream().map(Ingredient::getId).toList();
+        // Rows merged into a variant earlier now point straight at the canonical row
+        List<Ingredient> earlier = ingredientRepository.findByMergedIntoIn(mergedIds);
+        earlier.forEach(row -> row.setMergedInto(canonicalId));
+
+        ingredientRepository.save(canonical);
+        ingredientRepository.saveAll(variants);
+        ingredientRepository.saveAll(earlier);
+        return mergedIds;
+    }
+
+    private static boolean conflicts(String a, String b) {
+        return a != null && b != null && !a.trim().equalsIgnoreCase(b.trim());
+    }
+
+    private static boolean conflicts(ProductCategory a, ProductCategory b) {
+        return a != null && b != null && a != b;
+    }
+
+    // Aliases are stored comma-separated, so names containing separators are not kept as aliases
+    private static void addAliases(Map<String, String> aliases, String list) {
+        if (list == null) {
+            return;
+        }
+        for (String alias : list.split("[,;]")) {
+            addAlias(aliases, alias);
+        }
+    }
+
+    private static void addAlias(Map<String, String> aliases, String alias) {
+        if (alias == null || alias.contains(",") || alias.contains(";")) {
+            return;
+        }
+        String key = IngredientNormalizer.normalize(alias);
+        if (!key.isEmpty()) {
+            aliases.putIfAbsent(key, alias.trim());
+        }
+    }
+
+    // Batches of repointBatchSize rows, each UPDATE committed on its own (scan_results is not second-level cached)
+    private long repoint(List<Long> fromIds, long toId) {
+        String placeholders = String.join(", ", Collections.nCopies(fromIds.size(), "?"));
+        String sql = "UPDATE scan_results SET ingredient_id = ? WHERE ingredient_id IN (" + placeholders + ") LIMIT "
+                + properties.getRepointBatchSize();
+        Object[] args = new Object[fromIds.size() + 1];
+        args[0] = toId;
+        for (int i = 0; i < fromIds.size(); i++) {
+            args[i + 1] = fromIds.get(i);
+        }
+
+        long total = 0;
+        int updated;
+        do {
+            updated = jdbcTemplate.update(sql, args);
+            total += updated;
+        } while (updated >= properties.getRepointBatchSize());
+        repointedCounter.increment(total);
+        return total;
+    }
+
+    // Deletes rows merged more than purgeAfter ago; results written against them in the meantime are moved first
+    private int purgeMerged() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(properties.getPurgeAfter());
+        List<Ingredient> expired = readOnlyTx.execute(status -> ingredientRepository.findByMergedAtBefore(cutoff));
+        if (expired == null || expired.isEmpty()) {
+            return 0;
+        }
+
+        int purged = 0;
+        Map<Long, List<Long>> byTarget = expired.stream().collect(Collectors.groupingBy(Ingredient::getMergedInto,
+                Collectors.mapping(Ingredient::getId, Collectors.toList())));
+        for (Map.Entry<Long, List<Long>> target : byTarget.entrySet()) {
+            for (int from = 0; from < target.getValue().size(); from += properties.getRepointBatchSize()) {
+                List<Long> ids = target.getValue().subList(from,
+                        Math.min(from + properties.getRepointBatchSize(), target.getValue().size()));
+                repoint(ids, target.getKey());
+                try {
+                    transactionTemplate.executeWithoutResult(status -> ingredientRepository.deleteAllById(ids));
+                    purged += ids.size();
+                } catch (DataAccessException e) {
+                    // A result was written against one of them after the repoint; the next run moves it
+                    log.warn("Could not delete merged ingredients {} yet: {}", ids, e.getMessage());
+                }
+            }
+        }
+        log.info("Deleted {} merged ingredients", purged);
+        return purged;
+    }
+
+    @PreDestroy
+    public void stop() {
+        runner.shutdownNow();
+    }
+}
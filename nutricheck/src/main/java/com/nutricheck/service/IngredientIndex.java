@@ -0,0 +1,235 @@
+package com.nutricheck.service;
+
+import com.nutricheck.entity.Ingredient;
+import com.nutricheck.repository.IngredientRepository;
+import com.nutricheck.util.IngredientNormalizer;
+import com.nutricheck.util.StringSimilarity;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-process lookup index over ingredient names and aliases.
+ * Exact lookups hit a normalized-name hash map (plus a punctuation-free "compact" form, so E-330 finds E330);
+ * near-exact lookups use a trigram index to pick candidates and a bounded edit distance to verify them.
+ * Warmed on startup, reloaded periodically, and updated after commit when IngredientResolver inserts ingredients.
+ * The rows held here are detached copies: updates through JPA refresh the second-level cache but not this index,
+ * so they show up here with the next refresh.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IngredientIndex {
+
+    private final IngredientRepository ingredientRepository;
+
+    private volatile Snapshot snapshot = new Snapshot();
+
+    public record Match(Ingredient ingredient, String matchedKey, double confidence) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        refresh();
+    }
+
+    /**
+     * Rebuild the index from the database and swap it in atomically
+     */
+    @Scheduled(initialDelayString = "${nutricheck.ingredient-index.refresh-interval:PT10M}",
+            fixedDelayString = "${nutricheck.ingredient-index.refresh-interval:PT10M}")
+    public void refresh() {
+        try {
+            long start = System.nanoTime();
+            Snapshot fresh = new Snapshot();
+            List<Ingredient> ingredients = ingredientRepository.findAll();
+            ingredients.forEach(fresh::add);
+            snapshot = fresh;
+            log.info("Ingredient index loaded {} ingredients ({} names and aliases) in {} ms",
+                    ingredients.size(), fresh.exact.size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            log.error("Failed to load ingredient index", e);
+        }
+    }
+
+    /**
+     * Add ingredients once the surrounding transaction commits (immediately when there is none),
+     * so the index never serves rows that were rolled back
+     */
+    public void addAfterCommit(Collection<Ingredient> ingredients) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            ingredients.forEach(this::add);
+            return;
+        }
+        List<Ingredient> pending = List.copyOf(ingredients);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                pending.forEach(IngredientIndex.this::add);
+            }
+        });
+    }
+
+    public void add(Ingredient ingredient) {
+        snapshot.add(ingredient);
+    }
+
+    /**
+     * Exact match on normalized name or alias, falling back to the punctuation-free form
+     */
+    public Optional<Ingredient> findExact(String name) {
+        String key = IngredientNormalizer.normalize(name);
+        if (key.isEmpty()) {
+            return Optional.empty();
+        }
+        Snapshot current = snapshot;
+        Ingredient exact = current.exact.get(key);
+        if (exact == null) {
+            exact = current.compact.get(compact(key));
+        }
+        return Optional.ofNullable(exact);
+    }
+
+    /**
+     * Closest name or alias within maxEdits edits.
+     * Exact and compact hits score 1.0 and 0.97; fuzzy hits score by relative edit distance.
+     */
+    public Optional<Match> findClosest(String name, int maxEdits) {
+        String key = IngredientNormalizer.normalize(name);
+        if (key.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Snapshot current = snapshot;
+        Ingredient exact = current.exact.get(key);
+        if (exact != null) {
+            return Optional.of(new Match(exact, key, 1.0));
+        }
+        String compactKey = compact(key);
+        Ingredient compact = current.compact.get(compactKey);
+        if (compact != null) {
+            return Optional.of(new Match(compact, compactKey, 0.97));
+        }
+        if (maxEdits <= 0) {
+            return Optional.empty();
+        }
+
+        // One edit destroys at most three trigrams, so candidates must share at least |grams| - 3k of them
+        Set<String> grams = trigrams(key);
+        int minShared = Math.max(1, grams.size() - 3 * maxEdits);
+
+        Map<Entry, Integer> shared = new IdentityHashMap<>();
+        for (String gram : grams) {
+            for (Entry entry : current.postings.getOrDefault(gram, List.of())) {
+                shared.merge(entry, 1, Integer::sum);
+            }
+        }
+
+        Match best = null;
+        for (Map.Entry<Entry, Integer> candidate : shared.entrySet()) {
+            if (candidate.getValue() < minShared) {
+                continue;
+            }
+            Entry entry = candidate.getKey();
+            int distance = StringSimilarity.levenshtein(key, entry.key(), maxEdits);
+            if (distance > maxEdits) {
+                continue;
+            }
+            double confidence = 1.0 - (double) distance / Math.max(key.length(), entry.key().length());
+            if (best == null || confidence > best.confidence()) {
+                best = new Match(entry.ingredient(), entry.key(), confidence);
+            }
+        }
+        return Optional.ofNullable(best);
+    }
+
+    public int size() {
+        return snapshot.exact.size();
+    }
+
+    // "E-330" and "E330", "citric-acid" and "citric acid" compare equal
+    static String compact(String key) {
+        StringBuilder sb = new StringBuilder(key.length());
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    static Set<String> trigrams(String key) {
+        String padded = "$" + key + "$";
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    private record Entry(String key, Ingredient ingredient) {
+    }
+
+    private static class Snapshot {
+        private final Map<String, Ingredient> exact = new ConcurrentHashMap<>();
+        private final Map<String, Ingredient> compact = new ConcurrentHashMap<>();
+        private final Map<String, List<Entry>> postings = new ConcurrentHashMap<>();
+
+        synchronized void add(Ingredient ingredient) {
+            // Merged rows are reachable through the aliases of the row they were merged into
+            if (ingredient.getMergedInto() != null) {
+                return;
+            }
+            addKey(ingredient.getName(), ingredient);
+            if (ingredient.getAliases() != null) {
+                for (String alias : ingredient.getAliases().split("[,;]")) {
+                    addKey(alias, ingredient);
+                }
+            }
+        }
+
+        private void addKey(String name, Ingredient ingredient) {
+            String key = IngredientNormalizer.normalize(name);
+            if (key.isEmpty()) {
+                return;
+            }
+            // First ingredient to claim a key keeps it; the same ingredient re-added (after an update) replaces its copy
+            Ingredient previous = exact.get(key);
+            if (previous != null && !Objects.equals(previous.getId(), ingredient.getId())) {
+                return;
+            }
+            exact.put(key, ingredient);
+            compact.putIfAbsent(compact(key), ingredient);
+            if (previous != null) {
+                compact.replace(compact(key), previous, ingredient);
+                for (String gram : trigrams(key)) {
+                    List<Entry> list = postings.get(gram);
+                    if (list != null) {
+                        list.removeIf(e -> e.key().equals(key));
+                    }
+                }
+            }
+            Entry entry = new Entry(key, ingredient);
+            for (String gram : trigrams(key)) {
+                postings.computeIfAbsent(gram, g -> new CopyOnWriteArrayList<>()).add(entry);
+            }
+        }
+    }
+}
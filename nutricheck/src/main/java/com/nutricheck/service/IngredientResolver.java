@@ -0,0 +1,150 @@
+package com.nutricheck.service;
+
+import com.nutricheck.dto.AiAnalysisResponse;
+import com.nutricheck.dto.IngredientAnalysis;
+import com.nutricheck.dto.enums.ProductCategory;
+import com.nutricheck.entity.Ingredient;
+import com.nutricheck.repository.IngredientRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps the ingredient names of an analysis to rows of the ingredients table, creating the missing ones.
+ * Shared by the synchronous scan writes, bulk imports and the write-behind queue.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IngredientResolver {
+
+    private final IngredientRepository ingredientRepository;
+    private final IngredientIndex ingredientIndex;
+
+    /**
+     * The analyses that can be stored: those without an ingredient name are dropped
+     */
+    public List<IngredientAnalysis> validAnalyses(AiAnalysisResponse aiResponse) {
+        if (aiResponse.getResults() == null) {
+            return List.of();
+        }
+        List<IngredientAnalysis> valid = new ArrayList<>();
+        for (IngredientAnalysis analysis : aiResponse.getResults()) {
+            if (analysis.getIngredientName() == null || analysis.getIngredientName().isBlank()) {
+                log.warn("Skipping ingredient analysis without a name: {}", analysis);
+                continue;
+            }
+            valid.add(analysis);
+        }
+        return valid;
+    }
+
+    /**
+     * Find existing ingredients or create the missing ones; must run in a transaction.
+     * Names and aliases are answered from the in-memory IngredientIndex; only misses go to the database
+     * (one SELECT for all of them), and new ingredients are inserted in one batch, labelled with the product category
+     * their verdict was given for. Keyed by nameKey.
+     */
+    public Map<String, Ingredient> resolve(List<IngredientAnalysis> analyses, ProductCategory category) {
+        Map<String, Ingredient> resolved = new HashMap<>();
+        Set<String> misses = new LinkedHashSet<>();
+        for (IngredientAnalysis analysis : analyses) {
+            String key = nameKey(analysis.getIngredientName());
+            if (resolved.containsKey(key)) {
+                continue;
+            }
+            ingredientIndex.findExact(key).ifPresentOrElse(
+                    ingredient -> resolved.put(key, ingredient),
+                    () -> misses.add(key));
+        }
+
+        if (!misses.isEmpty()) {
+            // The index may not have seen rows written by other instances yet
+            List<Ingredient> found = ingredientRepository.findByLowerCaseNameIn(misses);
+            Map<Long, Ingredient> canonical = canonicalRows(found);
+            for (Ingredient existing : found) {
+                Ingredient target = existing.getMergedInto() == null
+                        ? existing
+                        : canonical.get(existing.getMergedInto());
+                if (target != null) {
+                    resolved.putIfAbsent(nameKey(existing.getName()), target);
+                    ingredientIndex.add(target);
+                }
+            }
+        }
+
+        Map<String, Ingredient> created = new LinkedHashMap<>();
+        for (IngredientAnalysis analysis : analyses) {
+            String key = nameKey(analysis.getIngredientName());
+            if (resolved.containsKey(key) || created.containsKey(key)) {
+                continue;
+            }
+            created.put(key, newIngredient(analysis, category));
+        }
+
+        if (!created.isEmpty()) {
+            ingredientRepository.saveAll(created.values());
+            ingredientIndex.addAfterCommit(created.values());
+            resolved.putAll(created);
+            log.info("Created {} new ingredients: {}", created.size(), created.keySet());
+        }
+        return resolved;
+    }
+
+    /**
+     * The ingredient as it will be stored, without touching the database: the indexed row when known,
+     * otherwise the row resolve would create. That row has no ID: it is only assigned on insert, and another scan
+     * may create the same ingredient first, so callers must not hand out ingredient IDs of pending scans.
+     */
+    public Ingredient describe(IngredientAnalysis analysis, ProductCategory category) {
+        return ingredientIndex.findExact(nameKey(analysis.getIngredientName()))
+                .orElseGet(() -> newIngredient(analysis, category));
+    }
+
+    // Rows the canonicalization job merged away resolve to the row they were merged into
+    private Map<Long, Ingredient> canonicalRows(List<Ingredient> found) {
+        Set<Long> ids = new HashSet<>();
+        for (Ingredient ingredient : found) {
+            if (ingredient.getMergedInto() != null) {
+                ids.add(ingredient.getMergedInto());
+            }
+        }
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, Ingredient> rows = new HashMap<>();
+        ingredientRepository.findAllById(ids).forEach(row -> rows.put(row.getId(), row));
+        return rows;
+    }
+
+    private Ingredient newIngredient(IngredientAnalysis analysis, ProductCategory category) {
+        List<String> sideEffects = analysis.getSideEffects();
+        String sideEffectsStr = sideEffects != null && !sideEffects.isEmpty()
+                ? String.join(", ", sideEffects)
+                : null;
+
+        return Ingredient.builder()
+                .name(analysis.getIngredientName().trim())
+                .description(analysis.getDescription())
+                .category(analysis.getCategory())
+                .riskLevel(analysis.getRisk())
+                .productCategory(category)
+                .sideEffects(sideEffectsStr)
+                .build();
+    }
+
+    // Matches the lower(i.name) comparison in IngredientRepository.findByLowerCaseNameIn
+    public static String nameKey(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+}
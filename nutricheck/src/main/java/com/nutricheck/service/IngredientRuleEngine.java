@@ -0,0 +1,78 @@
+package com.nutricheck.service;
+
+import com.nutricheck.config.RuleEngineProperties;
+import com.nutricheck.dto.IngredientAnalysis;
+import com.nutricheck.dto.enums.ProductCategory;
+import com.nutricheck.entity.Ingredient;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Deterministic classification from the ingredients master table.
+ * Names and aliases are looked up in the IngredientIndex; an exact, alias or punctuation-free hit whose verdict was
+ * given for the same product category is turned into an IngredientAnalysis without calling the model.
+ * Near misses are never served as verdicts: one edit turns "sodium nitrite" into "sodium nitrate".
+ */
+@Service
+@RequiredArgsConstructor
+public class IngredientRuleEngine {
+
+    private final IngredientIndex ingredientIndex;
+    private final RuleEngineProperties properties;
+
+    /**
+     * Known verdict for an ingredient in a product category, when its name or an alias matches exactly
+     */
+    public Optional<IngredientAnalysis> classify(String name, ProductCategory category) {
+        if (!properties.isEnabled()) {
+            return Optional.empty();
+        }
+        return ingredientIndex.findClosest(name, 0)
+                .filter(m -> m.ingredient().getRiskLevel() != null)
+                .filter(m -> appliesTo(m.ingredient(), category))
+                .map(m -> toAnalysis(name, m.ingredient()));
+    }
+
+    private boolean appliesTo(Ingredient ingredient, ProductCategory category) {
+        ProductCategory verdictCategory = ingredient.getProductCategory() != null
+                ? ingredient.getProductCategory()
+                : properties.getUnlabelledCategory();
+        return category == null || verdictCategory == category;
+    }
+
+    // Reported under the name the user submitted; the matched row may be spelled differently or found by an alias
+    private IngredientAnalysis toAnalysis(String name, Ingredient ingredient) {
+        String risk = ingredient.getRiskLevel().toUpperCase(Locale.ROOT);
+        List<String> sideEffects = ingredient.getSideEffects() != null
+                ? new ArrayList<>(Arrays.asList(ingredient.getSideEffects().split(",\\s*")))
+                : new ArrayList<>();
+
+        String explanation = sideEffects.isEmpty()
+                ? "No notable health concerns recorded."
+                : "May cause: " + String.join(", ", sideEffects) + ".";
+
+        return new IngredientAnalysis(
+                name,
+                risk,
+                severityFor(risk),
+                explanation,
+                ingredient.getDescription(),
+                ingredient.getCategory(),
+                sideEffects
+        );
+    }
+
+    private static String severityFor(String risk) {
+        return switch (risk) {
+            case "HIGH" -> "Severe";
+            case "MEDIUM" -> "Moderate";
+            default -> "Minimal";
+        };
+    }
+}
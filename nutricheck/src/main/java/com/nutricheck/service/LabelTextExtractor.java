@@ -0,0 +1,249 @@
+package com.nutricheck.service;
+
+import com.nutricheck.config.OcrProperties;
+import com.nutricheck.util.IngredientNormalizer;
+import com.nutricheck.util.LabelTextParser;
+import com.sun.jna.Pointer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.sourceforge.tess4j.ITessAPI;
+import net.sourceforge.tess4j.ITessAPI.TessBaseAPI;
+import net.sourceforge.tess4j.ITessAPI.TessPageIterator;
+import net.sourceforge.tess4j.ITessAPI.TessResultIterator;
+import net.sourceforge.tess4j.TessAPI1;
+import org.springframework.stereotype.Component;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads the ingredient panel of a label photo with Tesseract, on a pool of one worker per core.
+ * Each worker keeps its own initialized Tesseract engine (engines are not thread-safe, and loading the
+ * traineddata per image would cost more than recognizing it). When the panel is found with enough confidence
+ * the scan can be analyzed as text; in every other case (disabled, queue full, timeout, unreadable) the caller
+ * falls back to the multimodal model.
+ */
+@Slf4j
+@Component
+public class LabelTextExtractor {
+
+    private static final int LEVEL = ITessAPI.TessPageIteratorLevel.RIL_TEXTLINE;
+
+    private final OcrProperties properties;
+    private final ImagePreprocessor imagePreprocessor;
+    private final ThreadPoolExecutor workers;
+    private final ThreadLocal<TessBaseAPI> engines = new ThreadLocal<>();
+    private final List<TessBaseAPI> allEngines = new CopyOnWriteArrayList<>();
+    private final Timer recognitionTimer;
+    private final Map<String, Counter> outcomes = new HashMap<>();
+
+    // Cleared when the native library cannot be loaded or Tesseract cannot start (missing language data),
+    // so scans stop paying for the attempt
+    private volatile boolean available;
+
+    private record Recognition(String outcome, LabelTextParser.LabelText text) {
+    }
+
+    // Tesseract loaded but could not initialize; retrying on the next scan would fail the same way
+    private static final class EngineUnavailableException extends IllegalStateException {
+        EngineUnavailableException(String message) {
+            super(message);
+        }
+    }
+
+    public LabelTextExtractor(OcrProperties properties, ImagePreprocessor imagePreprocessor,
+                              MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.imagePreprocessor = imagePreprocessor;
+        this.available = properties.isEnabled();
+
+        int size = properties.getWorkers() > 0 ? properties.getWorkers() : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "ocr-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        this.recognitionTimer = Timer.builder("nutricheck.ocr.duration")
+                .description("Time to recognize one label photo")
+                .register(meterRegistry);
+        for (String outcome : List.of("text", "low_confidence", "too_few_ingredients", "no_panel",
+                "undecodable", "busy", "timeout", "error")) {
+            outcomes.put(outcome, Counter.builder("nutricheck.ocr.results").tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+        Gauge.builder("nutricheck.ocr.queue", workers, pool -> pool.getQueue().size())
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return available;
+    }
+
+    /**
+     * Ingredient panel and product name read from the image, when good enough to skip the multimodal call
+     */
+    public Optional<LabelTextParser.LabelText> extract(Path image) {
+        if (!available) {
+            return Optional.empty();
+        }
+
+        Future<Recognition> future;
+        try {
+            future = workers.submit(() -> recognitionTimer.record(() -> recognize(image)));
+        } catch (RejectedExecutionException e) {
+            return outcome(new Recognition("busy", null));
+        }
+
+        try {
+            return outcome(future.get(properties.getTimeout().toMillis(), TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            return outcome(new Recognition("timeout", null));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof LinkageError || e.getCause() instanceof EngineUnavailableException) {
+                available = false;
+                log.error("Tesseract not available, disabling OCR: {}", e.getCause().getMessage());
+            } else {
+                log.warn("OCR failed: {}", e.getCause().getMessage());
+            }
+            return outcome(new Recognition("error", null));
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        }
+    }
+
+    private Optional<LabelTextParser.LabelText> outcome(Recognition recognition) {
+        outcomes.get(recognition.outcome()).increment();
+        log.debug("OCR outcome: {}", recognition.outcome());
+        return Optional.ofNullable(recognition.text());
+    }
+
+    private Recognition recognize(Path file) {
+        BufferedImage image = imagePreprocessor.decodeForOcr(file, properties.getMaxEdge());
+        if (image == null) {
+            return new Recognition("undecodable", null);
+        }
+
+        Optional<LabelTextParser.LabelText> parsed = LabelTextParser.parse(readLines(image));
+        if (parsed.isEmpty()) {
+            return new Recognition("no_panel", null);
+        }
+        LabelTextParser.LabelText text = parsed.get();
+        if (text.confidence() < properties.getMinConfidence()) {
+            return new Recognition("low_confidence", null);
+        }
+        if (IngredientNormalizer.canonicalize(text.ingredients()).size() < properties.getMinIngredients()) {
+            return new Recognition("too_few_ingredients", null);
+        }
+        return new Recognition("text", text);
+    }
+
+    private List<LabelTextParser.Line> readLines(BufferedImage image) {
+        BufferedImage gray = grayBytes(image);
+        byte[] pixels = ((DataBufferByte) gray.getRaster().getDataBuffer()).getData();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(pixels.length);
+        buffer.put(pixels).flip();
+
+        TessBaseAPI engine = engine();
+        List<LabelTextParser.Line> lines = new ArrayList<>();
+        try {
+            TessAPI1.TessBaseAPISetImage(engine, buffer, gray.getWidth(), gray.getHeight(), 1, gray.getWidth());
+            if (TessAPI1.TessBaseAPIRecognize(engine, null) != 0) {
+                return lines;
+            }
+            TessResultIterator results = TessAPI1.TessBaseAPIGetIterator(engine);
+            if (results == null) {
+                return lines;
+            }
+            try {
+                TessPageIterator page = TessAPI1.TessResultIteratorGetPageIterator(results);
+                TessAPI1.TessPageIteratorBegin(page);
+                do {
+                    Pointer text = TessAPI1.TessResultIteratorGetUTF8Text(results, LEVEL);
+                    if (text == null) {
+                        continue;
+                    }
+                    String line = text.getString(0, "UTF-8");
+                    TessAPI1.TessDeleteText(text);
+                    lines.add(new LabelTextParser.Line(line.strip(),
+                            TessAPI1.TessResultIteratorConfidence(results, LEVEL)));
+                } while (TessAPI1.TessPageIteratorNext(page, LEVEL) == ITessAPI.TRUE);
+            } finally {
+                TessAPI1.TessResultIteratorDelete(results);
+            }
+        } finally {
+            TessAPI1.TessBaseAPIClear(engine);
+        }
+        return lines;
+    }
+
+    private TessBaseAPI engine() {
+        TessBaseAPI engine = engines.get();
+        if (engine == null) {
+            engine = TessAPI1.TessBaseAPICreate();
+            String dataPath = properties.getTessdataPath().isBlank() ? null : properties.getTessdataPath();
+            if (TessAPI1.TessBaseAPIInit3(engine, dataPath, properties.getLanguage()) != 0) {
+                TessAPI1.TessBaseAPIDelete(engine);
+                throw new EngineUnavailableException("Could not initialize Tesseract for language "
+                        + properties.getLanguage() + " (tessdata: " + properties.getTessdataPath() + ")");
+            }
+            TessAPI1.TessBaseAPISetPageSegMode(engine, ITessAPI.TessPageSegMode.PSM_AUTO);
+            // Photos carry no usable DPI; this silences the per-image warning and sizes the text model
+            TessAPI1.TessBaseAPISetVariable(engine, "user_defined_dpi", "300");
+            engines.set(engine);
+            allEngines.add(engine);
+        }
+        return engine;
+    }
+
+    private static BufferedImage grayBytes(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            return image;
+        }
+        BufferedImage gray = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = gray.createGraphics();
+        try {
+            g.drawImage(image, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return gray;
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        workers.shutdown();
+        workers.awaitTermination(properties.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        for (TessBaseAPI engine : allEngines) {
+            TessAPI1.TessBaseAPIEnd(engine);
+            TessAPI1.TessBaseAPIDelete(engine);
+        }
+    }
+}
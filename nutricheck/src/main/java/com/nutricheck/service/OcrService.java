@@ -1,15 +1,25 @@
 package com.nutricheck.service;
 
+import com.nutricheck.ai.ModelUnavailableException;
 import com.nutricheck.dto.AiAnalysisResponse;
+import com.nutricheck.dto.IngredientAnalysis;
+import com.nutricheck.dto.ScanResponse;
 import com.nutricheck.dto.enums.ProductCategory;
 import com.nutricheck.entity.*;
+import com.nutricheck.mapper.ScanMapper;
 import com.nutricheck.repository.*;
+import com.nutricheck.upload.StagedUpload;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @Service
@@ -18,72 +28,32 @@ public class OcrService {
 
     private final AiService aiService;
     private final ScanRepository scanRepository;
-    private final IngredientRepository ingredientRepository;
     private final ScanResultRepository scanResultRepository;
     private final UserRepository userRepository;
+    private final ScanMapper scanMapper;
+    private final IngredientResolver ingredientResolver;
+    private final ScanMetrics scanMetrics;
+    private final ScanWriteBehind scanWriteBehind;
+    private final ScanService scanService;
+    private final PlatformTransactionManager transactionManager;
 
-    @Transactional
-    public Scan processImageScan(byte[] imageBytes, String contentType, Long userId, ProductCategory category) {
+    /**
+     * Analyze an image and record the scan. The model call runs outside any transaction,
+     * so no connection is held while waiting for it.
+     */
+    public ScanResponse processImageScan(StagedUpload upload, Long userId, ProductCategory category) {
         try {
             // 1. Get AI analysis (structured response)
-            AiAnalysisResponse aiResponse = aiService.analyzeImage(imageBytes, contentType, category);
+            AiAnalysisResponse aiResponse = aiService.analyzeImage(upload, category);
 
             log.info("AI Analysis completed - Product: {}, Ingredients count: {}",
                     aiResponse.getProductName(),
                     aiResponse.getResults() != null ? aiResponse.getResults().size() : 0);
 
-            // 2. Get user
-            User user = userRepository.findById(userId)
-                    .orElseThrow(() -> new RuntimeException("User not found with id: " + userId));
-
-            // 3. Create and save Scan
-            Scan scan = Scan.builder()
-                    .productName(aiResponse.getProductName())
-                    .scannedAt(LocalDateTime.now())
-                    .user(user)
-                    .build();
-            scan = scanRepository.save(scan);
-
-            log.info("Created scan ID: {} for product: {}", scan.getId(), aiResponse.getProductName());
-
-            // 4. Process each ingredient analysis result
-            if (aiResponse.getResults() != null && !aiResponse.getResults().isEmpty()) {
-                for (var analysis : aiResponse.getResults()) {
-                    try {
-                        // Find or create ingredient in master table
-                        Ingredient ingredient = findOrCreateIngredient(
-                                analysis.getIngredientName(),
-                                analysis.getDescription(),
-                                analysis.getCategory(),
-                                analysis.getRisk(),
-                                analysis.getSideEffects()
-                        );
-
-                        // Create scan result linking this scan to the ingredient
-                        ScanResult scanResult = ScanResult.builder()
-                                .scan(scan)
-                                .ingredient(ingredient)
-                                .risk(analysis.getRisk())
-                                .severity(analysis.getSeverity())
-                                .explanation(analysis.getExplanation())
-                                .build();
-
-                        scanResultRepository.save(scanResult);
-
-                        log.debug("Saved analysis for ingredient: {} (Risk: {}, Severity: {})",
-                                ingredient.getName(), analysis.getRisk(), analysis.getSeverity());
-
-                    } catch (Exception e) {
-                        log.error("Error processing ingredient: {}", analysis.getIngredientName(), e);
-                        // Continue processing other ingredients even if one fails
-                    }
-                }
-            } else {
-                log.warn("No ingredients found in AI response for product: {}", aiResponse.getProductName());
-            }
-
-            return scan;
+            return recordScan(aiResponse, userId, category);
 
+        } catch (ModelUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error processing image scan for user: {}", userId, e);
             throw new RuntimeException("Failed to process image: " + e.getMessage(), e);
@@ -91,35 +61,93 @@ public class OcrService {
     }
 
     /**
-     * Find existing ingredient or create new one
-     * This prevents duplicate ingredients in the database
+     * Record a finished analysis as a scan for the user and return it (the streaming endpoint calls this once the
+     * model is done). With write-behind on, this returns as soon as the scan is journaled and the database write
+     * is batched with others; otherwise the scan is written in its own transaction first.
+     */
+    public ScanResponse recordScan(AiAnalysisResponse aiResponse, Long userId, ProductCategory category) {
+        if (scanWriteBehind.isEnabled()) {
+            return scanWriteBehind.write(aiResponse, userId, category);
+        }
+        Scan scan = new TransactionTemplate(transactionManager)
+                .execute(status -> saveScan(aiResponse, userId, category));
+        return scanMetrics.stage(ScanMetrics.RESPONSE_ASSEMBLY, category,
+                () -> scanService.getScanById(scan.getId()));
+    }
+
+    /**
+     * Persist a finished analysis as a scan for the user, in the caller's transaction
      */
-    private Ingredient findOrCreateIngredient(
-            String name,
-            String description,
-            String category,
-            String riskLevel,
-            java.util.List<String> sideEffects
-    ) {
-        // Use repository method to find by name (case-insensitive)
-        return ingredientRepository.findByNameIgnoreCase(name)
-                .orElseGet(() -> {
-                    // Create new ingredient
-                    String sideEffectsStr = sideEffects != null && !sideEffects.isEmpty()
-                            ? String.join(", ", sideEffects)
-                            : null;
-
-                    Ingredient newIngredient = Ingredient.builder()
-                            .name(name)
-                            .description(description)
-                            .category(category)
-                            .riskLevel(riskLevel)
-                            .sideEffects(sideEffectsStr)
-                            .build();
-
-                    Ingredient saved = ingredientRepository.save(newIngredient);
-                    log.info("Created new ingredient: {} (Risk: {})", name, riskLevel);
-                    return saved;
-                });
+    @Transactional
+    public Scan saveScan(AiAnalysisResponse aiResponse, Long userId, ProductCategory category) {
+        return saveScans(List.of(aiResponse), userId, category).get(0);
+    }
+
+    /**
+     * Persist several finished analyses for one user (a bulk import chunk), in the order given.
+     * Scans, new ingredients and scan results are each written as one batch, and every ingredient
+     * of the whole batch is resolved in one lookup.
+     */
+    @Transactional
+    public List<Scan> saveScans(List<AiAnalysisResponse> aiResponses, Long userId, ProductCategory category) {
+        if (aiResponses.isEmpty()) {
+            return List.of();
+        }
+
+        // 2. Get user
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new RuntimeException("User not found with id: " + userId));
+
+        // 3. Create and save the scans, with their summary precomputed for list views
+        List<Scan> drafts = new ArrayList<>(aiResponses.size());
+        List<List<IngredientAnalysis>> analysesPerScan = new ArrayList<>(aiResponses.size());
+        for (AiAnalysisResponse aiResponse : aiResponses) {
+            List<IngredientAnalysis> analyses = ingredientResolver.validAnalyses(aiResponse);
+            if (analyses.isEmpty()) {
+                log.warn("No ingredients found in AI response for product: {}", aiResponse.getProductName());
+            }
+            Scan draft = Scan.builder()
+                    .productName(aiResponse.getProductName())
+                    .scannedAt(LocalDateTime.now())
+                    .user(user)
+                    .safetyScore(aiResponse.getSafetyScore())
+                    .overallAssessment(aiResponse.getOverallAssessment())
+                    .warningsFor(aiResponse.getWarningsFor() != null ? new ArrayList<>(aiResponse.getWarningsFor()) : null)
+                    .build();
+            scanMapper.applySummary(draft, scanMapper.summarizeRisks(
+                    analyses.stream().map(IngredientAnalysis::getRisk).toList()));
+            drafts.add(draft);
+            analysesPerScan.add(analyses);
+        }
+        List<Scan> scans = scanMetrics.stage(ScanMetrics.PERSISTENCE, category, () -> scanRepository.saveAll(drafts));
+
+        for (Scan scan : scans) {
+            log.info("Created scan ID: {} for product: {}", scan.getId(), scan.getProductName());
+        }
+
+        // 4. Resolve all ingredients in one lookup, then batch-insert the scan results
+        List<IngredientAnalysis> allAnalyses = analysesPerScan.stream().flatMap(List::stream).toList();
+        if (allAnalyses.isEmpty()) {
+            return scans;
+        }
+        Map<String, Ingredient> ingredients = scanMetrics.stage(ScanMetrics.INGREDIENT_RESOLUTION, category,
+                () -> ingredientResolver.resolve(allAnalyses, category));
+
+        List<ScanResult> scanResults = new ArrayList<>(allAnalyses.size());
+        for (int i = 0; i < scans.size(); i++) {
+            for (IngredientAnalysis analysis : analysesPerScan.get(i)) {
+                scanResults.add(ScanResult.builder()
+                        .scan(scans.get(i))
+                        .ingredient(ingredients.get(IngredientResolver.nameKey(analysis.getIngredientName())))
+                        .risk(analysis.getRisk())
+                        .severity(analysis.getSeverity())
+                        .explanation(analysis.getExplanation())
+                        .build());
+            }
+        }
+        scanMetrics.stage(ScanMetrics.PERSISTENCE, category, () -> scanResultRepository.saveAll(scanResults));
+
+        log.debug("Saved {} scan results for {} scans", scanResults.size(), scans.size());
+        return scans;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,113 @@
+package com.nutricheck.service;
+
+import com.nutricheck.dto.ScanJobResponse;
+import com.nutricheck.dto.ScanResponse;
+import com.nutricheck.dto.enums.ScanJobStatus;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * In-memory state of one asynchronous image scan.
+ * State changes and SSE subscriptions are synchronized on the job.
+ */
+@Slf4j
+@Getter
+public class ScanJob {
+
+    private final String id = UUID.randomUUID().toString();
+    private final Long userId;
+    private final LocalDateTime submittedAt = LocalDateTime.now();
+
+    private ScanJobStatus status = ScanJobStatus.QUEUED;
+    private LocalDateTime completedAt;
+    private ScanResponse result;
+    private String error;
+
+    private final List<SseEmitter> subscribers = new ArrayList<>();
+
+    public ScanJob(Long userId) {
+        this.userId = userId;
+    }
+
+    synchronized void markRunning() {
+        status = ScanJobStatus.RUNNING;
+        publish();
+    }
+
+    synchronized void complete(ScanResponse response) {
+        status = ScanJobStatus.COMPLETED;
+        result = response;
+        completedAt = LocalDateTime.now();
+        publish();
+    }
+
+    synchronized void fail(String message) {
+        status = ScanJobStatus.FAILED;
+        error = message;
+        completedAt = LocalDateTime.now();
+        publish();
+    }
+
+    public synchronized boolean isFinished() {
+        return status == ScanJobStatus.COMPLETED || status == ScanJobStatus.FAILED;
+    }
+
+    public synchronized ScanJobResponse toResponse() {
+        return ScanJobResponse.builder()
+                .jobId(id)
+                .status(status)
+                .submittedAt(submittedAt)
+                .completedAt(completedAt)
+                .result(result)
+                .error(error)
+                .build();
+    }
+
+    /**
+     * Register an SSE subscriber; it gets the current state immediately and every change after that
+     */
+    synchronized void subscribe(SseEmitter emitter) {
+        subscribers.add(emitter);
+        emitter.onCompletion(() -> unsubscribe(emitter));
+        emitter.onTimeout(() -> unsubscribe(emitter));
+        send(emitter);
+        if (isFinished()) {
+            subscribers.remove(emitter);
+            emitter.complete();
+        }
+    }
+
+    private synchronized void unsubscribe(SseEmitter emitter) {
+        subscribers.remove(emitter);
+    }
+
+    private void publish() {
+        for (SseEmitter emitter : List.copyOf(subscribers)) {
+            send(emitter);
+            if (isFinished()) {
+                emitter.complete();
+            }
+        }
+        if (isFinished()) {
+            subscribers.clear();
+        }
+    }
+
+    private void send(SseEmitter emitter) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .name(status.name().toLowerCase())
+                    .data(toResponse()));
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Dropping SSE subscriber for job {}: {}", id, e.getMessage());
+            subscribers.remove(emitter);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.nutricheck.service;
+
+import com.nutricheck.config.ScanJobProperties;
+import com.nutricheck.dto.ScanResponse;
+import com.nutricheck.dto.enums.ProductCategory;
+import com.nutricheck.upload.StagedUpload;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs image scans off the request thread.
+ * Jobs are kept in memory until they have been finished for longer than the configured retention.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ScanJobService {
+
+    private final OcrService ocrService;
+    private final ThreadPoolTaskExecutor scanJobExecutor;
+    private final ScanJobProperties properties;
+    private final ScanMetrics scanMetrics;
+
+    private final Map<String, ScanJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * Queue an image scan. The job takes ownership of the upload and closes it when done (or when rejected).
+     *
+     * @throws RejectedExecutionException when the worker queue is full
+     */
+    public ScanJob submit(StagedUpload upload, Long userId, ProductCategory category) {
+        evictExpiredJobs();
+
+        ScanJob job = new ScanJob(userId);
+        jobs.put(job.getId(), job);
+
+        try {
+            scanJobExecutor.execute(() -> run(job, upload, category));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            upload.close();
+            log.warn("Scan job queue full ({} queued), rejecting upload from user: {}", queueDepth(), userId);
+            throw e;
+        }
+
+        log.info("Queued scan job {} for user: {} (queue depth: {})", job.getId(), userId, queueDepth());
+        return job;
+    }
+
+    public Optional<ScanJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    /**
+     * Open an SSE stream that receives the job state on every change
+     */
+    public Optional<SseEmitter> subscribe(String jobId) {
+        return getJob(jobId).map(job -> {
+            SseEmitter emitter = new SseEmitter(properties.getSseTimeout().toMillis());
+            job.subscribe(emitter);
+            return emitter;
+        });
+    }
+
+    public int queueDepth() {
+        return scanJobExecutor.getThreadPoolExecutor().getQueue().size();
+    }
+
+    private void run(ScanJob job, StagedUpload upload, ProductCategory category) {
+        job.markRunning();
+        try (upload) {
+            ScanResponse response = scanMetrics.scan("image", category,
+                    () -> ocrService.processImageScan(upload, job.getUserId(), category));
+            job.complete(response);
+
+            log.info("Scan job {} completed - scan ID: {}", job.getId(), response.getScanId());
+        } catch (Exception e) {
+            log.error("Scan job {} failed", job.getId(), e);
+            job.fail("Processing failed: " + e.getMessage());
+        }
+    }
+
+    private void evictExpiredJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(properties.getRetention());
+        jobs.values().removeIf(job -> job.isFinished() && job.getCompletedAt().isBefore(cutoff));
+    }
+}
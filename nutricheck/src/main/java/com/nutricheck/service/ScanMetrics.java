@@ -0,0 +1,126 @@
+package com.nutricheck.service;
+
+import com.nutricheck.dto.enums.ProductCategory;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/**
+ * Observations for the scan pipeline.
+ * A whole scan is observed as nutricheck.scan (type, category) and each step inside it as nutricheck.scan.stage
+ * (stage, category). Every observation becomes a timer with a histogram and, with a tracing bridge on the
+ * classpath, a span; stage spans are children of the scan span when they run on the same thread.
+ */
+@Component
+@RequiredArgsConstructor
+public class ScanMetrics {
+
+    public static final String UPLOAD_READ = "upload.read";
+    public static final String OCR = "ocr";
+    public static final String PROMPT_BUILD = "prompt.build";
+    public static final String MODEL_CALL = "model.call";
+    public static final String PARSE = "parse";
+    public static final String INGREDIENT_RESOLUTION = "ingredient.resolution";
+    public static final String PERSISTENCE = "persistence";
+    public static final String RESPONSE_ASSEMBLY = "response.assembly";
+
+    private static final String SCAN = "nutricheck.scan";
+    private static final String STAGE = "nutricheck.scan.stage";
+
+    private final ObservationRegistry observationRegistry;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Work that may throw a checked exception (staging an upload throws IOException)
+     */
+    @FunctionalInterface
+    public interface Step<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    /**
+     * Observe a whole scan; type is "image" or "text"
+     */
+    public <T, E extends Exception> T scan(String type, ProductCategory category, Step<T, E> work) throws E {
+        Observation observation = Observation.createNotStarted(SCAN, observationRegistry)
+                .contextualName("scan " + type)
+                .lowCardinalityKeyValue("type", type)
+                .lowCardinalityKeyValue("category", tag(category));
+        return observe(observation, work);
+    }
+
+    /**
+     * Observe one stage of a scan
+     */
+    public <T, E extends Exception> T stage(String stage, ProductCategory category, Step<T, E> work) throws E {
+        Observation observation = Observation.createNotStarted(STAGE, observationRegistry)
+                .contextualName(stage)
+                .lowCardinalityKeyValue("stage", stage)
+                .lowCardinalityKeyValue("category", tag(category));
+        return observe(observation, work);
+    }
+
+    /**
+     * Start a stage that ends on another thread (a streamed model call); the caller stops it
+     */
+    public Observation startStage(String stage, ProductCategory category) {
+        return Observation.createNotStarted(STAGE, observationRegistry)
+                .contextualName(stage)
+                .lowCardinalityKeyValue("stage", stage)
+                .lowCardinalityKeyValue("category", tag(category))
+                .start();
+    }
+
+    /**
+     * Record prompt and completion tokens reported in the response metadata, if the provider sends them.
+     * operation is "text", "image" or "batch"; batches mix categories and pass null.
+     */
+    public void recordTokens(ChatResponse response, String operation, ProductCategory category) {
+        if (response == null || response.getMetadata() == null) {
+            return;
+        }
+        Usage usage = response.getMetadata().getUsage();
+        if (usage == null) {
+            return;
+        }
+        record("prompt", usage.getPromptTokens(), operation, category);
+        record("completion", usage.getCompletionTokens(), operation, category);
+    }
+
+    private void record(String type, Integer tokens, String operation, ProductCategory category) {
+        if (tokens == null || tokens <= 0) {
+            return;
+        }
+        DistributionSummary.builder("nutricheck.model.tokens")
+                .baseUnit("tokens")
+                .tag("type", type)
+                .tag("operation", operation)
+                .tag("category", tag(category))
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(tokens);
+    }
+
+    private static <T, E extends Exception> T observe(Observation observation, Step<T, E> work) throws E {
+        observation.start();
+        try (Observation.Scope scope = observation.openScope()) {
+            return work.run();
+        } catch (Throwable t) {
+            observation.error(t);
+            throw t;
+        } finally {
+            observation.stop();
+        }
+    }
+
+    private static String tag(ProductCategory category) {
+        return category != null ? category.name().toLowerCase(Locale.ROOT) : "mixed";
+    }
+}
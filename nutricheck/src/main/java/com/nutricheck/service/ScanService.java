@@ -1,97 +1,162 @@
 package com.nutricheck.service;
 
+import com.nutricheck.dto.ScanCursor;
+import com.nutricheck.dto.ScanPage;
 import com.nutricheck.dto.ScanResponse;
 import com.nutricheck.entity.Scan;
 import com.nutricheck.entity.ScanResult;
+import com.nutricheck.mapper.ScanMapper;
 import com.nutricheck.repository.ScanRepository;
 import com.nutricheck.repository.ScanResultRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class ScanService {
 
+    // Keeps the IN (...) list of the results query at a reasonable size
+    private static final int RESULT_QUERY_CHUNK = 500;
+
     private final ScanRepository scanRepository;
     private final ScanResultRepository scanResultRepository;
+    private final ScanMapper scanMapper;
+    private final PlatformTransactionManager transactionManager;
+    private final ScanWriteBehind scanWriteBehind;
 
     /**
-     * Get detailed scan information by ID
+     * Get detailed scan information by ID, including scans accepted but not yet written
      */
+    @Transactional(readOnly = true)
     public ScanResponse getScanById(Long scanId) {
-        Scan scan = scanRepository.findById(scanId)
-                .orElseThrow(() -> new RuntimeException("Scan not found with id: " + scanId));
+        Optional<Scan> scan = scanRepository.findWithUserById(scanId);
+        if (scan.isEmpty()) {
+            return scanWriteBehind.findPending(scanId)
+                    .orElseThrow(() -> new RuntimeException("Scan not found with id: " + scanId));
+        }
 
-        return buildScanResponse(scan);
+        return scanMapper.toResponse(scan.get(), scanResultRepository.findWithIngredientByScanIdIn(List.of(scanId)));
     }
 
     /**
      * Get all scans for a user
+     * Scans + user in one query, results + ingredients in one query per chunk of scans
      */
+    @Transactional(readOnly = true)
     public List<ScanResponse> getScansByUserId(Long userId) {
-        List<Scan> scans = scanRepository.findByUserId(userId);
+        return detailedResponses(scanRepository.findWithUserByUserId(userId));
+    }
+
+    /**
+     * Get one page of a user's scans, newest first
+     *
+     * @param cursor  nextCursor of the previous page, or null for the first page
+     * @param details include per-ingredient results; without them the page is served from the scans table
+     */
+    @Transactional(readOnly = true)
+    public ScanPage getScanPage(Long userId, String cursor, int limit, boolean details) {
+        return readPage(userId, cursor == null ? null : ScanCursor.decode(cursor), limit, details);
+    }
+
+    /**
+     * Walk a user's whole scan history page by page, handing each page to the consumer.
+     * Every page is read in its own short read-only transaction, so memory and
+     * persistence-context size stay flat no matter how long the history is.
+     */
+    public void streamScansByUserId(Long userId, int pageSize, boolean details,
+                                    Consumer<List<ScanResponse>> consumer) {
+        TransactionTemplate readOnlyTx = new TransactionTemplate(transactionManager);
+        readOnlyTx.setReadOnly(true);
+
+        ScanCursor cursor = null;
+        do {
+            ScanCursor position = cursor;
+            ScanPage page = readOnlyTx.execute(status -> readPage(userId, position, pageSize, details));
+            if (page == null || page.getItems().isEmpty()) {
+                return;
+            }
+            consumer.accept(page.getItems());
+            cursor = page.getNextCursor() == null ? null : ScanCursor.decode(page.getNextCursor());
+        } while (cursor != null);
+    }
 
-        return scans.stream()
-                .map(this::buildScanResponse)
-                .collect(Collectors.toList());
+    private ScanPage readPage(Long userId, ScanCursor cursor, int limit, boolean details) {
+        // Fetch one extra row to know whether another page exists
+        PageRequest window = PageRequest.of(0, limit + 1);
+        List<Scan> scans;
+        if (cursor == null) {
+            scans = scanRepository.findPageByUserId(userId, window);
+        } else if (cursor.scannedAt() == null) {
+            scans = scanRepository.findUntimedPageByUserIdBefore(userId, cursor.id(), window);
+        } else {
+            scans = scanRepository.findPageByUserIdBefore(userId, cursor.scannedAt(), cursor.id(), window);
+        }
+
+        boolean hasMore = scans.size() > limit;
+        if (hasMore) {
+            scans = scans.subList(0, limit);
+        }
+
+        List<ScanResponse> items = details ? detailedResponses(scans) : summaryResponses(scans);
+
+        String nextCursor = null;
+        if (hasMore) {
+            Scan last = scans.get(scans.size() - 1);
+            nextCursor = new ScanCursor(last.getScannedAt(), last.getId()).encode();
+        }
+        return ScanPage.builder().items(items).nextCursor(nextCursor).build();
+    }
+
+    private List<ScanResponse> detailedResponses(List<Scan> scans) {
+        Map<Long, List<ScanResult>> resultsByScan = loadResults(scans);
+        List<ScanResponse> responses = new ArrayList<>(scans.size());
+        for (Scan scan : scans) {
+            responses.add(scanMapper.toResponse(scan, resultsByScan.getOrDefault(scan.getId(), List.of())));
+        }
+        return responses;
     }
 
     /**
-     * Build complete scan response with all results
+     * Summary-only responses; results are only loaded for older scans without a stored summary
      */
-    private ScanResponse buildScanResponse(Scan scan) {
-        // Get all scan results for this scan using optimized query
-        List<ScanResult> scanResults = scanResultRepository.findByScanId(scan.getId());
-
-        // Build result DTOs
-        List<com.nutricheck.dto.ScanResultDto> resultDtos = scanResults.stream()
-                .map(sr -> com.nutricheck.dto.ScanResultDto.builder()
-                        .resultId(sr.getId())
-                        .ingredientName(sr.getIngredient().getName())
-                        .risk(sr.getRisk())
-                        .severity(sr.getSeverity())
-                        .explanation(sr.getExplanation())
-                        .description(sr.getIngredient().getDescription())
-                        .category(sr.getIngredient().getCategory())
-                        .sideEffects(sr.getIngredient().getSideEffects())
-                        .build())
-                .collect(Collectors.toList());
-
-        // Calculate summary statistics
-        int lowCount = (int) scanResults.stream()
-                .filter(sr -> "LOW".equalsIgnoreCase(sr.getRisk()))
-                .count();
-        int mediumCount = (int) scanResults.stream()
-                .filter(sr -> "MEDIUM".equalsIgnoreCase(sr.getRisk()))
-                .count();
-        int highCount = (int) scanResults.stream()
-                .filter(sr -> "HIGH".equalsIgnoreCase(sr.getRisk()))
-                .count();
-
-        String overallRisk = highCount > 0 ? "HIGH" : (mediumCount > 0 ? "MEDIUM" : "LOW");
-
-        com.nutricheck.dto.ScanSummary summary = com.nutricheck.dto.ScanSummary.builder()
-                .totalIngredients(scanResults.size())
-                .lowRiskCount(lowCount)
-                .mediumRiskCount(mediumCount)
-                .highRiskCount(highCount)
-                .overallRisk(overallRisk)
-                .build();
-
-        return ScanResponse.builder()
-                .scanId(scan.getId())
-                .productName(scan.getProductName())
-                .scannedAt(scan.getScannedAt())
-                .userId(scan.getUser().getId())
-                .userName(scan.getUser().getName())
-                .results(resultDtos)
-                .summary(summary)
-                .build();
+    private List<ScanResponse> summaryResponses(List<Scan> scans) {
+        List<Scan> legacy = scans.stream().filter(scan -> !scanMapper.hasStoredSummary(scan)).toList();
+        Map<Long, List<ScanResult>> legacyResults = loadResults(legacy);
+
+        List<ScanResponse> responses = new ArrayList<>(scans.size());
+        for (Scan scan : scans) {
+            responses.add(scanMapper.toSummaryResponse(scan, legacyResults.get(scan.getId())));
+        }
+        return responses;
+    }
+
+    /**
+     * Load results (with ingredients) for many scans, grouped by scan ID
+     */
+    private Map<Long, List<ScanResult>> loadResults(List<Scan> scans) {
+        Map<Long, List<ScanResult>> resultsByScan = new HashMap<>();
+        List<Long> scanIds = scans.stream().map(Scan::getId).toList();
+
+        for (int from = 0; from < scanIds.size(); from += RESULT_QUERY_CHUNK) {
+            List<Long> chunk = scanIds.subList(from, Math.min(from + RESULT_QUERY_CHUNK, scanIds.size()));
+            for (ScanResult sr : scanResultRepository.findWithIngredientByScanIdIn(chunk)) {
+                resultsByScan.computeIfAbsent(sr.getScan().getId(), id -> new ArrayList<>()).add(sr);
+            }
+        }
+        return resultsByScan;
     }
-}
\ No newline at end of file
+}
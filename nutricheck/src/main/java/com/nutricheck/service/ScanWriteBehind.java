@@ -0,0 +1,446 @@
+package com.nutricheck.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nutricheck.config.WriteBehindProperties;
+import com.nutricheck.dto.AiAnalysisResponse;
+import com.nutricheck.dto.IngredientAnalysis;
+import com.nutricheck.dto.ScanResponse;
+import com.nutricheck.dto.ScanSummary;
+import com.nutricheck.dto.enums.ProductCategory;
+import com.nutricheck.entity.Ingredient;
+import com.nutricheck.entity.Scan;
+import com.nutricheck.entity.ScanResult;
+import com.nutricheck.entity.StringListConverter;
+import com.nutricheck.entity.User;
+import com.nutricheck.mapper.ScanMapper;
+import com.nutricheck.persistence.PendingScan;
+import com.nutricheck.persistence.ScanIdAllocator;
+import com.nutricheck.persistence.ScanJournal;
+import com.nutricheck.repository.IngredientRepository;
+import com.nutricheck.repository.ScanRepository;
+import com.nutricheck.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes scans after the response has been sent.
+ * A scan is accepted once it is in the journal: IDs are taken from the entities' generators, the response is
+ * built from the analysis, and the scan is queued. One writer thread commits queued scans in batches of up to
+ * maxBatch per transaction, so a burst of scans costs a few commits instead of one each. Until its batch commits
+ * a scan is served from memory (getScanById); it reaches the user's history once written.
+ * If the database is down the writer keeps retrying; anything not written at shutdown is replayed from the journal.
+ */
+@Slf4j
+@Component
+public class ScanWriteBehind {
+
+    private static final String INSERT_SCAN = "INSERT INTO scans (id, product_name, scanned_at, total_ingredients,"
+            + " low_risk_count, medium_risk_count, high_risk_count, overall_risk, safety_score, overall_assessment,"
+            + " warnings_for, user_id, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_RESULT = "INSERT INTO scan_results (id, risk, severity, explanation,"
+            + " scan_id, ingredient_id, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // How long stop waits for the writer once interrupted
+    private static final long STOP_GRACE_MILLIS = 5_000;
+
+    private final WriteBehindProperties properties;
+    private final ScanIdAllocator idAllocator;
+    private final IngredientResolver ingredientResolver;
+    private final IngredientRepository ingredientRepository;
+    private final ScanRepository scanRepository;
+    private final UserRepository userRepository;
+    private final ScanMapper scanMapper;
+    private final ScanMetrics scanMetrics;
+    private final ObjectMapper objectMapper;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final StringListConverter stringListConverter = new StringListConverter();
+
+    private final BlockingQueue<ScanJournal.Entry> queue;
+    // Accepted scans not yet committed, for read-your-writes
+    private final Map<Long, ScanResponse> pending = new ConcurrentHashMap<>();
+
+    private final DistributionSummary batchSize;
+    private final Counter retries;
+    private final Counter dropped;
+
+    private ScanJournal journal;
+    private Thread writer;
+    private volatile boolean stopping;
+
+    public ScanWriteBehind(WriteBehindProperties properties, ScanIdAllocator idAllocator,
+                           IngredientResolver ingredientResolver, IngredientRepository ingredientRepository,
+                           ScanRepository scanRepository, UserRepository userRepository, ScanMapper scanMapper,
+                           ScanMetrics scanMetrics, ObjectMapper objectMapper, JdbcTemplate jdbcTemplate,
+                           PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.idAllocator = idAllocator;
+        this.ingredientResolver = ingredientResolver;
+        this.ingredientRepository = ingredientRepository;
+        this.scanRepository = scanRepository;
+        this.userRepository = userRepository;
+        this.scanMapper = scanMapper;
+        this.scanMetrics = scanMetrics;
+        this.objectMapper = objectMapper;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+
+        Gauge.builder("nutricheck.writebehind.queue", queue, BlockingQueue::size)
+                .description("Scans accepted but not yet written")
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("nutricheck.writebehind.batch")
+                .description("Scans committed per transaction")
+                .register(meterRegistry);
+        this.retries = Counter.builder("nutricheck.writebehind.retries")
+                .description("Batches retried because the database was unavailable")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("nutricheck.writebehind.dropped")
+                .description("Scans that could not be written and were moved to the dead-letter file")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        // A relative path would follow the working directory, and a journal left behind there is never replayed
+        if (properties.getJournalDir() == null || properties.getJournalDir().isBlank()
+                || !Path.of(properties.getJournalDir()).isAbsolute()) {
+            throw new IllegalStateException("nutricheck.write-behind.journal-dir must be an absolute path, got: "
+                    + properties.getJournalDir());
+        }
+        journal = new ScanJournal(Path.of(properties.getJournalDir()), objectMapper,
+                properties.getSegmentSize().toBytes(), properties.isFsync());
+        writer = new Thread(this::runWriter, "scan-writer");
+        writer.start();
+    }
+
+    public boolean isEnabled() {
+        return journal != null;
+    }
+
+    /**
+     * Accept a finished analysis as a scan for the user and return it as it will be stored.
+     * Returns once the scan is journaled; the database write happens in the background.
+     */
+    public ScanResponse write(AiAnalysisResponse aiResponse, Long userId, ProductCategory category) {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new RuntimeException("User not found with id: " + userId));
+
+        List<IngredientAnalysis> analyses = ingredientResolver.validAnalyses(aiResponse);
+        if (analyses.isEmpty()) {
+            log.warn("No ingredients found in AI response for product: {}", aiResponse.getProductName());
+        }
+        AiAnalysisResponse stored = new AiAnalysisResponse(aiResponse.getProductName(), analyses,
+                aiResponse.getSafetyScore(), aiResponse.getOverallAssessment(),
+                aiResponse.getWarningsFor() != null ? new ArrayList<>(aiResponse.getWarningsFor()) : null);
+
+        long scanId = idAllocator.nextScanId();
+        long[] resultIds = idAllocator.nextResultIds(analyses.size());
+        PendingScan pendingScan = new PendingScan(scanId, userId, LocalDateTime.now(), stored,
+                Arrays.stream(resultIds).boxed().toList(), category);
+
+        ScanResponse response = scanMetrics.stage(ScanMetrics.RESPONSE_ASSEMBLY, category,
+                () -> toResponse(pendingScan, user));
+        pending.put(scanId, response);
+
+        long segment;
+        try {
+            segment = scanMetrics.stage(ScanMetrics.PERSISTENCE, category, () -> journal.append(pendingScan));
+        } catch (IOException e) {
+            pending.remove(scanId);
+            throw new UncheckedIOException("Could not journal scan: " + e.getMessage(), e);
+        }
+        if (!enqueue(new ScanJournal.Entry(segment, pendingScan))) {
+            // Shutting down: the journal entry is replayed on the next start, not served from memory meanwhile
+            pending.remove(scanId);
+        }
+
+        log.info("Accepted scan ID: {} for product: {} ({} queued)", scanId, stored.getProductName(), queue.size());
+        return response;
+    }
+
+    // The scan is journaled, so it must reach the writer: an interrupt does not abandon it (the flag is restored),
+    // only shutdown does, and then the journal replays it. False when the writer no longer takes entries.
+    private boolean enqueue(ScanJournal.Entry entry) {
+        boolean interrupted = false;
+        try {
+            while (!stopping) {
+                try {
+                    if (queue.offer(entry, 100, TimeUnit.MILLISECONDS)) {
+                        return true;
+                    }
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            return false;
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * A scan accepted but not committed yet
+     */
+    public Optional<ScanResponse> findPending(Long scanId) {
+        return Optional.ofNullable(pending.get(scanId));
+    }
+
+    // Ingredients not in the table yet are described without an ID: theirs is assigned when the writer inserts them
+    // (responses carry no ingredient IDs, only names and details)
+    private ScanResponse toResponse(PendingScan pendingScan, User user) {
+        AiAnalysisResponse analysis = pendingScan.analysis();
+        Scan scan = Scan.builder()
+                .id(pendingScan.scanId())
+                .productName(analysis.getProductName())
+                .scannedAt(pendingScan.scannedAt())
+                .user(user)
+                .safetyScore(analysis.getSafetyScore())
+                .overallAssessment(analysis.getOverallAssessment())
+                .warningsFor(analysis.getWarningsFor())
+                .build();
+        scanMapper.applySummary(scan, summary(analysis));
+
+        List<ScanResult> results = new ArrayList<>(analysis.getResults().size());
+        for (int i = 0; i < analysis.getResults().size(); i++) {
+            IngredientAnalysis ingredient = analysis.getResults().get(i);
+            results.add(ScanResult.builder()
+                    .id(pendingScan.resultIds().get(i))
+                    .scan(scan)
+                    .ingredient(ingredientResolver.describe(ingredient, pendingScan.category()))
+                    .risk(ingredient.getRisk())
+                    .severity(ingredient.getSeverity())
+                    .explanation(ingredient.getExplanation())
+                    .build());
+        }
+        return scanMapper.toResponse(scan, results);
+    }
+
+    private ScanSummary summary(AiAnalysisResponse analysis) {
+        return scanMapper.summarizeRisks(analysis.getResults().stream().map(IngredientAnalysis::getRisk).toList());
+    }
+
+    private void runWriter() {
+        List<ScanJournal.Entry> recovered = journal.recover();
+        if (!recovered.isEmpty()) {
+            log.info("Replaying {} journaled scans", recovered.size());
+            for (int from = 0; from < recovered.size() && !stopping; from += properties.getMaxBatch()) {
+                persist(recovered.subList(from, Math.min(from + properties.getMaxBatch(), recovered.size())));
+            }
+        }
+
+        List<ScanJournal.Entry> batch = new ArrayList<>(properties.getMaxBatch());
+        // Interrupted only when shutdown gave up waiting; what is left stays in the journal
+        while ((!stopping || !queue.isEmpty()) && !Thread.currentThread().isInterrupted()) {
+            try {
+                ScanJournal.Entry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, properties.getMaxBatch() - batch.size());
+
+                // Give a burst a moment to fill the batch, so it shares the commit
+                long deadline = System.nanoTime() + properties.getMaxDelay().toNanos();
+                while (batch.size() < properties.getMaxBatch() && !stopping) {
+                    long left = deadline - System.nanoTime();
+                    ScanJournal.Entry next = left > 0 ? queue.poll(left, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, properties.getMaxBatch() - batch.size());
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+            persist(batch);
+            batch.clear();
+        }
+    }
+
+    // Retries while the database is unavailable; a batch failing for any other reason is written scan by scan,
+    // and a scan that still fails goes to the dead-letter file so it cannot block the queue
+    private void persist(List<ScanJournal.Entry> batch) {
+        long backoff = properties.getRetryBackoff().toMillis();
+        while (true) {
+            try {
+                insert(batch);
+                batchSize.record(batch.size());
+                for (ScanJournal.Entry entry : batch) {
+                    journal.committed(entry.segment(), 1);
+                    pending.remove(entry.scan().scanId());
+                }
+                log.debug("Wrote {} scans", batch.size());
+                return;
+            } catch (RuntimeException e) {
+                if (isTransient(e)) {
+                    if (stopping) {
+                        log.warn("Database unavailable at shutdown, {} scans left in the journal", batch.size());
+                        return;
+                    }
+                    retries.increment();
+                    log.warn("Could not write {} scans, retrying in {} ms: {}", batch.size(), backoff, e.getMessage());
+                    try {
+                        Thread.sleep(backoff);
+                    } catch (InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    backoff = Math.min(backoff * 2, properties.getMaxRetryBackoff().toMillis());
+                    continue;
+                }
+                if (batch.size() > 1) {
+                    for (ScanJournal.Entry entry : batch) {
+                        persist(List.of(entry));
+                    }
+                    return;
+                }
+                deadLetter(batch.get(0), e);
+                return;
+            }
+        }
+    }
+
+    private void insert(List<ScanJournal.Entry> batch) {
+        transactionTemplate.executeWithoutResult(status -> {
+            // A replayed scan may have been committed just before the crash
+            Set<Long> existing = new HashSet<>(scanRepository.findExistingIds(
+                    batch.stream().map(entry -> entry.scan().scanId()).toList()));
+            List<PendingScan> scans = batch.stream()
+                    .map(ScanJournal.Entry::scan)
+                    .filter(scan -> !existing.contains(scan.scanId()))
+                    .toList();
+            if (scans.isEmpty()) {
+                return;
+            }
+
+            // New ingredients are labelled with the category of the scan that introduced them
+            Map<ProductCategory, List<IngredientAnalysis>> byCategory = new HashMap<>();
+            List<IngredientAnalysis> allAnalyses = new ArrayList<>();
+            for (PendingScan scan : scans) {
+                byCategory.computeIfAbsent(scan.category(), category -> new ArrayList<>())
+                        .addAll(scan.analysis().getResults());
+                allAnalyses.addAll(scan.analysis().getResults());
+            }
+            Map<String, Ingredient> ingredients = new HashMap<>();
+            byCategory.forEach((category, analyses) -> {
+                if (!analyses.isEmpty()) {
+                    ingredients.putAll(ingredientResolver.resolve(analyses, category));
+                }
+            });
+            // New ingredient rows must exist before the results referencing them
+            ingredientRepository.flush();
+
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            jdbcTemplate.batchUpdate(INSERT_SCAN, scans, scans.size(), (ps, scan) -> {
+                AiAnalysisResponse analysis = scan.analysis();
+                ScanSummary summary = summary(analysis);
+                ps.setLong(1, scan.scanId());
+                ps.setString(2, analysis.getProductName());
+                ps.setTimestamp(3, Timestamp.valueOf(scan.scannedAt()));
+                ps.setInt(4, summary.getTotalIngredients());
+                ps.setInt(5, summary.getLowRiskCount());
+                ps.setInt(6, summary.getMediumRiskCount());
+                ps.setInt(7, summary.getHighRiskCount());
+                ps.setString(8, summary.getOverallRisk());
+                ps.setObject(9, analysis.getSafetyScore(), Types.INTEGER);
+                ps.setString(10, analysis.getOverallAssessment());
+                ps.setString(11, stringListConverter.convertToDatabaseColumn(analysis.getWarningsFor()));
+                ps.setLong(12, scan.userId());
+                ps.setTimestamp(13, now);
+                ps.setTimestamp(14, now);
+            });
+
+            List<Object[]> results = new ArrayList<>(allAnalyses.size());
+            for (PendingScan scan : scans) {
+                List<IngredientAnalysis> analyses = scan.analysis().getResults();
+                for (int i = 0; i < analyses.size(); i++) {
+                    IngredientAnalysis analysis = analyses.get(i);
+                    Ingredient ingredient = ingredients.get(IngredientResolver.nameKey(analysis.getIngredientName()));
+                    results.add(new Object[]{scan.resultIds().get(i), analysis.getRisk(), analysis.getSeverity(),
+                            analysis.getExplanation(), scan.scanId(), ingredient.getId(), now, now});
+                }
+            }
+            if (!results.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_RESULT, results);
+            }
+        });
+    }
+
+    private void deadLetter(ScanJournal.Entry entry, RuntimeException error) {
+        dropped.increment();
+        pending.remove(entry.scan().scanId());
+        log.error("Could not write scan ID: {}, moved to dead letters", entry.scan().scanId(), error);
+        try {
+            journal.deadLetter(entry);
+        } catch (IOException e) {
+            log.error("Could not write dead letter for scan ID: {}", entry.scan().scanId(), e);
+        }
+    }
+
+    private static boolean isTransient(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof TransientDataAccessException || t instanceof DataAccessResourceFailureException
+                    || t instanceof CannotCreateTransactionException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        if (writer == null) {
+            return;
+        }
+        stopping = true;
+        writer.join(properties.getShutdownTimeout().toMillis());
+        if (writer.isAlive()) {
+            log.warn("Scan writer did not drain in time, {} scans left in the journal", queue.size());
+            writer.interrupt();
+            // Bounded: a writer stuck in a JDBC call may not notice the interrupt
+            writer.join(STOP_GRACE_MILLIS);
+            if (writer.isAlive()) {
+                log.warn("Scan writer still busy after interrupt, closing the journal anyway");
+            }
+        }
+        journal.close();
+    }
+}
@@ -0,0 +1,283 @@
+package com.nutricheck.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nutricheck.ai.ModelUnavailableException;
+import com.nutricheck.concurrency.CallLimiter;
+import com.nutricheck.config.BatchingProperties;
+import com.nutricheck.dto.AiAnalysisResponse;
+import com.nutricheck.dto.enums.ProductCategory;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Collects text analyses for a few milliseconds and sends them to the model as one multi-product prompt.
+ * The fixed instructions are paid once per batch and the batch uses a single model call slot;
+ * the keyed answer is split up and handed back to each waiting caller.
+ * When the batch call itself fails every caller gets a ModelUnavailableException: the backend has already retried,
+ * and each caller calling the model on its own would multiply the load. Only a product missing from an otherwise
+ * good answer fails with an exception the caller may recover from by asking alone.
+ */
+@Slf4j
+@Component
+public class TextAnalysisBatcher {
+
+    private final ChatModel chatModel;
+    private final ObjectMapper objectMapper;
+    private final CallLimiter modelCallLimiter;
+    private final BatchingProperties properties;
+    private final ScanMetrics scanMetrics;
+    private final DistributionSummary batchSizes;
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final SimpleAsyncTaskExecutor senders = new SimpleAsyncTaskExecutor("text-batch-");
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+    // A product that did not fit the previous batch; it opens the next one instead of going back to the tail
+    private volatile Pending carryOver;
+
+    private record Pending(List<String> ingredients, ProductCategory category,
+                           CompletableFuture<AiAnalysisResponse> result) {
+    }
+
+    public TextAnalysisBatcher(ChatModel chatModel, ObjectMapper objectMapper, CallLimiter modelCallLimiter,
+                               BatchingProperties properties, ScanMetrics scanMetrics, MeterRegistry meterRegistry) {
+        this.chatModel = chatModel;
+        this.objectMapper = objectMapper;
+        this.modelCallLimiter = modelCallLimiter;
+        this.properties = properties;
+        this.scanMetrics = scanMetrics;
+        this.batchSizes = DistributionSummary.builder("nutricheck.batch.size")
+                .description("Products per batched text analysis")
+                .register(meterRegistry);
+
+        this.dispatcher = new Thread(this::dispatch, "text-batcher");
+        this.dispatcher.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (properties.isEnabled()) {
+            dispatcher.start();
+        }
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Analyze one ingredient list as part of the next batch, waiting for the batch to come back
+     *
+     * @throws IllegalStateException when the batcher is not running or the answer lacks this product
+     * @throws ModelUnavailableException when the batch call failed or did not return in time
+     */
+    public AiAnalysisResponse analyze(List<String> ingredients, ProductCategory category) {
+        if (!running || !dispatcher.isAlive()) {
+            throw new IllegalStateException("Text analysis batcher is not running");
+        }
+        Pending pending = new Pending(ingredients, category, new CompletableFuture<>());
+        queue.add(pending);
+        if (!running && queue.remove(pending)) {
+            // Stopped meanwhile; the queue may already have been drained
+            throw new IllegalStateException("Text analysis batcher is not running");
+        }
+        try {
+            return pending.result().get(properties.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            queue.remove(pending);
+            pending.result().cancel(false);
+            throw new ModelUnavailableException("Batched analysis did not return within "
+                    + properties.getTimeout().toMillis() + " ms");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for batched analysis", e);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        dispatcher.interrupt();
+        failCarryOver();
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result().completeExceptionally(new IllegalStateException("Batcher stopped"));
+        }
+    }
+
+    private void dispatch() {
+        try {
+            while (running) {
+                List<Pending> batch = nextBatch();
+                // Model calls block for seconds; run them off the dispatcher so the next batch can form
+                senders.execute(() -> send(batch));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // stop() may have looked before the last batch set one aside
+            failCarryOver();
+        }
+    }
+
+    private void failCarryOver() {
+        Pending pending = carryOver;
+        if (pending != null) {
+            pending.result().completeExceptionally(new IllegalStateException("Batcher stopped"));
+        }
+    }
+
+    private List<Pending> nextBatch() throws InterruptedException {
+        List<Pending> batch = new ArrayList<>();
+        Pending first = carryOver;
+        carryOver = null;
+        if (first == null || first.result().isDone()) {
+            // A carried-over caller may have timed out meanwhile
+            first = queue.take();
+        }
+        batch.add(first);
+        int ingredients = first.ingredients().size();
+
+        long deadline = System.nanoTime() + properties.getMaxWait().toNanos();
+        while (batch.size() < properties.getMaxBatchSize()) {
+            long remaining = deadline - System.nanoTime();
+            Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+            if (next == null) {
+                break;
+            }
+            if (ingredients + next.ingredients().size() > properties.getMaxIngredients()) {
+                // Too big for this batch; it starts the next one
+                carryOver = next;
+                break;
+            }
+            batch.add(next);
+            ingredients += next.ingredients().size();
+        }
+        return batch;
+    }
+
+    private void send(List<Pending> batch) {
+        batchSizes.record(batch.size());
+        Map<String, Pending> keyed = new LinkedHashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            keyed.put("p" + (i + 1), batch.get(i));
+        }
+
+        JsonNode products;
+        try {
+            log.info("Calling Gemini for batched text analysis of {} products", batch.size());
+            Prompt prompt = scanMetrics.stage(ScanMetrics.PROMPT_BUILD, null, () -> new Prompt(buildBatchPrompt(keyed)));
+            ChatResponse response = scanMetrics.stage(ScanMetrics.MODEL_CALL, null,
+                    () -> modelCallLimiter.call(() -> chatModel.call(prompt)));
+            scanMetrics.recordTokens(response, "batch", null);
+            products = scanMetrics.stage(ScanMetrics.PARSE, null,
+                    () -> parse(response.getResult().getOutput().getText()).path("products"));
+        } catch (Exception e) {
+            log.warn("Batched text analysis of {} products failed: {}", batch.size(), e.getMessage());
+            ModelUnavailableException failure = e instanceof ModelUnavailableException unavailable
+                    ? unavailable
+                    : new ModelUnavailableException("Batched analysis failed: " + e.getMessage(), e);
+            batch.forEach(pending -> pending.result().completeExceptionally(failure));
+            return;
+        }
+
+        for (Map.Entry<String, Pending> entry : keyed.entrySet()) {
+            JsonNode product = products.get(entry.getKey());
+            try {
+                if (product == null || !product.isObject()) {
+                    throw new IllegalStateException("Batched answer is missing product " + entry.getKey());
+                }
+                AiAnalysisResponse response = objectMapper.treeToValue(product, AiAnalysisResponse.class);
+                if (response.getProductName() == null) {
+                    response.setProductName("Unknown Product");
+                }
+                entry.getValue().result().complete(response);
+            } catch (Exception e) {
+                entry.getValue().result().completeExceptionally(e instanceof IllegalStateException
+                        ? e
+                        : new IllegalStateException("Unreadable product " + entry.getKey() + " in batched answer", e));
+            }
+        }
+    }
+
+    // The batched answer is one object; ignore fences or prose around it
+    private JsonNode parse(String answer) throws Exception {
+        int start = answer.indexOf('{');
+        int end = answer.lastIndexOf('}');
+        if (start < 0 || end < start) {
+            throw new IllegalStateException("Invalid AI JSON response");
+        }
+        return objectMapper.readTree(answer.substring(start, end + 1));
+    }
+
+    /**
+     * One prompt for several products, answered as an object keyed by product id
+     */
+    private String buildBatchPrompt(Map<String, Pending> products) {
+        StringBuilder list = new StringBuilder();
+        products.forEach((key, pending) -> list.append(key)
+                .append(" (").append(pending.category().name()).append("): ")
+                .append(String.join(", ", pending.ingredients()))
+                .append('\n'));
+
+        return String.format("""
+        You are a Nutritionist and Product Safety Expert analyzing several products at once.
+
+        Products (id (category): ingredients):
+        %s
+        Analyze each ingredient of each product and respond with ONLY valid JSON. No markdown, no extra text.
+
+        Use this exact structure, with one entry per product id:
+        {
+          "products": {
+            "p1": {
+              "results": [
+                {
+                  "ingredientName": "string",
+                  "risk": "LOW | MEDIUM | HIGH",
+                  "severity": "string (e.g., Minimal, Moderate, Severe)",
+                  "explanation": "string (brief health concern)",
+                  "description": "string (what this ingredient is)",
+                  "category": "string (e.g., preservative, sweetener)",
+                  "sideEffects": ["string array of potential side effects"]
+                }
+              ],
+              "safetyScore": number (1-10, where 10 is safest),
+              "overallAssessment": "string (2-3 sentence summary)",
+              "warningsFor": ["string array - groups who should avoid, e.g., pregnant women, children"]
+            }
+          }
+        }
+
+        Rules:
+        - Analyze every product id separately, in the context of its category
+        - Sort each product's ingredients from LEAST to MOST harmful
+        - Be factual and concise
+        - Include all ingredients of every product
+        - Keep each ingredientName exactly as written in the list
+        - Risk levels: LOW, MEDIUM, or HIGH only
+        """, list);
+    }
+}
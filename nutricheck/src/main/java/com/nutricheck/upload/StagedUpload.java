@@ -0,0 +1,62 @@
+package com.nutricheck.upload;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An upload copied to a temp file, with its SHA-256 and sniffed content type.
+ * Holds a share of the UploadBudget until closed; closing deletes the file.
+ */
+@Slf4j
+public class StagedUpload implements AutoCloseable {
+
+    private final Path path;
+    private final long size;
+    private final String sha256;
+    private final String contentType;
+    private final UploadBudget.Reservation reservation;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    StagedUpload(Path path, long size, String sha256, String contentType, UploadBudget.Reservation reservation) {
+        this.path = path;
+        this.size = size;
+        this.sha256 = sha256;
+        this.contentType = contentType;
+        this.reservation = reservation;
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    // Lowercase hex
+    public String sha256() {
+        return sha256;
+    }
+
+    public String contentType() {
+        return contentType;
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete staged upload {}: {}", path, e.getMessage());
+        } finally {
+            reservation.close();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.nutricheck.upload;
+
+import com.nutricheck.config.UploadProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Byte-weighted semaphore over all uploads currently held by the service.
+ * Permits are KiB so budgets above 2 GB still fit in an int.
+ */
+@Component
+public class UploadBudget {
+
+    private static final int KIB = 1024;
+
+    private final Semaphore permits;
+    private final int totalKib;
+    private final Duration acquireTimeout;
+    private final Counter rejected;
+
+    public UploadBudget(UploadProperties properties, MeterRegistry meterRegistry) {
+        this.totalKib = (int) Math.min(Integer.MAX_VALUE, properties.getMaxInFlightBytes().toBytes() / KIB);
+        this.permits = new Semaphore(totalKib, true);
+        this.acquireTimeout = properties.getAcquireTimeout();
+
+        Gauge.builder("nutricheck.upload.in-flight", this, UploadBudget::inFlightBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("nutricheck.upload.rejected")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Reserve room for an upload, waiting up to the acquire timeout
+     *
+     * @throws UploadRejectedException when the budget stays full or the upload alone exceeds it
+     */
+    public Reservation reserve(long bytes) {
+        int kib = (int) Math.max(1, (bytes + KIB - 1) / KIB);
+        if (kib > totalKib) {
+            rejected.increment();
+            throw new UploadRejectedException("Upload of " + bytes + " bytes exceeds the in-flight upload budget");
+        }
+        try {
+            if (!permits.tryAcquire(kib, acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                throw new UploadRejectedException("Too many uploads in progress, please retry shortly");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UploadRejectedException("Interrupted while waiting for upload budget");
+        }
+        return new Reservation(kib);
+    }
+
+    public long inFlightBytes() {
+        return (long) (totalKib - permits.availablePermits()) * KIB;
+    }
+
+    /**
+     * Reserved share of the budget; closing it more than once is harmless
+     */
+    public class Reservation implements AutoCloseable {
+
+        private final int kib;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Reservation(int kib) {
+            this.kib = kib;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                permits.release(kib);
+            }
+        }
+    }
+}
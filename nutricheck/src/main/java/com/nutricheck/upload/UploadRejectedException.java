@@ -0,0 +1,11 @@
+package com.nutricheck.upload;
+
+/**
+ * Thrown when an upload does not fit in the in-flight byte budget
+ */
+public class UploadRejectedException extends RuntimeException {
+
+    public UploadRejectedException(String message) {
+        super(message);
+    }
+}
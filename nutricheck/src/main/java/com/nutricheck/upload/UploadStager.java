@@ -0,0 +1,132 @@
+package com.nutricheck.upload;
+
+import com.nutricheck.config.UploadProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Copies multipart uploads to a temp file in one streaming pass, hashing and sniffing the format on the way,
+ * so no request ever holds the whole image on the heap.
+ */
+@Slf4j
+@Component
+public class UploadStager {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int HEADER_SIZE = 12;
+
+    private final UploadBudget budget;
+    private final Path directory;
+
+    public UploadStager(UploadBudget budget, UploadProperties properties) throws IOException {
+        this.budget = budget;
+        this.directory = properties.getTempDir().isBlank()
+                ? Path.of(System.getProperty("java.io.tmpdir"), "nutricheck-uploads")
+                : Path.of(properties.getTempDir());
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Stage an upload; the caller owns the result and must close it.
+     *
+     * @throws UploadRejectedException  when the in-flight budget is exhausted
+     * @throws IllegalArgumentException when the file is not a supported image
+     */
+    public StagedUpload stage(MultipartFile file) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return stage(in, file.getSize());
+        }
+    }
+
+    /**
+     * Stage an image read from a stream of known size (an entry of a bulk import ZIP); the stream is not closed.
+     * Copying stops as soon as the stream delivers more than the declared size, so an entry that inflates
+     * beyond what it claims cannot overrun the reservation or the caller's size limit.
+     *
+     * @throws IllegalArgumentException when the size is unknown, the stream is longer than declared
+     *                                  or the file is not a supported image
+     */
+    public StagedUpload stage(InputStream in, long expectedSize) throws IOException {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Image size unknown");
+        }
+        UploadBudget.Reservation reservation = budget.reserve(expectedSize);
+        Path path = null;
+        try {
+            path = Files.createTempFile(directory, "scan-", ".upload");
+
+            MessageDigest digest = sha256();
+            byte[] header = new byte[HEADER_SIZE];
+            int headerLength = 0;
+            long size = 0;
+
+            byte[] buffer = new byte[BUFFER_SIZE];
+            try (OutputStream out = Files.newOutputStream(path)) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    if (size + read > expectedSize) {
+                        throw new IllegalArgumentException("Image larger than its declared " + expectedSize + " bytes");
+                    }
+                    if (headerLength < HEADER_SIZE) {
+                        int copy = Math.min(read, HEADER_SIZE - headerLength);
+                        System.arraycopy(buffer, 0, header, headerLength, copy);
+                        headerLength += copy;
+                    }
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                    size += read;
+                }
+            }
+
+            String contentType = sniffImageType(header, headerLength);
+            if (contentType == null) {
+                throw new IllegalArgumentException("Unsupported image format. Must be JPEG, PNG, WebP or HEIC");
+            }
+
+            return new StagedUpload(path, size, HexFormat.of().formatHex(digest.digest()), contentType, reservation);
+        } catch (IOException | RuntimeException e) {
+            if (path != null) {
+                Files.deleteIfExists(path);
+            }
+            reservation.close();
+            throw e;
+        }
+    }
+
+    // Trust the magic bytes, not the client's Content-Type
+    static String sniffImageType(byte[] header, int length) {
+        if (length >= 3 && (header[0] & 0xff) == 0xFF && (header[1] & 0xff) == 0xD8 && (header[2] & 0xff) == 0xFF) {
+            return "image/jpeg";
+        }
+        if (length >= 8 && (header[0] & 0xff) == 0x89 && header[1] == 'P' && header[2] == 'N' && header[3] == 'G') {
+            return "image/png";
+        }
+        if (length >= 12 && header[0] == 'R' && header[1] == 'I' && header[2] == 'F' && header[3] == 'F'
+                && header[8] == 'W' && header[9] == 'E' && header[10] == 'B' && header[11] == 'P') {
+            return "image/webp";
+        }
+        if (length >= 12 && header[4] == 'f' && header[5] == 't' && header[6] == 'y' && header[7] == 'p'
+                && header[8] == 'h' && header[9] == 'e' && (header[10] == 'i' || header[10] == 'v')) {
+            return "image/heic";
+        }
+        return null;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.nutricheck.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * Groups near-duplicate ingredient names: plurals, E-number spellings (E-330, E 330, e330), British and American
+ * spellings, word order and small typos.
+ * Names with the same canonical key are grouped directly. Beyond that, candidates come from MinHash signatures
+ * over character trigrams of the key, split into LSH bands (names sharing any band are compared), and a candidate
+ * pair only counts as a typo: the same words and numbers (so "vitamin b6" never joins "vitamin b12"), a bounded
+ * edit distance, and no difference inside a chemical suffix ("sodium nitrite" and "sodium nitrate" are different
+ * additives, one edit apart). Only pairs involving at least one fresh name are considered, so a run can be limited
+ * to the names added since the last one.
+ */
+public final class IngredientClusterer {
+
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern DIGITS = Pattern.compile("\\d+");
+    private static final Map<String, String> SPELLINGS = Map.ofEntries(
+            Map.entry("colour", "color"),
+            Map.entry("colours", "colors"),
+            Map.entry("colouring", "coloring"),
+            Map.entry("flavour", "flavor"),
+            Map.entry("flavours", "flavors"),
+            Map.entry("flavouring", "flavoring"),
+            Map.entry("flavourings", "flavorings"),
+            Map.entry("fibre", "fiber"),
+            Map.entry("aluminium", "aluminum"),
+            Map.entry("sulphite", "sulfite"),
+            Map.entry("sulphites", "sulfites"),
+            Map.entry("sulphate", "sulfate"),
+            Map.entry("sulphur", "sulfur"),
+            Map.entry("caramelised", "caramelized"),
+            Map.entry("stabiliser", "stabilizer"),
+            Map.entry("stabilisers", "stabilizers"),
+            Map.entry("emulsifiers", "emulsifier"));
+    // Endings that name a different compound (nitrite / nitrate, chloride / chlorite, sulfite / sulfate);
+    // an edit touching one of them is never treated as a typo
+    private static final List<String> CHEMICAL_SUFFIXES = List.of(
+            "ite", "ate", "ide", "ine", "ane", "ene", "yne", "ose", "ol", "one", "ic", "ous", "yl");
+    // Buckets this large hold names sharing only a common fragment; comparing all of them costs O(n^2) for nothing
+    private static final int MAX_BUCKET = 64;
+
+    private final int bands;
+    private final int rows;
+    private final double minSimilarity;
+    private final int minLength;
+    private final int maxClusterSize;
+
+    /**
+     * A name to cluster; fresh names are the ones not yet compared in an earlier run
+     */
+    public record Name(long id, String name, boolean fresh) {
+    }
+
+    /**
+     * @param bands          LSH bands; more bands find less similar pairs (and cost more comparisons)
+     * @param rows           MinHash values per band
+     * @param minSimilarity  edit-distance similarity two different keys need to be grouped
+     * @param minLength      shorter keys are only grouped on an exact key match
+     * @param maxClusterSize larger groups are dropped as suspicious (one generic name chaining many together)
+     */
+    public IngredientClusterer(int bands, int rows, double minSimilarity, int minLength, int maxClusterSize) {
+        this.bands = bands;
+        this.rows = rows;
+        this.minSimilarity = minSimilarity;
+        this.minLength = minLength;
+        this.maxClusterSize = maxClusterSize;
+    }
+
+    /**
+     * Groups of two or more names that refer to the same ingredient, each containing at least one fresh name
+     */
+    public List<List<Name>> cluster(List<Name> names) {
+        int n = names.size();
+        String[] keys = new String[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = canonicalKey(names.get(i).name());
+        }
+
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+        }
+
+        Map<String, Integer> firstByKey = new HashMap<>();
+        Map<Long, List<Integer>> buckets = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            if (keys[i].isEmpty()) {
+                continue;
+            }
+            Integer first = firstByKey.putIfAbsent(keys[i], i);
+            if (first != null) {
+                if (names.get(i).fresh() || names.get(first).fresh()) {
+                    union(parent, first, i);
+                }
+                // Same key, same signature: the first name already stands for it in the buckets
+                continue;
+            }
+            if (keys[i].length() < minLength) {
+                continue;
+            }
+            int[] signature = signature(keys[i]);
+            for (int band = 0; band < bands; band++) {
+                buckets.computeIfAbsent(bandKey(signature, band), k -> new ArrayList<>()).add(i);
+            }
+        }
+
+        for (List<Integer> bucket : buckets.values()) {
+            if (bucket.size() < 2 || bucket.size() > MAX_BUCKET) {
+                continue;
+            }
+            for (int a = 0; a < bucket.size(); a++) {
+                for (int b = a + 1; b < bucket.size(); b++) {
+                    int i = bucket.get(a);
+                    int j = bucket.get(b);
+                    if (!names.get(i).fresh() && !names.get(j).fresh()) {
+                        continue;
+                    }
+                    if (find(parent, i) != find(parent, j) && matches(keys[i], keys[j])) {
+                        union(parent, i, j);
+                    }
+                }
+            }
+        }
+
+        Map<Integer, List<Name>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            if (!keys[i].isEmpty()) {
+                groups.computeIfAbsent(find(parent, i), root -> new ArrayList<>()).add(names.get(i));
+            }
+        }
+        List<List<Name>> clusters = new ArrayList<>();
+        for (List<Name> group : groups.values()) {
+            if (group.size() >= 2 && group.size() <= maxClusterSize && group.stream().anyMatch(Name::fresh)) {
+                clusters.add(group);
+            }
+        }
+        return clusters;
+    }
+
+    /**
+     * Whether two names are close enough to be the same ingredient (used to check every member of a cluster
+     * against the name it is merged into, since grouping is transitive)
+     */
+    public boolean sameIngredient(String a, String b) {
+        return matches(canonicalKey(a), canonicalKey(b));
+    }
+
+    private boolean matches(String a, String b) {
+        if (a.equals(b)) {
+            return true;
+        }
+        if (Math.min(a.length(), b.length()) < minLength) {
+            return false;
+        }
+        String[] wordsA = a.split(" ");
+        String[] wordsB = b.split(" ");
+        if (wordsA.length != wordsB.length || !numbers(a).equals(numbers(b))) {
+            return false;
+        }
+        for (int i = 0; i < wordsA.length; i++) {
+            if (!wordsA[i].equals(wordsB[i]) && editsSuffix(wordsA[i], wordsB[i])) {
+                return false;
+            }
+        }
+        return StringSimilarity.similarity(a, b) >= minSimilarity;
+    }
+
+    // Whether the characters that differ between two words overlap a chemical suffix of either word
+    static boolean editsSuffix(String a, String b) {
+        int shorter = Math.min(a.length(), b.length());
+        int prefix = 0;
+        while (prefix < shorter && a.charAt(prefix) == b.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < shorter - prefix
+                && a.charAt(a.length() - 1 - suffix) == b.charAt(b.length() - 1 - suffix)) {
+            suffix++;
+        }
+        return differenceInSuffix(a, prefix, a.length() - suffix)
+                || differenceInSuffix(b, prefix, b.length() - suffix);
+    }
+
+    // The differing range [from, to) (empty for a pure insertion on the other side) reaches into the word's suffix
+    private static boolean differenceInSuffix(String word, int from, int to) {
+        for (String chemical : CHEMICAL_SUFFIXES) {
+            if (word.length() > chemical.length() + 2 && word.endsWith(chemical)
+                    && Math.max(to, from + 1) > word.length() - chemical.length()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * LSH band keys of a canonical key (empty for keys below minLength, which only group on an exact match).
+     * Names sharing no band key and no canonical key are never compared.
+     */
+    public long[] bandKeys(String key) {
+        if (key.length() < minLength) {
+            return new long[0];
+        }
+        int[] signature = signature(key);
+        long[] keys = new long[bands];
+        for (int band = 0; band < bands; band++) {
+            keys[band] = bandKey(signature, band);
+        }
+        return keys;
+    }
+
+    /**
+     * Lower case, punctuation removed, E-numbers joined, British spellings and plurals folded, words sorted
+     */
+    public static String canonicalKey(String name) {
+        String normalized = IngredientNormalizer.normalize(name);
+        if (normalized.isEmpty()) {
+            return "";
+        }
+        String[] words = NON_ALPHANUMERIC.split(normalized.toLowerCase(Locale.ROOT));
+        List<String> folded = new ArrayList<>(words.length);
+        for (int i = 0; i < words.length; i++) {
+            String word = words[i];
+            if (word.isEmpty()) {
+                continue;
+            }
+            // "e 330" / "e-330" -> "e330"
+            if (word.equals("e") && i + 1 < words.length && DIGITS.matcher(words[i + 1]).matches()) {
+                word = "e" + words[++i];
+            }
+            word = SPELLINGS.getOrDefault(word, word);
+            folded.add(singular(word));
+        }
+        return String.join(" ", new TreeSet<>(folded));
+    }
+
+    private static String singular(String word) {
+        if (word.length() <= 3 || !Character.isLetter(word.charAt(word.length() - 1))) {
+            return word;
+        }
+        if (word.endsWith("ies")) {
+            return word.substring(0, word.length() - 3) + "y";
+        }
+        if (word.endsWith("oes")) {
+            return word.substring(0, word.length() - 2);
+        }
+        if (word.endsWith("s") && !word.endsWith("ss") && !word.endsWith("us") && !word.endsWith("is")) {
+            return word.substring(0, word.length() - 1);
+        }
+        return word;
+    }
+
+    private static Set<String> numbers(String key) {
+        Set<String> numbers = new TreeSet<>();
+        var matcher = DIGITS.matcher(key);
+        while (matcher.find()) {
+            numbers.add(matcher.group());
+        }
+        return numbers;
+    }
+
+    // bands * rows MinHash values over the padded character trigrams, from two base hashes per trigram
+    private int[] signature(String key) {
+        int[] signature = new int[bands * rows];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        String padded = "$" + key + "$";
+        for (int start = 0; start + 3 <= padded.length(); start++) {
+            int h1 = mix(padded.substring(start, start + 3).hashCode());
+            int h2 = mix(h1 ^ 0x5bd1e995) | 1;
+            for (int k = 0; k < signature.length; k++) {
+                int value = mix(h1 + k * h2);
+                if (value < signature[k]) {
+                    signature[k] = value;
+                }
+            }
+        }
+        return signature;
+    }
+
+    private long bandKey(int[] signature, int band) {
+        long hash = band;
+        for (int r = 0; r < rows; r++) {
+            hash = hash * 0x100000001b3L + signature[band * rows + r];
+        }
+        return hash;
+    }
+
+    // Murmur3 finalizer
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA != rootB) {
+            parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.nutricheck.util;
+
+import java.util.Locale;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * Canonical form for ingredient names and ingredient lists.
+ * Lists that differ only in ordering, casing, whitespace or separators map to the same sorted set.
+ */
+public final class IngredientNormalizer {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern LIST_PREFIX = Pattern.compile("^\\s*ingredients?\\s*[:\\-]\\s*", Pattern.CASE_INSENSITIVE);
+    private static final Pattern EDGE_PUNCTUATION = Pattern.compile("^[\\s.*:\\-\"']+|[\\s.*:\\-\"']+$");
+
+    private IngredientNormalizer() {
+    }
+
+    /**
+     * Normalize a single ingredient name: lower case, single spaces, no stray edge punctuation
+     */
+    public static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        String normalized = WHITESPACE.matcher(name.toLowerCase(Locale.ROOT)).replaceAll(" ");
+        normalized = normalized.replace("( ", "(").replace(" )", ")");
+        return EDGE_PUNCTUATION.matcher(normalized).replaceAll("");
+    }
+
+    /**
+     * Split a free-text ingredient list into a sorted set of normalized ingredient tokens.
+     * Separators inside parentheses are kept, e.g. "vegetable oil (palm, sunflower)" stays one token.
+     */
+    public static SortedSet<String> canonicalize(String ingredientList) {
+        SortedSet<String> tokens = new TreeSet<>();
+        if (ingredientList == null || ingredientList.isBlank()) {
+            return tokens;
+        }
+
+        String list = LIST_PREFIX.matcher(ingredientList).replaceFirst("");
+        StringBuilder current = new StringBuilder();
+        int depth = 0;
+
+        for (int i = 0; i < list.length(); i++) {
+            char c = list.charAt(i);
+            if (c == '(' || c == '[') {
+                depth++;
+            } else if ((c == ')' || c == ']') && depth > 0) {
+                depth--;
+            }
+
+            if (depth == 0 && isSeparator(c)) {
+                addToken(tokens, current);
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        addToken(tokens, current);
+        return tokens;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == ',' || c == ';' || c == '\n' || c == '\r' || c == '|' || c == '•';
+    }
+
+    private static void addToken(SortedSet<String> tokens, CharSequence raw) {
+        String token = normalize(raw.toString());
+        if (!token.isEmpty()) {
+            tokens.add(token);
+        }
+    }
+}
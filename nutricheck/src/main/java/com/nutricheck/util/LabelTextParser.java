@@ -0,0 +1,126 @@
+package com.nutricheck.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the ingredient panel and the product name in OCR text lines of a label photo.
+ * The panel starts at an "Ingredients:" heading and runs until the sentence ends or the next section
+ * (nutrition, allergens, storage, ...) begins.
+ */
+public final class LabelTextParser {
+
+    // "Ingredients" opening a line, or followed by a colon anywhere ("made with natural ingredients" is not a heading)
+    private static final String HEADING_WORD = "(?:ingredients?|ingr[\u00e9e]dients?|zutaten|ingredientes)";
+    private static final Pattern HEADING = Pattern.compile(
+            "(?:^\\s*" + HEADING_WORD + "\\b\\s*[:;.\\-]?|\\b" + HEADING_WORD + "\\s*[:;])\\s*",
+            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    private static final Pattern NEXT_SECTION = Pattern.compile(
+            "^\\s*(nutrition|nutritional|allergy|allergens?|may contain|storage|store |keep |best before|use by"
+                    + "|net (wt|weight)|produced|manufactured|distributed|directions|serving)",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern LETTERS = Pattern.compile("\\p{L}{3,}");
+    private static final int MAX_NAME_LENGTH = 80;
+
+    /**
+     * One recognized text line and its mean word confidence (0-100)
+     */
+    public record Line(String text, float confidence) {
+    }
+
+    /**
+     * Ingredient list as printed, product name (may be null) and the panel's length-weighted confidence
+     */
+    public record LabelText(String productName, String ingredients, float confidence) {
+    }
+
+    private LabelTextParser() {
+    }
+
+    public static Optional<LabelText> parse(List<Line> lines) {
+        int heading = -1;
+        Matcher matcher = null;
+        for (int i = 0; i < lines.size() && heading < 0; i++) {
+            Matcher m = HEADING.matcher(lines.get(i).text());
+            if (m.find()) {
+                heading = i;
+                matcher = m;
+            }
+        }
+        if (heading < 0) {
+            return Optional.empty();
+        }
+
+        List<Line> panel = new ArrayList<>();
+        String first = lines.get(heading).text().substring(matcher.end()).trim();
+        if (!first.isEmpty()) {
+            panel.add(new Line(first, lines.get(heading).confidence()));
+        }
+        for (int i = heading + 1; i < lines.size() && !endsSentence(panel); i++) {
+            Line line = lines.get(i);
+            if (line.text().isBlank() || NEXT_SECTION.matcher(line.text()).find()) {
+                break;
+            }
+            panel.add(line);
+        }
+        if (panel.isEmpty()) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new LabelText(productName(lines.subList(0, heading)), join(panel), confidence(panel)));
+    }
+
+    // Hyphenated line breaks are joined back into one word
+    private static String join(List<Line> panel) {
+        StringBuilder text = new StringBuilder();
+        for (Line line : panel) {
+            String part = line.text().trim();
+            if (text.length() > 0) {
+                if (text.charAt(text.length() - 1) == '-') {
+                    text.setLength(text.length() - 1);
+                } else {
+                    text.append(' ');
+                }
+            }
+            text.append(part);
+        }
+        int end = text.length();
+        while (end > 0 && (text.charAt(end - 1) == '.' || Character.isWhitespace(text.charAt(end - 1)))) {
+            end--;
+        }
+        return text.substring(0, end);
+    }
+
+    private static boolean endsSentence(List<Line> panel) {
+        return !panel.isEmpty() && panel.get(panel.size() - 1).text().trim().endsWith(".");
+    }
+
+    private static float confidence(List<Line> panel) {
+        double weighted = 0;
+        int characters = 0;
+        for (Line line : panel) {
+            int length = line.text().length();
+            weighted += (double) line.confidence() * length;
+            characters += length;
+        }
+        return characters == 0 ? 0 : (float) (weighted / characters);
+    }
+
+    // The most confidently read line with real words above the panel; brand lines tend to be short and bold
+    private static String productName(List<Line> above) {
+        Line best = null;
+        for (Line line : above) {
+            String text = line.text().trim();
+            if (text.length() > MAX_NAME_LENGTH || !LETTERS.matcher(text).find()) {
+                continue;
+            }
+            if (best == null || line.confidence() > best.confidence()) {
+                best = line;
+            }
+        }
+        return best != null ? best.text().trim() : null;
+    }
+}
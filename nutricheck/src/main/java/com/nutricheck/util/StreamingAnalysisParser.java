@@ -0,0 +1,174 @@
+package com.nutricheck.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.nutricheck.dto.AiAnalysisResponse;
+import com.nutricheck.dto.IngredientAnalysis;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Incremental parser for a streamed model answer.
+ * Chunks are fed to Jackson's non-blocking parser as they arrive; every element of "results" is handed to
+ * the callback as soon as its closing brace has been seen. Markdown fences and any text before the
+ * opening brace or after the closing one are ignored.
+ * Not thread-safe; feed chunks in order from one thread at a time.
+ */
+public class StreamingAnalysisParser {
+
+    private static final String RESULTS = "results";
+
+    private final ObjectMapper objectMapper;
+    private final Consumer<IngredientAnalysis> onIngredient;
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+
+    private final ObjectNode root;
+    private final List<IngredientAnalysis> results = new ArrayList<>();
+
+    private boolean started;
+    private boolean finished;
+    // 0 = before the root object, 1 = root object, 2 = inside the results array
+    private int level;
+    private String field;
+
+    // Value (root field or results element) currently being buffered, and its open container count
+    private TokenBuffer value;
+    private int valueDepth;
+
+    public StreamingAnalysisParser(ObjectMapper objectMapper, Consumer<IngredientAnalysis> onIngredient) {
+        this.objectMapper = objectMapper;
+        this.onIngredient = onIngredient;
+        this.root = objectMapper.createObjectNode();
+        try {
+            this.parser = objectMapper.getFactory().createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * Feed the next chunk of model output
+     */
+    public void feed(String chunk) {
+        if (finished || chunk == null || chunk.isEmpty()) {
+            return;
+        }
+        if (!started) {
+            // Skip "```json" and any preamble
+            int start = chunk.indexOf('{');
+            if (start < 0) {
+                return;
+            }
+            chunk = chunk.substring(start);
+            started = true;
+        }
+
+        byte[] bytes = chunk.getBytes(StandardCharsets.UTF_8);
+        try {
+            feeder.feedInput(bytes, 0, bytes.length);
+            JsonToken token;
+            // Stop at the root's closing brace; whatever follows (a closing fence) is never parsed
+            while (!finished && (token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                handle(token);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Invalid AI JSON response", e);
+        }
+    }
+
+    /**
+     * The complete response, once the root object has been closed
+     */
+    public AiAnalysisResponse finish() {
+        if (!finished) {
+            throw new IllegalStateException("AI response ended before the JSON was complete");
+        }
+        try {
+            AiAnalysisResponse response = objectMapper.treeToValue(root, AiAnalysisResponse.class);
+            response.setResults(results);
+            return response;
+        } catch (IOException e) {
+            throw new IllegalStateException("Invalid AI JSON response", e);
+        }
+    }
+
+    public int ingredientCount() {
+        return results.size();
+    }
+
+    private void handle(JsonToken token) throws IOException {
+        if (value != null) {
+            value.copyCurrentEvent(parser);
+            if (token.isStructStart()) {
+                valueDepth++;
+            } else if (token.isStructEnd()) {
+                valueDepth--;
+            }
+            if (valueDepth == 0) {
+                completeValue();
+            }
+            return;
+        }
+
+        switch (level) {
+            case 0 -> {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new IllegalStateException("AI response is not a JSON object");
+                }
+                level = 1;
+            }
+            case 1 -> {
+                if (token == JsonToken.FIELD_NAME) {
+                    field = parser.currentName();
+                } else if (token == JsonToken.END_OBJECT) {
+                    finished = true;
+                } else if (RESULTS.equals(field) && token == JsonToken.START_ARRAY) {
+                    level = 2;
+                } else {
+                    startValue(token);
+                }
+            }
+            default -> {
+                if (token == JsonToken.END_ARRAY) {
+                    level = 1;
+                } else {
+                    startValue(token);
+                }
+            }
+        }
+    }
+
+    private void startValue(JsonToken token) throws IOException {
+        value = new TokenBuffer(parser);
+        value.copyCurrentEvent(parser);
+        valueDepth = token.isStructStart() ? 1 : 0;
+        if (valueDepth == 0) {
+            completeValue();
+        }
+    }
+
+    private void completeValue() throws IOException {
+        TokenBuffer complete = value;
+        value = null;
+        try (JsonParser buffered = complete.asParser()) {
+            if (level == 2) {
+                IngredientAnalysis analysis = objectMapper.readValue(buffered, IngredientAnalysis.class);
+                results.add(analysis);
+                onIngredient.accept(analysis);
+            } else {
+                root.set(field, objectMapper.readTree(buffered));
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.nutricheck.util;
+
+/**
+ * Edit-distance helpers for fuzzy ingredient matching
+ */
+public final class StringSimilarity {
+
+    private StringSimilarity() {
+    }
+
+    /**
+     * Levenshtein distance, stops early and returns maxDistance + 1 once the distance is known to exceed maxDistance
+     */
+    public static int levenshtein(String a, String b, int maxDistance) {
+        if (Math.abs(a.length() - b.length()) > maxDistance) {
+            return maxDistance + 1;
+        }
+
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxDistance) {
+                return maxDistance + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    /**
+     * 1.0 for identical strings, falling linearly with edit distance relative to the longer string
+     */
+    public static double similarity(String a, String b) {
+        int longest = Math.max(a.length(), b.length());
+        if (longest == 0) {
+            return 1.0;
+        }
+        return 1.0 - (double) levenshtein(a, b, longest) / longest;
+    }
+}
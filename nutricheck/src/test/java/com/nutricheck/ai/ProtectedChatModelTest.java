@@ -0,0 +1,268 @@
+package com.nutricheck.ai;
+
+import com.nutricheck.concurrency.CircuitBreaker;
+import com.nutricheck.config.ResilienceProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Retry, timeout, rate limit and circuit breaker around a single backend
+ */
+class ProtectedChatModelTest {
+
+    private static final Prompt PROMPT = new Prompt("Ingredients:\nSugar\n");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ResilienceProperties properties = new ResilienceProperties();
+
+    ProtectedChatModelTest() {
+        properties.getRetry().setInitialBackoff(Duration.ofMillis(5));
+        properties.getRetry().setMaxBackoff(Duration.ofMillis(20));
+    }
+
+    @Test
+    void retriesTransientFailures() {
+        AtomicInteger calls = new AtomicInteger();
+        ProtectedChatModel model = protect(prompt -> {
+            if (calls.incrementAndGet() < 3) {
+                throw new TransientAiException("503 UNAVAILABLE");
+            }
+            return answer();
+        });
+
+        assertEquals("ok", model.call(PROMPT).getResult().getOutput().getText());
+        assertEquals(3, calls.get());
+        assertEquals(2.0, meterRegistry.counter("nutricheck.model.retries", "backend", "test").count());
+    }
+
+    @Test
+    void doesNotRetryRejectedPrompts() {
+        AtomicInteger calls = new AtomicInteger();
+        ProtectedChatModel model = protect(prompt -> {
+            calls.incrementAndGet();
+            throw new IllegalArgumentException("400 INVALID_ARGUMENT");
+        });
+
+        assertThrows(IllegalArgumentException.class, () -> model.call(PROMPT));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void decidesOnTypeAndStatusNotMessageText() {
+        assertTrue(ProtectedChatModel.isRetryable(
+                HttpServerErrorException.create(HttpStatus.BAD_GATEWAY, "Bad Gateway", null, null, null)));
+        assertFalse(ProtectedChatModel.isRetryable(
+                HttpClientErrorException.create(HttpStatus.BAD_REQUEST, "Bad Request", null, null, null)));
+        assertFalse(ProtectedChatModel.isRetryable(new IllegalStateException("Serving size 500 g, sugar 429 mg")));
+        assertTrue(ProtectedChatModel.isRetryable(new IllegalStateException(new TransientAiException("overloaded"))));
+    }
+
+    @Test
+    void timesOutSlowCalls() {
+        properties.setTimeout(Duration.ofMillis(50));
+        properties.getRetry().setMaxAttempts(1);
+        ProtectedChatModel model = protect(prompt -> {
+            try {
+                Thread.sleep(5_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return answer();
+        });
+
+        long start = System.nanoTime();
+        assertThrows(IllegalStateException.class, () -> model.call(PROMPT));
+        assertTrue((System.nanoTime() - start) / 1_000_000 < 1_000);
+        assertEquals(1.0, meterRegistry.counter("nutricheck.model.timeouts", "backend", "test").count());
+    }
+
+    @Test
+    void keepsTheBulkheadPermitUntilATimedOutCallReturns() {
+        properties.setTimeout(Duration.ofMillis(50));
+        properties.getRetry().setMaxAttempts(1);
+        properties.getBulkhead().setMaxConcurrent(1);
+        properties.getBulkhead().setMaxWait(Duration.ZERO);
+        CountDownLatch providerAnswers = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        ProtectedChatModel model = protect(prompt -> {
+            if (calls.incrementAndGet() == 1) {
+                // Blocking socket reads ignore interrupts: the call goes on after the caller gave up
+                while (true) {
+                    try {
+                        providerAnswers.await();
+                        break;
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+            }
+            return answer();
+        });
+
+        assertThrows(IllegalStateException.class, () -> model.call(PROMPT));
+        // The abandoned call is still in flight and holds the only permit
+        assertThrows(ModelUnavailableException.class, () -> model.call(PROMPT));
+        assertEquals(1, calls.get());
+
+        providerAnswers.countDown();
+        properties.getBulkhead().setMaxWait(Duration.ofSeconds(2));
+        assertEquals("ok", model.call(PROMPT).getResult().getOutput().getText());
+    }
+
+    @Test
+    void endsAStreamThatKeepsTricklingPastItsDeadline() {
+        properties.setTimeout(Duration.ofSeconds(1));
+        properties.setStreamTimeout(Duration.ofMillis(200));
+        ProtectedChatModel model = protect(new ChatModel() {
+            @Override
+            public ChatResponse call(Prompt prompt) {
+                return answer();
+            }
+
+            @Override
+            public Flux<ChatResponse> stream(Prompt prompt) {
+                // Every chunk arrives well within the per-chunk timeout, the answer never ends
+                return Flux.interval(Duration.ofMillis(20)).map(tick -> answer());
+            }
+        });
+
+        long start = System.nanoTime();
+        RuntimeException e = assertThrows(RuntimeException.class, () -> model.stream(PROMPT).blockLast());
+        assertInstanceOf(TimeoutException.class, Exceptions.unwrap(e));
+        assertTrue((System.nanoTime() - start) / 1_000_000 < 1_000);
+    }
+
+    @Test
+    void opensCircuitAndFailsFast() {
+        properties.getRetry().setMaxAttempts(1);
+        properties.getCircuitBreaker().setWindow(4);
+        properties.getCircuitBreaker().setMinimumCalls(4);
+        AtomicInteger calls = new AtomicInteger();
+        ProtectedChatModel model = protect(prompt -> {
+            calls.incrementAndGet();
+            throw HttpClientErrorException.create(HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests", null, null, null);
+        });
+
+        for (int i = 0; i < 4; i++) {
+            assertThrows(HttpClientErrorException.class, () -> model.call(PROMPT));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, model.circuitState());
+
+        assertThrows(ModelUnavailableException.class, () -> model.call(PROMPT));
+        assertEquals(4, calls.get());
+    }
+
+    @Test
+    void closesAfterSuccessfulTrialCalls() throws InterruptedException {
+        properties.getRetry().setMaxAttempts(1);
+        properties.getCircuitBreaker().setWindow(2);
+        properties.getCircuitBreaker().setMinimumCalls(2);
+        properties.getCircuitBreaker().setOpenDuration(Duration.ofMillis(50));
+        properties.getCircuitBreaker().setHalfOpenCalls(1);
+        AtomicInteger calls = new AtomicInteger();
+        ProtectedChatModel model = protect(prompt -> {
+            if (calls.incrementAndGet() <= 2) {
+                throw new TransientAiException("503 UNAVAILABLE");
+            }
+            return answer();
+        });
+
+        assertThrows(TransientAiException.class, () -> model.call(PROMPT));
+        assertThrows(TransientAiException.class, () -> model.call(PROMPT));
+        assertEquals(CircuitBreaker.State.OPEN, model.circuitState());
+
+        Thread.sleep(80);
+        model.call(PROMPT);
+        assertEquals(CircuitBreaker.State.CLOSED, model.circuitState());
+    }
+
+    @Test
+    void rejectedPromptDuringTrialNeitherClosesNorReopens() throws InterruptedException {
+        properties.getRetry().setMaxAttempts(1);
+        properties.getCircuitBreaker().setWindow(2);
+        properties.getCircuitBreaker().setMinimumCalls(2);
+        properties.getCircuitBreaker().setOpenDuration(Duration.ofMillis(50));
+        properties.getCircuitBreaker().setHalfOpenCalls(1);
+        AtomicInteger calls = new AtomicInteger();
+        ProtectedChatModel model = protect(prompt -> {
+            int call = calls.incrementAndGet();
+            if (call <= 2) {
+                throw new TransientAiException("503 UNAVAILABLE");
+            }
+            if (call == 3) {
+                throw new NonTransientAiException("400 INVALID_ARGUMENT");
+            }
+            return answer();
+        });
+
+        assertThrows(TransientAiException.class, () -> model.call(PROMPT));
+        assertThrows(TransientAiException.class, () -> model.call(PROMPT));
+        Thread.sleep(80);
+
+        // Says nothing about the provider: the trial slot is handed back instead of counting as a success
+        assertThrows(NonTransientAiException.class, () -> model.call(PROMPT));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, model.circuitState());
+        model.call(PROMPT);
+        assertEquals(CircuitBreaker.State.CLOSED, model.circuitState());
+    }
+
+    @Test
+    void releasesPermitsWhenStreamFailsToStart() {
+        properties.getBulkhead().setMaxConcurrent(1);
+        properties.getBulkhead().setMaxWait(Duration.ZERO);
+        // ChatModel.stream is unsupported unless overridden: the delegate throws before returning a Flux
+        ProtectedChatModel model = protect(prompt -> answer());
+
+        for (int i = 0; i < 3; i++) {
+            assertThrows(UnsupportedOperationException.class, () -> model.stream(PROMPT).blockLast());
+        }
+        assertEquals("ok", model.call(PROMPT).getResult().getOutput().getText());
+    }
+
+    @Test
+    void rejectsCallsOverTheRateLimit() {
+        properties.getRateLimit().setPermitsPerSecond(1);
+        properties.getRateLimit().setBurst(2);
+        properties.getRateLimit().setMaxWait(Duration.ZERO);
+        ProtectedChatModel model = protect(prompt -> answer());
+
+        model.call(PROMPT);
+        model.call(PROMPT);
+        assertThrows(ModelUnavailableException.class, () -> model.call(PROMPT));
+        assertEquals(1.0, meterRegistry.counter("nutricheck.model.rejected",
+                "backend", "test", "reason", "rate_limit").count());
+    }
+
+    private ProtectedChatModel protect(ChatModel delegate) {
+        return new ProtectedChatModel("test", delegate, properties,
+                new SimpleAsyncTaskExecutor("test-model-"), meterRegistry);
+    }
+
+    private static ChatResponse answer() {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage("ok"))));
+    }
+}
@@ -0,0 +1,123 @@
+package com.nutricheck.ai;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nutricheck.config.ModelRoutingProperties;
+import com.nutricheck.config.ResilienceProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Routing, hedging and fallback against local stand-in backends
+ */
+class RoutingChatModelTest {
+
+    private static final Prompt PROMPT = new Prompt("Ingredients:\nSugar, Salt\n\nAnalyze each ingredient");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ModelRoutingProperties properties = new ModelRoutingProperties();
+
+    @Test
+    void fallsBackWhenPreferredBackendFails() {
+        RoutingChatModel router = router(fake(Duration.ofMillis(10), 1.0), fake(Duration.ofMillis(10), 0.0));
+
+        String answer = router.call(PROMPT).getResult().getOutput().getText();
+
+        assertTrue(answer.contains("Sugar"));
+        assertEquals(1.0, meterRegistry.counter("nutricheck.model.fallbacks").count());
+    }
+
+    @Test
+    void fallsBackWhenABackendThrowsAnError() {
+        ResilienceProperties unprotected = new ResilienceProperties();
+        unprotected.setEnabled(false);
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("first", (ChatModel) prompt -> {
+            throw new NoClassDefFoundError("com/example/ProviderClient");
+        });
+        beanFactory.addBean("second", fake(Duration.ofMillis(10), 0.0));
+        properties.getBackends().add("first");
+        properties.getBackends().add("second");
+        RoutingChatModel router = new RoutingChatModel(beanFactory, properties, unprotected,
+                new SimpleAsyncTaskExecutor("test-model-"), meterRegistry);
+
+        // The failed attempt is reported instead of leaving the caller waiting for it
+        String answer = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> router.call(PROMPT).getResult().getOutput().getText());
+
+        assertTrue(answer.contains("Sugar"));
+        assertEquals(1.0, meterRegistry.counter("nutricheck.model.fallbacks").count());
+    }
+
+    @Test
+    void hedgesSlowBackend() {
+        properties.getHedge().setInitialDelay(Duration.ofMillis(100));
+        properties.getHedge().setMinDelay(Duration.ofMillis(100));
+        RoutingChatModel router = router(fake(Duration.ofSeconds(3), 0.0), fake(Duration.ofMillis(20), 0.0));
+
+        long start = System.nanoTime();
+        router.call(PROMPT);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMillis < 1_000, "Hedged call should not wait for the slow backend, took " + elapsedMillis);
+        assertEquals(1.0, meterRegistry.counter("nutricheck.model.hedge.wins").count());
+    }
+
+    @Test
+    void prefersFasterBackendOnceMeasured() {
+        properties.setMinSamples(5);
+        properties.getHedge().setEnabled(false);
+        RoutingChatModel router = router(fake(Duration.ofMillis(60), 0.0), fake(Duration.ofMillis(5), 0.0));
+
+        // Warm both backends: the second one only gets traffic through fallbacks, so measure it directly
+        for (RoutingChatModel.Backend backend : router.rank()) {
+            for (int i = 0; i < 5; i++) {
+                long start = System.nanoTime();
+                backend.model().call(PROMPT);
+                backend.success(System.nanoTime() - start);
+            }
+        }
+
+        assertEquals("second", router.rank().get(0).name());
+    }
+
+    @Test
+    void routesOnlyToListedBackends() {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("first", fake(Duration.ofMillis(10), 0.0));
+        beanFactory.addBean("unlisted", fake(Duration.ofMillis(10), 0.0));
+        properties.getBackends().add("first");
+        RoutingChatModel router = new RoutingChatModel(beanFactory, properties, new ResilienceProperties(),
+                new SimpleAsyncTaskExecutor("test-model-"), meterRegistry);
+
+        assertEquals(List.of("first"), router.rank().stream().map(RoutingChatModel.Backend::name).toList());
+    }
+
+    private RoutingChatModel router(FakeChatModel first, FakeChatModel second) {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("first", first);
+        beanFactory.addBean("second", second);
+        properties.getBackends().add("first");
+        properties.getBackends().add("second");
+        return new RoutingChatModel(beanFactory, properties, new ResilienceProperties(),
+                new SimpleAsyncTaskExecutor("test-model-"), meterRegistry);
+    }
+
+    private static FakeChatModel fake(Duration latency, double failureRate) {
+        ModelRoutingProperties.Fake settings = new ModelRoutingProperties.Fake();
+        settings.setLatency(latency);
+        settings.setJitter(0);
+        settings.setFailureRate(failureRate);
+        return new FakeChatModel(new ObjectMapper(), settings);
+    }
+}
@@ -0,0 +1,98 @@
+package com.nutricheck.bulk;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nutricheck.dto.enums.ImportFormat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * CSV, NDJSON and ZIP import files, and resuming part way through
+ */
+class ImportReaderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsQuotedCsvFields() throws IOException {
+        Path file = write("catalogue.csv", "\uFEFFProduct_Name,Ingredients,Category\r\n"
+                + "Oats,\"oats, sugar, \"\"sea\"\" salt\",food\r\n"
+                + "\r\n"
+                + "Soda,\"water,\nsugar\",\r\n");
+
+        try (ImportReader reader = ImportReader.open(file, ImportFormat.CSV, objectMapper)) {
+            List<ImportItem> items = reader.next(10);
+
+            assertEquals(2, items.size());
+            assertEquals("Oats", items.get(0).productName());
+            assertEquals("oats, sugar, \"sea\" salt", items.get(0).ingredients());
+            assertEquals("food", items.get(0).category());
+            assertEquals("water,\nsugar", items.get(1).ingredients());
+            assertNull(items.get(1).category());
+            assertThrows(IllegalStateException.class, () -> reader.openImage(items.get(0)));
+        }
+    }
+
+    @Test
+    void rejectsCsvWithoutIngredientsColumn() throws IOException {
+        Path file = write("catalogue.csv", "name,contents\nOats,oats\n");
+
+        assertThrows(IllegalArgumentException.class, () -> ImportReader.open(file, ImportFormat.CSV, objectMapper));
+    }
+
+    @Test
+    void skipsToResumePoint() throws IOException {
+        Path file = write("catalogue.ndjson", "{\"productName\":\"A\",\"ingredients\":[\"sugar\",\"salt\"]}\n"
+                + "{\"productName\":\"B\",\"ingredients\":\"water\",\"productCategory\":\"BEVERAGES\"}\n"
+                + "{\"productName\":\"C\",\"ingredients\":\"cocoa\"}\n");
+
+        try (ImportReader reader = ImportReader.open(file, ImportFormat.NDJSON, objectMapper)) {
+            assertEquals(1, reader.skip(1));
+            ImportItem item = reader.next();
+
+            assertEquals(1, item.index());
+            assertEquals("B", item.productName());
+            assertEquals("BEVERAGES", item.category());
+            assertEquals(1, reader.next(10).size());
+        }
+    }
+
+    @Test
+    void readsImagesFromZip() throws IOException {
+        Path file = dir.resolve("labels.zip");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(file))) {
+            for (String name : List.of("shelf/Crunchy Oats.jpg", "__MACOSX/shelf/._Crunchy Oats.jpg", "notes.txt", "Soda.PNG")) {
+                out.putNextEntry(new ZipEntry(name));
+                out.write(name.getBytes());
+                out.closeEntry();
+            }
+        }
+
+        try (ImportReader reader = ImportReader.open(file, ImportFormat.ZIP, objectMapper)) {
+            List<ImportItem> items = reader.next(10);
+
+            assertEquals(List.of("Crunchy Oats", "Soda"), items.stream().map(ImportItem::productName).toList());
+            try (InputStream image = reader.openImage(items.get(1))) {
+                assertEquals("Soda.PNG", new String(image.readAllBytes()));
+            }
+        }
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.writeString(dir.resolve(name), content);
+    }
+}
@@ -0,0 +1,72 @@
+package com.nutricheck.concurrency;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Connection permits, and the nested connection a transaction opens for an ID block
+ */
+class ConcurrencyLimitedDataSourceTest {
+
+    private final CallLimiter limiter = new CallLimiter("database connection", 1, Duration.ofMillis(100));
+    private final ConcurrencyLimitedDataSource dataSource = new ConcurrencyLimitedDataSource(new FakeDataSource(), limiter);
+
+    @Test
+    void holdsAPermitPerConnectionUntilClosed() throws SQLException {
+        try (Connection ignored = dataSource.getConnection()) {
+            assertEquals(0, limiter.availablePermits());
+            // Another thread has to wait for the permit and gives up after the acquire timeout
+            CompletionException e = assertThrows(CompletionException.class, () -> CompletableFuture.runAsync(() -> {
+                try (Connection other = dataSource.getConnection()) {
+                    other.isClosed();
+                } catch (SQLException sql) {
+                    throw new IllegalStateException(sql);
+                }
+            }).join());
+            assertEquals(RuntimeException.class, e.getCause().getClass());
+        }
+        assertEquals(1, limiter.availablePermits());
+    }
+
+    @Test
+    void lendsTheHoldingThreadASecondConnectionWithoutAPermit() throws SQLException {
+        try (Connection transaction = dataSource.getConnection()) {
+            // Without this the ID block fetch would wait for the permit its own transaction holds
+            try (Connection idBlock = dataSource.getConnection()) {
+                assertEquals(0, limiter.availablePermits());
+            }
+            assertEquals(0, limiter.availablePermits());
+        }
+        assertEquals(1, limiter.availablePermits());
+
+        // Back to one permit per connection once the thread holds none
+        try (Connection next = dataSource.getConnection()) {
+            assertEquals(0, limiter.availablePermits());
+        }
+    }
+
+    private static class FakeDataSource extends AbstractDataSource {
+
+        @Override
+        public Connection getConnection() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> method.getReturnType() == boolean.class ? false : null);
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) {
+            return getConnection();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.nutricheck.concurrency;
+
+import com.nutricheck.ai.ModelUnavailableException;
+import com.nutricheck.ai.ProtectedChatModel;
+import com.nutricheck.config.ResilienceProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sharing one in-flight call between callers, and how long followers wait for it
+ */
+class SingleFlightTest {
+
+    @Test
+    void followersShareTheLeadersResult() throws Exception {
+        SingleFlight<String> singleFlight = new SingleFlight<>("test", Duration.ofSeconds(5));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> singleFlight.execute("key", () -> {
+            started.countDown();
+            await(release);
+            return "answer";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> follower = CompletableFuture.supplyAsync(
+                () -> singleFlight.execute("key", () -> "own call"));
+        while (singleFlight.followerCount() == 0) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+
+        assertEquals("answer", leader.get(5, TimeUnit.SECONDS));
+        assertEquals("answer", follower.get(5, TimeUnit.SECONDS));
+        assertEquals(1, singleFlight.leaderCount());
+    }
+
+    @Test
+    void followersStopWaitingAfterTheTimeout() throws Exception {
+        SingleFlight<String> singleFlight = new SingleFlight<>("test", Duration.ofMillis(100));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> singleFlight.execute("key", () -> {
+            started.countDown();
+            await(release);
+            return "late answer";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertThrows(ModelUnavailableException.class, () -> singleFlight.execute("key", () -> "own call"));
+        assertEquals(1, singleFlight.followerTimeoutCount());
+
+        // The leader is not affected by its follower giving up
+        release.countDown();
+        assertEquals("late answer", leader.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void followersOutlastALeaderThatRetriesPastOneAttempt() throws Exception {
+        ResilienceProperties resilience = new ResilienceProperties();
+        resilience.setTimeout(Duration.ofMillis(200));
+        resilience.getRetry().setInitialBackoff(Duration.ofMillis(5));
+        resilience.getRetry().setMaxBackoff(Duration.ofMillis(20));
+        // The first attempt hangs past the timeout, the retry answers
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch hanging = new CountDownLatch(1);
+        ProtectedChatModel model = new ProtectedChatModel("test", prompt -> {
+            if (attempts.incrementAndGet() == 1) {
+                hanging.countDown();
+                sleep(Duration.ofMillis(600));
+            }
+            return new ChatResponse(List.of(new Generation(new AssistantMessage("answer"))));
+        }, resilience, new SimpleAsyncTaskExecutor("test-model-"), new SimpleMeterRegistry());
+        SingleFlight<String> singleFlight = new SingleFlight<>("test", resilience.callBudget());
+        Prompt prompt = new Prompt("Ingredients:\nSugar\n");
+
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> singleFlight.execute("key",
+                () -> model.call(prompt).getResult().getOutput().getText()));
+        assertTrue(hanging.await(5, TimeUnit.SECONDS));
+
+        assertEquals("answer", singleFlight.execute("key", () -> "own call"));
+        assertEquals("answer", leader.get(5, TimeUnit.SECONDS));
+        assertEquals(2, attempts.get());
+        assertEquals(0, singleFlight.followerTimeoutCount());
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
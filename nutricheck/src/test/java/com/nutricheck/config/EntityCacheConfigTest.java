@@ -0,0 +1,87 @@
+package com.nutricheck.config;
+
+import com.nutricheck.entity.Ingredient;
+import com.nutricheck.repository.IngredientRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Statements saved by the second-level cache, and that JPA writes are seen by the next read
+ */
+@ActiveProfiles("test")
+@SpringBootTest
+class EntityCacheConfigTest {
+
+    @Autowired
+    private IngredientRepository ingredientRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Statistics statistics;
+    private Ingredient ingredient;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        ingredient = ingredientRepository.save(Ingredient.builder()
+                .name("Cache Test " + UUID.randomUUID()).riskLevel("LOW").category("additive").build());
+        entityManagerFactory.getCache().evictAll();
+        statistics.clear();
+    }
+
+    @Test
+    void servesRepeatedLookupsByIdFromTheCache() {
+        assertEquals("LOW", ingredientRepository.findById(ingredient.getId()).orElseThrow().getRiskLevel());
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        assertEquals("LOW", ingredientRepository.findById(ingredient.getId()).orElseThrow().getRiskLevel());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getSecondLevelCacheHitCount());
+    }
+
+    @Test
+    void readsTheUpdatedRowAfterAJpaWrite() {
+        ingredientRepository.findById(ingredient.getId()).orElseThrow();
+        update("HIGH");
+        statistics.clear();
+
+        // The write updated the cached entry: the new value, without a statement
+        assertEquals("HIGH", ingredientRepository.findById(ingredient.getId()).orElseThrow().getRiskLevel());
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void runsNameQueriesEveryTime() {
+        Set<String> names = Set.of(ingredient.getName().toLowerCase(Locale.ROOT));
+        ingredientRepository.findByLowerCaseNameIn(names);
+        ingredientRepository.findByLowerCaseNameIn(names);
+        assertEquals(2, statistics.getPrepareStatementCount());
+
+        update("MEDIUM");
+
+        assertEquals("MEDIUM", ingredientRepository.findByLowerCaseNameIn(names).get(0).getRiskLevel());
+    }
+
+    private void update(String riskLevel) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Ingredient managed = ingredientRepository.findById(ingredient.getId()).orElseThrow();
+            managed.setRiskLevel(riskLevel);
+        });
+    }
+}
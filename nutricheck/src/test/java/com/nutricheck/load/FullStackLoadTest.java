@@ -0,0 +1,356 @@
+package com.nutricheck.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nutricheck.entity.Ingredient;
+import com.nutricheck.entity.User;
+import com.nutricheck.repository.IngredientRepository;
+import com.nutricheck.repository.UserRepository;
+import com.nutricheck.service.IngredientIndex;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.imageio.ImageIO;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives the whole application (HTTP, services, H2 database, local stand-in model) at a fixed request rate,
+ * one endpoint at a time, and reports throughput, latency percentiles, SQL statements and allocated bytes per request.
+ * Requests are sent open-loop on a schedule and latency is measured from the scheduled send time, so a stalled
+ * server shows up in the percentiles instead of silently lowering the offered load.
+ * Allocation is measured for the whole JVM (including this load generator) from GC notifications.
+ * <p>
+ * Run with: ./gradlew loadTest -Dload.rps=20 -Dload.seconds=30 -Dnutricheck.models.fake.latency=800ms
+ */
+@Tag("load")
+@ActiveProfiles("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class FullStackLoadTest {
+
+    private static final int RPS = Integer.getInteger("load.rps", 20);
+    private static final int SECONDS = Integer.getInteger("load.seconds", 20);
+    private static final int USERS = 20;
+    // Share of the ingredient pool that is in the master table (classified locally, no model call)
+    private static final double KNOWN_SHARE = 0.3;
+    private static final double MAX_ERROR_RATE = 0.05;
+    // Tail latency at the end of a run stretches the elapsed time, so allow some slack below the target rate
+    private static final double MIN_THROUGHPUT_SHARE = 0.75;
+
+    private static final String[] WORDS = {
+            "Sugar", "Palm Oil", "Wheat Flour", "Salt", "Citric Acid", "Sodium Benzoate", "Soy Lecithin",
+            "Glucose Syrup", "Natural Flavouring", "Xanthan Gum", "Ascorbic Acid", "Potassium Sorbate",
+            "Maltodextrin", "Cocoa Butter", "Whey Powder", "Monosodium Glutamate", "Carrageenan", "Tartrazine",
+            "Aspartame", "Sodium Nitrite", "Guar Gum", "Pectin", "Sucralose", "Caramel Colour", "Yeast Extract"};
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private IngredientRepository ingredientRepository;
+
+    @Autowired
+    private IngredientIndex ingredientIndex;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final List<Long> userIds = new ArrayList<>();
+    private final List<String> ingredientPool = new ArrayList<>();
+    private byte[] labelPhoto;
+
+    @BeforeEach
+    void seed() throws Exception {
+        for (int i = 0; i < USERS; i++) {
+            User user = userRepository.save(User.builder()
+                    .name("Load User " + i)
+                    .email("load" + i + "-" + System.nanoTime() + "@example.com")
+                    .build());
+            userIds.add(user.getId());
+        }
+
+        for (String word : WORDS) {
+            for (int variant = 0; variant < 12; variant++) {
+                ingredientPool.add(variant == 0 ? word : word + " " + variant);
+            }
+        }
+        List<Ingredient> known = new ArrayList<>();
+        for (int i = 0; i < ingredientPool.size() * KNOWN_SHARE; i++) {
+            known.add(Ingredient.builder()
+                    .name(ingredientPool.get(i * 3 % ingredientPool.size()))
+                    .category("additive")
+                    .riskLevel(i % 4 == 0 ? "HIGH" : "LOW")
+                    .description("Seeded for the load test")
+                    .build());
+        }
+        ingredientRepository.saveAll(known).forEach(ingredientIndex::add);
+
+        labelPhoto = syntheticLabelPhoto(1600, 1200);
+    }
+
+    @Test
+    void sustainsTargetRateAcrossEndpoints() throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newCachedThreadPool(named("load-client-")))
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        AllocationMeter allocations = new AllocationMeter();
+
+        // Warm up codecs, JIT, caches and connection pools; the results are discarded
+        run("warm-up", client, statistics, allocations, Math.max(1, RPS / 2), 5, this::ingredientsRequest);
+        run("warm-up", client, statistics, allocations, Math.max(1, RPS / 2), 5, this::imageRequest);
+
+        List<Result> results = List.of(
+                run("POST /api/scan/image", client, statistics, allocations, RPS, SECONDS, this::imageRequest),
+                run("POST /api/scan/ingredients", client, statistics, allocations, RPS, SECONDS, this::ingredientsRequest),
+                run("GET /api/scan/user/{id}", client, statistics, allocations, RPS, SECONDS, this::historyRequest));
+
+        System.out.printf("%nTarget %d req/s for %d s per endpoint%n", RPS, SECONDS);
+        System.out.println(Result.HEADER);
+        results.forEach(System.out::println);
+
+        for (Result result : results) {
+            assertTrue(result.errorRate() <= MAX_ERROR_RATE,
+                    result.endpoint() + " error rate " + result.errorRate() + " above " + MAX_ERROR_RATE);
+            assertTrue(result.throughput() >= RPS * MIN_THROUGHPUT_SHARE,
+                    result.endpoint() + " sustained only " + result.throughput() + " req/s");
+        }
+    }
+
+    private Result run(String endpoint, HttpClient client, Statistics statistics, AllocationMeter allocations,
+                       int rps, int seconds, IntFunction<HttpRequest> requests) throws Exception {
+        int total = rps * seconds;
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rps;
+        long[] latencies = new long[total];
+        AtomicInteger errors = new AtomicInteger();
+        AtomicLong lastCompletion = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(total);
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(named("load-ticker-"));
+
+        long statements = statistics.getPrepareStatementCount();
+        long allocated = allocations.allocatedBytes();
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < total; i++) {
+                int index = i;
+                long scheduled = start + i * intervalNanos;
+                ticker.schedule(() -> client.sendAsync(requests.apply(index), HttpResponse.BodyHandlers.discarding())
+                        .whenComplete((response, error) -> {
+                            long now = System.nanoTime();
+                            latencies[index] = now - scheduled;
+                            lastCompletion.accumulateAndGet(now, Math::max);
+                            if (error != null || response.statusCode() >= 400) {
+                                errors.incrementAndGet();
+                            }
+                            done.countDown();
+                        }), scheduled - System.nanoTime(), TimeUnit.NANOSECONDS);
+            }
+            assertTrue(done.await(seconds + 120L, TimeUnit.SECONDS), endpoint + " did not finish");
+        } finally {
+            ticker.shutdownNow();
+        }
+
+        double elapsedSeconds = (lastCompletion.get() - start) / 1e9;
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        return new Result(endpoint, total / elapsedSeconds, (double) errors.get() / total,
+                percentileMillis(sorted, 0.50), percentileMillis(sorted, 0.95), percentileMillis(sorted, 0.99),
+                (double) (statistics.getPrepareStatementCount() - statements) / total,
+                (double) (allocations.allocatedBytes() - allocated) / total);
+    }
+
+    private HttpRequest imageRequest(int index) {
+        // A few bytes after the JPEG end marker make every upload unique, so the image cache does not answer
+        byte[] image = Arrays.copyOf(labelPhoto, labelPhoto.length + Integer.BYTES);
+        ByteBuffer.wrap(image, labelPhoto.length, Integer.BYTES).putInt(index);
+
+        String boundary = "load-" + index;
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        writePart(body, boundary, "userId", null, String.valueOf(user(index)).getBytes(StandardCharsets.UTF_8));
+        writePart(body, boundary, "category", null, "FOOD".getBytes(StandardCharsets.UTF_8));
+        writePart(body, boundary, "image", "label.jpg", image);
+        body.writeBytes(("--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+        return HttpRequest.newBuilder(uri("/api/scan/image"))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+    }
+
+    private HttpRequest ingredientsRequest(int index) {
+        // 8-20 ingredients drawn from the pool: lists rarely repeat, single ingredients often do
+        Random random = new Random(index);
+        int count = 8 + random.nextInt(13);
+        List<String> ingredients = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ingredients.add(ingredientPool.get(random.nextInt(ingredientPool.size())));
+        }
+        try {
+            String json = objectMapper.writeValueAsString(Map.of(
+                    "ingredients", String.join(", ", ingredients),
+                    "productCategory", "FOOD"));
+            return HttpRequest.newBuilder(uri("/api/scan/ingredients"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(json))
+                    .build();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private HttpRequest historyRequest(int index) {
+        return HttpRequest.newBuilder(uri("/api/scan/user/" + user(index))).GET().build();
+    }
+
+    private long user(int index) {
+        return userIds.get(index % userIds.size());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private static void writePart(ByteArrayOutputStream body, String boundary, String name, String filename,
+                                  byte[] content) {
+        StringBuilder header = new StringBuilder("--").append(boundary).append("\r\n")
+                .append("Content-Disposition: form-data; name=\"").append(name).append('"');
+        if (filename != null) {
+            header.append("; filename=\"").append(filename).append("\"\r\nContent-Type: image/jpeg");
+        }
+        header.append("\r\n\r\n");
+        body.writeBytes(header.toString().getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(content);
+        body.writeBytes("\r\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long percentileMillis(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1_000_000;
+    }
+
+    private static ThreadFactory named(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // A photo-sized label: noisy background with a block of text
+    private static byte[] syntheticLabelPhoto(int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(7);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int noise = random.nextInt(24);
+                image.setRGB(x, y, new Color(200 + noise / 2, 190 + noise / 3, 170 + noise).getRGB());
+            }
+        }
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setColor(Color.BLACK);
+            g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 32));
+            for (int line = 0; line < 10; line++) {
+                g.drawString("Ingredients: sugar, palm oil, E330, E211, soy lecithin, salt", 80, 200 + line * 60);
+            }
+        } finally {
+            g.dispose();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Bytes allocated by the JVM so far: what every GC has reclaimed plus what is on the heap now
+     */
+    private static final class AllocationMeter {
+
+        private final AtomicLong reclaimed = new AtomicLong();
+
+        AllocationMeter() {
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (collector instanceof NotificationEmitter emitter) {
+                    emitter.addNotificationListener((notification, handback) -> {
+                        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION
+                                .equals(notification.getType())) {
+                            return;
+                        }
+                        GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo
+                                .from((CompositeData) notification.getUserData());
+                        reclaimed.addAndGet(used(info.getGcInfo().getMemoryUsageBeforeGc())
+                                - used(info.getGcInfo().getMemoryUsageAfterGc()));
+                    }, null, null);
+                }
+            }
+        }
+
+        long allocatedBytes() {
+            return reclaimed.get() + ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        }
+
+        private static long used(Map<String, MemoryUsage> pools) {
+            return pools.values().stream().mapToLong(MemoryUsage::getUsed).sum();
+        }
+    }
+
+    private record Result(String endpoint, double throughput, double errorRate, long p50Millis, long p95Millis,
+                          long p99Millis, double statementsPerRequest, double bytesPerRequest) {
+
+        static final String HEADER = String.format("%-28s %9s %7s %7s %7s %7s %9s %12s",
+                "endpoint", "req/s", "errors", "p50ms", "p95ms", "p99ms", "sql/req", "alloc/req");
+
+        @Override
+        public String toString() {
+            return String.format("%-28s %9.1f %6.1f%% %7d %7d %7d %9.1f %10.1f KB",
+                    endpoint, throughput, errorRate * 100, p50Millis, p95Millis, p99Millis,
+                    statementsPerRequest, bytesPerRequest / 1024);
+        }
+    }
+}
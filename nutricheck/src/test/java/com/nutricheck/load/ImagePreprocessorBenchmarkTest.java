@@ -0,0 +1,104 @@
+package com.nutricheck.load;
+
+import com.nutricheck.config.ImagePreprocessingProperties;
+import com.nutricheck.service.ImagePreprocessor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures what preprocessing costs and how many bytes it saves for a phone-sized label photo, and reports
+ * what the saving is worth in upload time at a given uplink. Provider-side time per payload byte is not known
+ * (the local stand-in model ignores the payload), so no end-to-end verdict is asserted.
+ * Run with: ./gradlew loadTest -Dload.uplinkMbps=10
+ */
+@Tag("load")
+class ImagePreprocessorBenchmarkTest {
+
+    private static final int ITERATIONS = 20;
+    private static final double UPLINK_BYTES_PER_SECOND = Integer.getInteger("load.uplinkMbps", 10) * 1_000_000 / 8.0;
+
+    @Test
+    void preprocessingShrinksLargePhotos() throws Exception {
+        byte[] photo = syntheticLabelPhoto(4032, 3024);
+        Path file = Files.createTempFile("label-", ".jpg");
+        Files.write(file, photo);
+        ImagePreprocessor preprocessor = new ImagePreprocessor(new ImagePreprocessingProperties(), new SimpleMeterRegistry());
+
+        // Warm up ImageIO codecs and the JIT
+        for (int i = 0; i < 3; i++) {
+            preprocessor.preprocess(file, "image/jpeg");
+        }
+
+        long[] timings = new long[ITERATIONS];
+        ImagePreprocessor.PreprocessedImage result = null;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            result = preprocessor.preprocess(file, "image/jpeg");
+            timings[i] = System.nanoTime() - start;
+        }
+        Files.delete(file);
+        Arrays.sort(timings);
+        double preprocessMillis = timings[ITERATIONS / 2] / 1e6;
+
+        double rawUploadMillis = uploadMillis(photo.length);
+        double processedUploadMillis = uploadMillis(result.size());
+
+        System.out.printf("original   %,d bytes  upload ~%.0f ms%n", photo.length, rawUploadMillis);
+        System.out.printf("processed  %,d bytes  upload ~%.0f ms  preprocess p50 %.1f ms%n",
+                result.size(), processedUploadMillis, preprocessMillis);
+        System.out.printf("saved      %.1f%% bytes, %.0f ms upload for %.1f ms preprocessing%n",
+                100.0 * (photo.length - result.size()) / photo.length,
+                rawUploadMillis - processedUploadMillis, preprocessMillis);
+
+        assertTrue(result.changed(), "Large photo should be preprocessed");
+        assertTrue(result.size() < photo.length / 4, "Expected at least a 4x size reduction");
+    }
+
+    private static double uploadMillis(long bytes) {
+        return bytes / UPLINK_BYTES_PER_SECOND * 1000;
+    }
+
+    // Noisy colour background (compresses like a real photo) with a block of dark text in the middle
+    private static byte[] syntheticLabelPhoto(int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int noise = random.nextInt(24);
+                image.setRGB(x, y, new Color(200 + noise / 2, 190 + noise / 3, 170 + noise).getRGB());
+            }
+        }
+
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(width / 4, height / 4, width / 2, height / 2);
+            g.setColor(Color.BLACK);
+            g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 48));
+            for (int line = 0; line < 18; line++) {
+                g.drawString("Ingredients: sugar, palm oil, E330, E211, soy lecithin, salt",
+                        width / 4 + 40, height / 4 + 80 + line * 75);
+            }
+        } finally {
+            g.dispose();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", out);
+        return out.toByteArray();
+    }
+}
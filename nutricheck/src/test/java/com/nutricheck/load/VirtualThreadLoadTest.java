@@ -0,0 +1,194 @@
+package com.nutricheck.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nutricheck.NutriCheckApplication;
+import com.nutricheck.entity.User;
+import com.nutricheck.repository.UserRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs the whole application (Tomcat, services, H2 database, local stand-in model) once with platform threads
+ * and once with virtual threads, drives the same closed-loop mix of ingredient scans and history reads
+ * against each, and prints throughput and latency side by side. Which mode wins depends on the model latency,
+ * the call caps (nutricheck.concurrency.*) and the number of clients, so the result is reported, not asserted.
+ * <p>
+ * Run with: ./gradlew loadTest -PloadTestJavaVersion=21 -Dload.clients=400 -Dload.seconds=20
+ */
+@Tag("load")
+class VirtualThreadLoadTest {
+
+    // More clients than Tomcat's 200 worker threads, so the platform pool has to queue
+    private static final int CLIENTS = Integer.getInteger("load.clients", 400);
+    private static final int SECONDS = Integer.getInteger("load.seconds", 20);
+    private static final int USERS = 20;
+    // Share of requests that read scan history instead of scanning
+    private static final double HISTORY_SHARE = 0.2;
+
+    private static final String[] WORDS = {
+            "Sugar", "Palm Oil", "Wheat Flour", "Salt", "Citric Acid", "Sodium Benzoate", "Soy Lecithin",
+            "Glucose Syrup", "Xanthan Gum", "Ascorbic Acid", "Potassium Sorbate", "Maltodextrin", "Carrageenan"};
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void comparesPlatformAndVirtualThreads() throws Exception {
+        assumeTrue(Runtime.version().feature() >= 21, "Virtual threads need Java 21+");
+
+        List<Result> results = List.of(run("platform", false), run("virtual", true));
+
+        System.out.printf("%n%d clients for %d s per mode%n", CLIENTS, SECONDS);
+        System.out.println(Result.HEADER);
+        results.forEach(System.out::println);
+
+        for (Result result : results) {
+            assertTrue(result.requests() > 0, result.mode() + " completed no requests");
+        }
+    }
+
+    private Result run(String mode, boolean virtualThreads) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(NutriCheckApplication.class)
+                .profiles("load")
+                .run("--server.port=0", "--spring.threads.virtual.enabled=" + virtualThreads)) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            List<Long> userIds = seedUsers(context.getBean(UserRepository.class));
+            HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+            // Warm up codecs, JIT and pools; the numbers are discarded
+            drive(client, port, userIds, Math.max(1, CLIENTS / 4), 5);
+            return drive(client, port, userIds, CLIENTS, SECONDS).named(mode);
+        }
+    }
+
+    private Result drive(HttpClient client, int port, List<Long> userIds, int clients, int seconds)
+            throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Long>[] latencies = newLists(clients);
+        AtomicInteger errors = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        long start = System.nanoTime();
+
+        for (int c = 0; c < clients; c++) {
+            int clientIndex = c;
+            pool.execute(() -> {
+                Random random = new Random(clientIndex);
+                while (System.nanoTime() < end) {
+                    HttpRequest request = random.nextDouble() < HISTORY_SHARE
+                            ? historyRequest(port, userIds.get(random.nextInt(userIds.size())))
+                            : ingredientsRequest(port, random);
+                    long sent = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() >= 400) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                    latencies[clientIndex].add(System.nanoTime() - sent);
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(seconds + 120L, TimeUnit.SECONDS), "load run did not finish");
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        long[] sorted = Arrays.stream(latencies).flatMap(List::stream).mapToLong(Long::longValue).sorted().toArray();
+        return new Result(null, sorted.length, sorted.length / elapsedSeconds,
+                sorted.length == 0 ? 0 : (double) errors.get() / sorted.length,
+                percentileMillis(sorted, 0.50), percentileMillis(sorted, 0.99));
+    }
+
+    private static List<Long> seedUsers(UserRepository userRepository) {
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            userIds.add(userRepository.save(User.builder()
+                    .name("Load User " + i)
+                    .email("vt-load" + i + "-" + System.nanoTime() + "@example.com")
+                    .build()).getId());
+        }
+        return userIds;
+    }
+
+    private HttpRequest ingredientsRequest(int port, Random random) {
+        // Numbered variants keep most names out of the master table, so scans reach the model
+        List<String> ingredients = new ArrayList<>();
+        int count = 8 + random.nextInt(8);
+        for (int i = 0; i < count; i++) {
+            ingredients.add(WORDS[random.nextInt(WORDS.length)] + " " + random.nextInt(50));
+        }
+        try {
+            String json = objectMapper.writeValueAsString(Map.of(
+                    "ingredients", String.join(", ", ingredients),
+                    "productCategory", "FOOD"));
+            return HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/scan/ingredients"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(json))
+                    .build();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static HttpRequest historyRequest(int port, long userId) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/scan/user/" + userId)).GET().build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Long>[] newLists(int count) {
+        List<Long>[] lists = new List[count];
+        for (int i = 0; i < count; i++) {
+            lists[i] = new ArrayList<>();
+        }
+        return lists;
+    }
+
+    private static long percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1_000_000;
+    }
+
+    private record Result(String mode, int requests, double throughput, double errorRate, long p50Millis,
+                          long p99Millis) {
+
+        static final String HEADER = String.format("%-10s %9s %9s %7s %7s %7s",
+                "mode", "requests", "req/s", "errors", "p50ms", "p99ms");
+
+        Result named(String name) {
+            return new Result(name, requests, throughput, errorRate, p50Millis, p99Millis);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-10s %9d %9.1f %6.1f%% %7d %7d",
+                    mode, requests, throughput, errorRate * 100, p50Millis, p99Millis);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.nutricheck.persistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.nutricheck.dto.AiAnalysisResponse;
+import com.nutricheck.dto.IngredientAnalysis;
+import com.nutricheck.dto.enums.ProductCategory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Appending, recovering and deleting segments of the write-behind journal
+ */
+class ScanJournalTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recoversUncommittedScans() throws IOException {
+        try (ScanJournal journal = new ScanJournal(dir, objectMapper, 1 << 20, true)) {
+            long segment = journal.append(scan(1));
+            journal.append(scan(2));
+            journal.committed(segment, 1);
+        }
+
+        try (ScanJournal journal = new ScanJournal(dir, objectMapper, 1 << 20, true)) {
+            List<ScanJournal.Entry> entries = journal.recover();
+            assertEquals(List.of(1L, 2L), entries.stream().map(entry -> entry.scan().scanId()).toList());
+            assertEquals("Sugar", entries.get(0).scan().analysis().getResults().get(0).getIngredientName());
+            assertTrue(journal.recover().isEmpty());
+        }
+    }
+
+    @Test
+    void skipsTornLastLine() throws IOException {
+        try (ScanJournal journal = new ScanJournal(dir, objectMapper, 1 << 20, false)) {
+            journal.append(scan(1));
+        }
+        Path segment = segments().get(0);
+        Files.writeString(segment, "{\"scanId\":2,\"userId\"", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        try (ScanJournal journal = new ScanJournal(dir, objectMapper, 1 << 20, false)) {
+            assertEquals(1, journal.recover().size());
+        }
+    }
+
+    @Test
+    void locksItsDirectory() throws IOException {
+        try (ScanJournal journal = new ScanJournal(dir, objectMapper, 1 << 20, false)) {
+            assertThrows(IOException.class, () -> new ScanJournal(dir, objectMapper, 1 << 20, false));
+        }
+        new ScanJournal(dir, objectMapper, 1 << 20, false).close();
+    }
+
+    @Test
+    void deletesCommittedSegments() throws IOException {
+        try (ScanJournal journal = new ScanJournal(dir, objectMapper, 1, false)) {
+            long first = journal.append(scan(1));
+            long second = journal.append(scan(2));
+            assertTrue(second > first);
+
+            journal.committed(first, 1);
+            assertEquals(1, segments().size());
+
+            journal.committed(second, 1);
+            journal.append(scan(3));
+            assertEquals(1, segments().size());
+        }
+
+        try (ScanJournal journal = new ScanJournal(dir, objectMapper, 1, false)) {
+            List<ScanJournal.Entry> entries = journal.recover();
+            assertEquals(1, entries.size());
+            journal.committed(entries.get(0).segment(), 1);
+            assertEquals(1, journal.pendingSegments());
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".journal")).toList();
+        }
+    }
+
+    private static PendingScan scan(long id) {
+        IngredientAnalysis sugar = new IngredientAnalysis("Sugar", "MEDIUM", "Moderate", "Added sugar",
+                "Sweetener", "sweetener", List.of("Tooth decay"));
+        return new PendingScan(id, 7, LocalDateTime.of(2026, 1, 1, 12, 0),
+                new AiAnalysisResponse("Oat Bar", List.of(sugar), 60, "Fine in moderation", List.of()),
+                List.of(id * 100), ProductCategory.FOOD);
+    }
+}
@@ -0,0 +1,48 @@
+package com.nutricheck.service;
+
+import com.nutricheck.dto.AiAnalysisResponse;
+import com.nutricheck.dto.IngredientAnalysis;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Combining known verdicts with a model answer about the remaining ingredients
+ */
+class AnalysisAssemblerTest {
+
+    private final AnalysisAssembler assembler = new AnalysisAssembler();
+
+    @Test
+    void labelsTheModelsPartWhenItSawOnlySomeIngredients() {
+        AiAnalysisResponse model = new AiAnalysisResponse("Cola", List.of(verdict("Aspartame", "HIGH")), 3,
+                "Contains an artificial sweetener.", List.of("People with PKU"));
+
+        AiAnalysisResponse merged = assembler.merge(model, List.of(verdict("Water", "LOW"), verdict("Sugar", "MEDIUM")));
+
+        assertEquals("3 ingredients analyzed: 1 high, 1 medium and 1 low risk."
+                        + " About the 1 newly analyzed ingredient(s): Contains an artificial sweetener."
+                        + " Warnings cover only the 1 newly analyzed ingredient(s).",
+                merged.getOverallAssessment());
+        assertEquals(List.of("People with PKU"), merged.getWarningsFor());
+        assertEquals(List.of("Water", "Sugar", "Aspartame"),
+                merged.getResults().stream().map(IngredientAnalysis::getIngredientName).toList());
+    }
+
+    @Test
+    void keepsTheModelsAssessmentAsIsWhenItSawEverything() {
+        AiAnalysisResponse model = new AiAnalysisResponse("Cola", List.of(verdict("Aspartame", "HIGH")), 3,
+                "Contains an artificial sweetener.", List.of("People with PKU"));
+
+        AiAnalysisResponse merged = assembler.merge(model, List.of());
+
+        assertEquals("1 ingredients analyzed: 1 high, 0 medium and 0 low risk. Contains an artificial sweetener.",
+                merged.getOverallAssessment());
+    }
+
+    private static IngredientAnalysis verdict(String name, String risk) {
+        return new IngredientAnalysis(name, risk, "Moderate", "", "", "additive", List.of());
+    }
+}
@@ -0,0 +1,145 @@
+package com.nutricheck.service;
+
+import com.nutricheck.dto.CanonicalizationReport;
+import com.nutricheck.entity.Ingredient;
+import com.nutricheck.entity.Scan;
+import com.nutricheck.entity.ScanResult;
+import com.nutricheck.repository.IngredientRepository;
+import com.nutricheck.repository.ScanRepository;
+import com.nutricheck.repository.ScanResultRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Merging, repointing and purging ingredient rows against the database
+ */
+@ActiveProfiles("test")
+@SpringBootTest(properties = "nutricheck.canonicalization.purge-after=0s")
+class IngredientCanonicalizationServiceTest {
+
+    @Autowired
+    private IngredientCanonicalizationService service;
+    @Autowired
+    private IngredientRepository ingredientRepository;
+    @Autowired
+    private ScanRepository scanRepository;
+    @Autowired
+    private ScanResultRepository scanResultRepository;
+    @Autowired
+    private IngredientIndex ingredientIndex;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void clean() {
+        scanResultRepository.deleteAll();
+        scanRepository.deleteAll();
+        ingredientRepository.deleteAll();
+        ingredientIndex.refresh();
+    }
+
+    @Test
+    void mergesVariantsRepointsResultsAndPurges() {
+        // The typo is the oldest row and the most referenced one; the confirmed spelling still wins
+        Ingredient typo = save("monosodum glutamate", null, null);
+        Ingredient msg = save("Monosodium Glutamate", "MEDIUM", "Flavour enhancer");
+        Ingredient plural = save("Monosodium Glutamates", null, null);
+        Ingredient nitrite = save("Sodium Nitrite", "HIGH", "Preservative");
+        Ingredient nitrate = save("Sodium Nitrate", "HIGH", "Preservative");
+        Ingredient benzoate = save("Sodium Benzoate", "LOW", "Preservative");
+        Ingredient disputed = save("Sodium Bensoate", "HIGH", "Preservative");
+        Scan scan = scanRepository.save(Scan.builder().productName("Noodles").scannedAt(LocalDateTime.now()).build());
+        for (int i = 0; i < 3; i++) {
+            result(scan, typo);
+        }
+        result(scan, msg);
+        result(scan, plural);
+
+        service.run(false);
+
+        CanonicalizationReport report = service.getLastReport().orElseThrow();
+        assertEquals(2, report.getMergedIngredients());
+        assertEquals(4, report.getRepointedResults());
+        assertEquals(msg.getId(), reload(typo).getMergedInto());
+        assertEquals(msg.getId(), reload(plural).getMergedInto());
+        assertTrue(reload(msg).getAliases().contains("monosodum glutamate"));
+        assertEquals("MEDIUM", reload(msg).getRiskLevel());
+        assertEquals(5, resultsFor(msg));
+        assertEquals(0, resultsFor(typo) + resultsFor(plural));
+
+        // Different compounds, and a variant with a different verdict, are left alone
+        assertNull(reload(nitrite).getMergedInto());
+        assertNull(reload(nitrate).getMergedInto());
+        assertNull(reload(benzoate).getMergedInto());
+        assertNull(reload(disputed).getMergedInto());
+
+        service.run(false);
+
+        assertEquals(2, service.getLastReport().orElseThrow().getPurgedIngredients());
+        assertTrue(ingredientRepository.findById(typo.getId()).isEmpty());
+        assertTrue(ingredientRepository.findById(plural.getId()).isEmpty());
+        assertEquals(5, resultsFor(msg));
+    }
+
+    @Test
+    void incrementalRunOnlyLoadsCandidatesOfNewNames() {
+        Ingredient msg = save("Monosodium Glutamate", "MEDIUM", "Flavour enhancer");
+        save("Sodium Nitrite", "HIGH", "Preservative");
+        save("Xanthan Gum", "LOW", "Thickener");
+        save("Ascorbic Acid", "LOW", "Antioxidant");
+        service.run(false);
+        assertEquals(4, service.getLastReport().orElseThrow().getScannedIngredients());
+
+        Ingredient typo = save("Monosodiun Glutamate", null, null);
+        service.run(false);
+
+        CanonicalizationReport report = service.getLastReport().orElseThrow();
+        assertEquals(2, report.getScannedIngredients());
+        assertEquals(1, report.getMergedIngredients());
+        assertEquals(msg.getId(), reload(typo).getMergedInto());
+    }
+
+    @Test
+    void incrementalRunPicksUpRowsCommittedBelowIdsAlreadySeen() {
+        // Another instance took this ID from its pooled block early and commits the row only after the next run
+        long lateId = save("Placeholder", null, null).getId();
+        ingredientRepository.deleteById(lateId);
+        Ingredient msg = save("Monosodium Glutamate", "MEDIUM", "Flavour enhancer");
+        save("Sodium Nitrite", "HIGH", "Preservative");
+        service.run(false);
+
+        jdbcTemplate.update("INSERT INTO ingredients (id, name) VALUES (?, ?)", lateId, "Monosodiun Glutamate");
+        service.run(false);
+
+        assertEquals(1, service.getLastReport().orElseThrow().getMergedIngredients());
+        assertEquals(msg.getId(), ingredientRepository.findById(lateId).orElseThrow().getMergedInto());
+    }
+
+    private Ingredient save(String name, String riskLevel, String category) {
+        return ingredientRepository.save(Ingredient.builder().name(name).riskLevel(riskLevel).category(category).build());
+    }
+
+    private void result(Scan scan, Ingredient ingredient) {
+        scanResultRepository.save(ScanResult.builder().scan(scan).ingredient(ingredient).risk("LOW").build());
+    }
+
+    private Ingredient reload(Ingredient ingredient) {
+        return ingredientRepository.findById(ingredient.getId()).orElseThrow();
+    }
+
+    private int resultsFor(Ingredient ingredient) {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM scan_results WHERE ingredient_id = ?",
+                Integer.class, ingredient.getId());
+        return count == null ? 0 : count;
+    }
+}
@@ -0,0 +1,54 @@
+package com.nutricheck.service;
+
+import com.nutricheck.config.RuleEngineProperties;
+import com.nutricheck.dto.IngredientAnalysis;
+import com.nutricheck.dto.enums.ProductCategory;
+import com.nutricheck.entity.Ingredient;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Which names the rule engine answers without the model
+ */
+class IngredientRuleEngineTest {
+
+    private final IngredientIndex index = new IngredientIndex(null);
+    private final IngredientRuleEngine engine = new IngredientRuleEngine(index, new RuleEngineProperties());
+
+    IngredientRuleEngineTest() {
+        index.add(Ingredient.builder().id(1L).name("Sodium Nitrate").aliases("E251").riskLevel("high")
+                .productCategory(ProductCategory.FOOD).build());
+        index.add(Ingredient.builder().id(2L).name("Parfum").riskLevel("MEDIUM")
+                .productCategory(ProductCategory.COSMETICS).build());
+        index.add(Ingredient.builder().id(3L).name("Citric Acid").riskLevel("LOW").build());
+    }
+
+    @Test
+    void servesExactAliasAndCompactMatchesUnderTheSubmittedName() {
+        IngredientAnalysis byAlias = engine.classify("e-251", ProductCategory.FOOD).orElseThrow();
+        assertEquals("e-251", byAlias.getIngredientName());
+        assertEquals("HIGH", byAlias.getRisk());
+
+        assertEquals("sodium nitrate", engine.classify("sodium nitrate", ProductCategory.FOOD)
+                .orElseThrow().getIngredientName());
+    }
+
+    @Test
+    void neverServesNearMisses() {
+        assertTrue(engine.classify("sodium nitrite", ProductCategory.FOOD).isEmpty());
+        assertTrue(engine.classify("citric acids", ProductCategory.FOOD).isEmpty());
+    }
+
+    @Test
+    void onlyServesVerdictsOfTheSameProductCategory() {
+        assertTrue(engine.classify("parfum", ProductCategory.FOOD).isEmpty());
+        assertTrue(engine.classify("parfum", ProductCategory.COSMETICS).isPresent());
+        assertTrue(engine.classify("sodium nitrate", ProductCategory.COSMETICS).isEmpty());
+
+        // Rows without a recorded category count as food
+        assertTrue(engine.classify("citric acid", ProductCategory.BEVERAGES).isEmpty());
+        assertTrue(engine.classify("citric acid", ProductCategory.FOOD).isPresent());
+    }
+}
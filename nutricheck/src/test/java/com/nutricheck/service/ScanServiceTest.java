@@ -0,0 +1,98 @@
+package com.nutricheck.service;
+
+import com.nutricheck.dto.ScanCursor;
+import com.nutricheck.dto.ScanPage;
+import com.nutricheck.dto.ScanResponse;
+import com.nutricheck.entity.Scan;
+import com.nutricheck.entity.User;
+import com.nutricheck.repository.ScanRepository;
+import com.nutricheck.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Keyset paging through a user's scan history against the database
+ */
+@ActiveProfiles("test")
+@SpringBootTest
+class ScanServiceTest {
+
+    private static final LocalDateTime NOON = LocalDateTime.of(2026, 3, 1, 12, 0);
+
+    @Autowired
+    private ScanService scanService;
+    @Autowired
+    private ScanRepository scanRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(User.builder()
+                .name("Paging User")
+                .email("paging-" + UUID.randomUUID() + "@example.com")
+                .build());
+    }
+
+    @Test
+    void pagesThroughTimedAndUntimedScansWithoutGapsOrRepeats() {
+        // Several scans share a time, and older rows have none; untimed ones sort last
+        List<Scan> scans = new ArrayList<>();
+        for (LocalDateTime scannedAt : new LocalDateTime[]{
+                NOON, null, NOON.minusMinutes(1), NOON, null, NOON.plusMinutes(1),
+                NOON, NOON.minusMinutes(1), null, NOON, null, NOON.plusMinutes(1), null}) {
+            scans.add(save(scannedAt));
+        }
+        List<Long> expected = scans.stream()
+                .sorted(Comparator.comparing(Scan::getScannedAt,
+                                Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder()))
+                        .thenComparing(Scan::getId)
+                        .reversed())
+                .map(Scan::getId)
+                .toList();
+
+        for (int limit = 1; limit <= scans.size() + 1; limit++) {
+            List<Long> seen = new ArrayList<>();
+            String cursor = null;
+            do {
+                ScanPage page = scanService.getScanPage(user.getId(), cursor, limit, false);
+                page.getItems().stream().map(ScanResponse::getScanId).forEach(seen::add);
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+
+            assertEquals(expected, seen, "page size " + limit);
+        }
+    }
+
+    @Test
+    void cursorsRoundTrip() {
+        ScanCursor timed = new ScanCursor(NOON.withNano(123_456_000), 42L);
+        ScanCursor untimed = new ScanCursor(null, 7L);
+
+        assertEquals(timed, ScanCursor.decode(timed.encode()));
+        assertEquals(untimed, ScanCursor.decode(untimed.encode()));
+        assertNull(ScanCursor.decode(untimed.encode()).scannedAt());
+    }
+
+    private Scan save(LocalDateTime scannedAt) {
+        return scanRepository.save(Scan.builder()
+                .productName("Scan " + (scannedAt == null ? "untimed" : scannedAt))
+                .scannedAt(scannedAt)
+                .user(user)
+                .build());
+    }
+}
@@ -0,0 +1,251 @@
+package com.nutricheck.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nutricheck.config.WriteBehindProperties;
+import com.nutricheck.dto.AiAnalysisResponse;
+import com.nutricheck.dto.IngredientAnalysis;
+import com.nutricheck.dto.ScanResponse;
+import com.nutricheck.dto.enums.ProductCategory;
+import com.nutricheck.entity.User;
+import com.nutricheck.mapper.ScanMapper;
+import com.nutricheck.persistence.PendingScan;
+import com.nutricheck.persistence.ScanIdAllocator;
+import com.nutricheck.persistence.ScanJournal;
+import com.nutricheck.repository.IngredientRepository;
+import com.nutricheck.repository.ScanRepository;
+import com.nutricheck.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Accepting, retrying, dead-lettering and replaying scans of the write-behind queue against the database
+ */
+@ActiveProfiles("test")
+@SpringBootTest
+class ScanWriteBehindTest {
+
+    @Autowired
+    private ScanIdAllocator idAllocator;
+    @Autowired
+    private IngredientResolver ingredientResolver;
+    @Autowired
+    private IngredientIndex ingredientIndex;
+    @Autowired
+    private IngredientRepository ingredientRepository;
+    @Autowired
+    private ScanRepository scanRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private ScanMapper scanMapper;
+    @Autowired
+    private ScanMetrics scanMetrics;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    Path dir;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private FlakyJdbcTemplate jdbcTemplate;
+    private ScanWriteBehind writeBehind;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new FlakyJdbcTemplate(dataSource);
+        // Other tests in this context may have deleted rows the index still holds
+        ingredientIndex.refresh();
+        user = userRepository.save(User.builder().name("Tester").email(UUID.randomUUID() + "@example.com").build());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        jdbcTemplate.gate.countDown();
+        if (writeBehind != null) {
+            writeBehind.stop();
+        }
+    }
+
+    @Test
+    void servesPendingScansFromMemoryUntilWritten() throws Exception {
+        jdbcTemplate.gate = new CountDownLatch(1);
+        writeBehind = start();
+
+        ScanResponse response = writeBehind.write(analysis("Oat Bar"), user.getId(), ProductCategory.FOOD);
+
+        assertEquals("Oat Bar", writeBehind.findPending(response.getScanId()).orElseThrow().getProductName());
+        assertTrue(scanRepository.findById(response.getScanId()).isEmpty());
+
+        jdbcTemplate.gate.countDown();
+        await(() -> writeBehind.findPending(response.getScanId()).isEmpty());
+        assertTrue(scanRepository.findById(response.getScanId()).isPresent());
+    }
+
+    @Test
+    void retriesWhileTheDatabaseIsUnavailable() throws Exception {
+        jdbcTemplate.transientFailures.set(2);
+        writeBehind = start();
+
+        ScanResponse response = writeBehind.write(analysis("Crackers"), user.getId(), ProductCategory.FOOD);
+
+        await(() -> scanRepository.findById(response.getScanId()).isPresent());
+        assertEquals(2.0, meterRegistry.counter("nutricheck.writebehind.retries").count());
+        assertEquals(0.0, meterRegistry.counter("nutricheck.writebehind.dropped").count());
+    }
+
+    @Test
+    void deadLettersScansThatCanNeverBeWritten() throws Exception {
+        jdbcTemplate.gate = new CountDownLatch(1);
+        jdbcTemplate.poison = "Broken Bar";
+        writeBehind = start();
+
+        // Queued together so they share a batch; only the broken scan is dropped
+        ScanResponse good = writeBehind.write(analysis("Rice Cakes"), user.getId(), ProductCategory.FOOD);
+        ScanResponse bad = writeBehind.write(analysis("Broken Bar"), user.getId(), ProductCategory.FOOD);
+        jdbcTemplate.gate.countDown();
+
+        await(() -> writeBehind.findPending(bad.getScanId()).isEmpty()
+                && writeBehind.findPending(good.getScanId()).isEmpty());
+        assertTrue(scanRepository.findById(good.getScanId()).isPresent());
+        assertTrue(scanRepository.findById(bad.getScanId()).isEmpty());
+        assertEquals(1.0, meterRegistry.counter("nutricheck.writebehind.dropped").count());
+        assertTrue(Files.readString(dir.resolve("dead-letters.ndjson")).contains("Broken Bar"));
+    }
+
+    @Test
+    void replaysJournaledScansOnce() throws Exception {
+        long scanId = idAllocator.nextScanId();
+        long[] resultIds = idAllocator.nextResultIds(1);
+        PendingScan scan = new PendingScan(scanId, user.getId(), LocalDateTime.now(), analysis("Granola"),
+                Arrays.stream(resultIds).boxed().toList(), ProductCategory.FOOD);
+
+        journal(scan);
+        writeBehind = start();
+        await(() -> scanRepository.findById(scanId).isPresent());
+        writeBehind.stop();
+
+        // As after a crash between the commit and the journal update: the replay finds the scan already written
+        journal(scan);
+        writeBehind = start();
+        await(() -> countResults(scanId) == 1 && pendingSegments() == 0);
+        assertEquals(0.0, meterRegistry.counter("nutricheck.writebehind.dropped").count());
+    }
+
+    private ScanWriteBehind start() throws IOException {
+        WriteBehindProperties properties = new WriteBehindProperties();
+        properties.setEnabled(true);
+        properties.setJournalDir(dir.toAbsolutePath().toString());
+        properties.setSegmentSize(DataSize.ofKilobytes(64));
+        properties.setMaxDelay(Duration.ofMillis(20));
+        properties.setRetryBackoff(Duration.ofMillis(10));
+        properties.setMaxRetryBackoff(Duration.ofMillis(50));
+        properties.setShutdownTimeout(Duration.ofSeconds(5));
+        ScanWriteBehind started = new ScanWriteBehind(properties, idAllocator, ingredientResolver,
+                ingredientRepository, scanRepository, userRepository, scanMapper, scanMetrics, objectMapper,
+                jdbcTemplate, transactionManager, meterRegistry);
+        started.start();
+        return started;
+    }
+
+    private void journal(PendingScan scan) throws IOException {
+        try (ScanJournal journal = new ScanJournal(dir, objectMapper, 1 << 20, false)) {
+            journal.append(scan);
+        }
+    }
+
+    // Segments on disk, besides the one the running writer appends to
+    private long pendingSegments() {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".journal")).count() - 1;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int countResults(long scanId) {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM scan_results WHERE scan_id = ?",
+                Integer.class, scanId);
+        return count == null ? 0 : count;
+    }
+
+    private static AiAnalysisResponse analysis(String productName) {
+        IngredientAnalysis sugar = new IngredientAnalysis("Sugar", "MEDIUM", "Moderate", "Added sugar",
+                "Sweetener", "sweetener", List.of("Tooth decay"));
+        return new AiAnalysisResponse(productName, List.of(sugar), 60, "Fine in moderation", List.of());
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for the scan writer");
+            Thread.sleep(20);
+        }
+    }
+
+    // Fails or holds the scan inserts as a test needs
+    private static class FlakyJdbcTemplate extends JdbcTemplate {
+
+        private final AtomicInteger transientFailures = new AtomicInteger();
+        private volatile String poison;
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+
+        FlakyJdbcTemplate(DataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        public <T> int[][] batchUpdate(String sql, Collection<T> batchArgs, int batchSize,
+                                       ParameterizedPreparedStatementSetter<T> pss) {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (transientFailures.getAndUpdate(left -> Math.max(0, left - 1)) > 0) {
+                throw new TransientDataAccessResourceException("Database restarting");
+            }
+            if (poison != null && batchArgs.stream()
+                    .anyMatch(arg -> arg instanceof PendingScan scan && poison.equals(scan.analysis().getProductName()))) {
+                throw new DataIntegrityViolationException("Row rejected");
+            }
+            return super.batchUpdate(sql, batchArgs, batchSize, pss);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.nutricheck.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nutricheck.ai.ModelUnavailableException;
+import com.nutricheck.concurrency.CallLimiter;
+import com.nutricheck.config.BatchingProperties;
+import com.nutricheck.dto.AiAnalysisResponse;
+import com.nutricheck.dto.IngredientAnalysis;
+import com.nutricheck.dto.enums.ProductCategory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.retry.TransientAiException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Grouping concurrent text analyses into one model call, and how a failed or slow batch reaches its callers
+ */
+class TextAnalysisBatcherTest {
+
+    // "p1 (FOOD): sugar, salt" lines of the batch prompt
+    private static final Pattern PRODUCT = Pattern.compile("(?m)^\\s*(p\\d+) \\(\\w+\\): (.+)$");
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private TextAnalysisBatcher batcher;
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+        if (batcher != null) {
+            batcher.stop();
+        }
+    }
+
+    @Test
+    void answersConcurrentCallersWithOneModelCall() {
+        batcher = start(prompt -> answer(prompt, null), Duration.ofSeconds(5));
+
+        CompletableFuture<AiAnalysisResponse> first = submit(List.of("Sugar"));
+        CompletableFuture<AiAnalysisResponse> second = submit(List.of("Salt", "Citric Acid"));
+
+        assertEquals(List.of("Sugar"), names(first.join()));
+        assertEquals(List.of("Salt", "Citric Acid"), names(second.join()));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void productThatDidNotFitOpensTheNextBatch() throws InterruptedException {
+        List<String> prompts = Collections.synchronizedList(new ArrayList<>());
+        BatchingProperties properties = properties(Duration.ofSeconds(5));
+        properties.setMaxIngredients(3);
+        batcher = batcher(prompt -> {
+            prompts.add(prompt.getContents());
+            return answer(prompt, null);
+        }, properties);
+        batcher.start();
+
+        CompletableFuture<AiAnalysisResponse> first = submit(List.of("Sugar", "Salt"));
+        Thread.sleep(50);
+        CompletableFuture<AiAnalysisResponse> oversized = submit(List.of("Citric Acid", "Pectin"));
+        Thread.sleep(50);
+        CompletableFuture<AiAnalysisResponse> later = submit(List.of("Water"));
+        CompletableFuture.allOf(first, oversized, later).join();
+
+        // Ahead of the product that arrived after it, instead of behind it at the tail of the queue
+        assertEquals(2, prompts.size());
+        Matcher matcher = PRODUCT.matcher(prompts.get(1));
+        assertTrue(matcher.find());
+        assertEquals("Citric Acid, Pectin", matcher.group(2));
+    }
+
+    @Test
+    void failedBatchIsNotRetriedPerCaller() {
+        batcher = start(prompt -> {
+            throw new TransientAiException("503 Service Unavailable");
+        }, Duration.ofSeconds(5));
+
+        List<CompletableFuture<AiAnalysisResponse>> waiting = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            waiting.add(submit(List.of("Sugar")));
+        }
+
+        // Every caller answers as if the model were unavailable instead of calling it again alone
+        for (CompletableFuture<AiAnalysisResponse> caller : waiting) {
+            CompletionException e = assertThrows(CompletionException.class, caller::join);
+            assertInstanceOf(ModelUnavailableException.class, e.getCause());
+        }
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void onlyProductsMissingFromTheAnswerFallBack() {
+        batcher = start(prompt -> answer(prompt, "Salt"), Duration.ofSeconds(5));
+
+        CompletableFuture<AiAnalysisResponse> first = submit(List.of("Sugar"));
+        CompletableFuture<AiAnalysisResponse> second = submit(List.of("Salt"));
+
+        assertEquals(List.of("Sugar"), names(first.join()));
+        CompletionException e = assertThrows(CompletionException.class, second::join);
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+    }
+
+    @Test
+    void rejectsWorkUnlessRunning() {
+        BatchingProperties disabled = new BatchingProperties();
+        TextAnalysisBatcher idle = batcher(prompt -> answer(prompt, null), disabled);
+        idle.start();
+        assertThrows(IllegalStateException.class, () -> idle.analyze(List.of("Sugar"), ProductCategory.FOOD));
+
+        batcher = start(prompt -> answer(prompt, null), Duration.ofSeconds(5));
+        batcher.stop();
+        assertThrows(IllegalStateException.class, () -> batcher.analyze(List.of("Sugar"), ProductCategory.FOOD));
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    void stopsWaitingAfterTheTimeout() {
+        batcher = start(prompt -> {
+            try {
+                Thread.sleep(5_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return answer(prompt, null);
+        }, Duration.ofMillis(200));
+
+        long started = System.nanoTime();
+        assertThrows(ModelUnavailableException.class, () -> batcher.analyze(List.of("Sugar"), ProductCategory.FOOD));
+        assertTrue(System.nanoTime() - started < Duration.ofSeconds(2).toNanos());
+    }
+
+    private TextAnalysisBatcher start(Function<Prompt, ChatResponse> model, Duration timeout) {
+        TextAnalysisBatcher started = batcher(model, properties(timeout));
+        started.start();
+        return started;
+    }
+
+    private static BatchingProperties properties(Duration timeout) {
+        BatchingProperties properties = new BatchingProperties();
+        properties.setEnabled(true);
+        properties.setMaxWait(Duration.ofMillis(200));
+        properties.setTimeout(timeout);
+        return properties;
+    }
+
+    private TextAnalysisBatcher batcher(Function<Prompt, ChatResponse> model, BatchingProperties properties) {
+        ChatModel chatModel = prompt -> {
+            calls.incrementAndGet();
+            return model.apply(prompt);
+        };
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        return new TextAnalysisBatcher(chatModel, new ObjectMapper(),
+                new CallLimiter("model", 4, Duration.ofSeconds(1)), properties,
+                new ScanMetrics(ObservationRegistry.create(), meterRegistry), meterRegistry);
+    }
+
+    private CompletableFuture<AiAnalysisResponse> submit(List<String> ingredients) {
+        return CompletableFuture.supplyAsync(() -> batcher.analyze(ingredients, ProductCategory.FOOD), callers);
+    }
+
+    // Echoes each product's ingredients back as LOW risk results, leaving out the product listing the given one
+    private static ChatResponse answer(Prompt prompt, String omit) {
+        StringBuilder products = new StringBuilder();
+        Matcher matcher = PRODUCT.matcher(prompt.getContents());
+        while (matcher.find()) {
+            if (omit != null && List.of(matcher.group(2).split(", ")).contains(omit)) {
+                continue;
+            }
+            StringBuilder results = new StringBuilder();
+            for (String name : matcher.group(2).split(", ")) {
+                results.append(results.isEmpty() ? "" : ",")
+                        .append("{\"ingredientName\":\"").append(name.trim()).append("\",\"risk\":\"LOW\"}");
+            }
+            products.append(products.isEmpty() ? "" : ",")
+                    .append('"').append(matcher.group(1)).append("\":{\"results\":[").append(results)
+                    .append("],\"safetyScore\":8}");
+        }
+        String text = "{\"products\":{" + products + "}}";
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+    }
+
+    private static List<String> names(AiAnalysisResponse response) {
+        return response.getResults().stream().map(IngredientAnalysis::getIngredientName).toList();
+    }
+}
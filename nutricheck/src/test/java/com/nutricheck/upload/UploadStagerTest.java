@@ -0,0 +1,86 @@
+package com.nutricheck.upload;
+
+import com.nutricheck.config.UploadProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Staging streamed images against their declared size and the in-flight budget
+ */
+class UploadStagerTest {
+
+    // JPEG magic bytes followed by filler
+    private static final byte[] IMAGE = jpeg(1000);
+
+    @TempDir
+    Path dir;
+
+    private UploadBudget budget;
+    private UploadStager stager;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        UploadProperties properties = new UploadProperties();
+        properties.setTempDir(dir.toString());
+        budget = new UploadBudget(properties, new SimpleMeterRegistry());
+        stager = new UploadStager(budget, properties);
+    }
+
+    @Test
+    void stagesAnImageOfTheDeclaredSize() throws IOException {
+        try (StagedUpload upload = stager.stage(new ByteArrayInputStream(IMAGE), IMAGE.length)) {
+            assertEquals(IMAGE.length, upload.size());
+            assertEquals("image/jpeg", upload.contentType());
+        }
+        assertEquals(0, budget.inFlightBytes());
+    }
+
+    @Test
+    void stopsReadingAStreamLongerThanDeclared() throws IOException {
+        // Stands in for a ZIP entry that inflates far beyond its recorded size
+        InputStream bomb = new InputStream() {
+            private long read;
+
+            @Override
+            public int read() {
+                return read++ < IMAGE.length ? IMAGE[(int) read - 1] & 0xff : 0;
+            }
+        };
+
+        assertThrows(IllegalArgumentException.class, () -> stager.stage(bomb, IMAGE.length));
+        assertEquals(0, budget.inFlightBytes());
+        assertEquals(0, files());
+    }
+
+    @Test
+    void rejectsUnknownSizes() {
+        assertThrows(IllegalArgumentException.class, () -> stager.stage(new ByteArrayInputStream(IMAGE), -1));
+        assertEquals(0, budget.inFlightBytes());
+    }
+
+    private long files() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    private static byte[] jpeg(int size) {
+        byte[] bytes = new byte[size];
+        bytes[0] = (byte) 0xFF;
+        bytes[1] = (byte) 0xD8;
+        bytes[2] = (byte) 0xFF;
+        return bytes;
+    }
+}
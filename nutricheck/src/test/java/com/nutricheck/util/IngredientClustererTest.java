@@ -0,0 +1,83 @@
+package com.nutricheck.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Canonical keys and near-duplicate grouping of ingredient names
+ */
+class IngredientClustererTest {
+
+    private final IngredientClusterer clusterer = new IngredientClusterer(16, 4, 0.85, 5, 20);
+
+    @Test
+    void foldsSpellingVariants() {
+        assertEquals("e330", IngredientClusterer.canonicalKey("E-330"));
+        assertEquals("e330", IngredientClusterer.canonicalKey("e 330"));
+        assertEquals("caramel color", IngredientClusterer.canonicalKey("Caramel Colour"));
+        assertEquals("oat", IngredientClusterer.canonicalKey("Oats"));
+        assertEquals("berry", IngredientClusterer.canonicalKey("berries"));
+        assertEquals("glass", IngredientClusterer.canonicalKey("glass"));
+    }
+
+    @Test
+    void groupsVariantsAndTypos() {
+        List<List<IngredientClusterer.Name>> clusters = clusterer.cluster(List.of(
+                name(1, "Monosodium Glutamate", false),
+                name(2, "monosodum glutamate", true),
+                name(3, "Citric Acid", false),
+                name(4, "E330", false),
+                name(5, "E-330", true),
+                name(6, "Caramel Color", false),
+                name(7, "caramel colour", true),
+                name(8, "Sugar", false)));
+
+        assertEquals(Set.of(Set.of(1L, 2L), Set.of(4L, 5L), Set.of(6L, 7L)), ids(clusters));
+    }
+
+    @Test
+    void keepsDifferentNumbersAndWordsApart() {
+        assertFalse(clusterer.sameIngredient("Vitamin B6", "Vitamin B12"));
+        assertFalse(clusterer.sameIngredient("E330", "E331"));
+        assertFalse(clusterer.sameIngredient("hydrogenated palm oil", "non-hydrogenated palm oil"));
+        assertFalse(clusterer.sameIngredient("Salt", "Malt"));
+        assertTrue(clusterer.sameIngredient("Sodium Benzoate", "sodium bensoate"));
+    }
+
+    @Test
+    void keepsDifferentCompoundsApart() {
+        assertFalse(clusterer.sameIngredient("sodium nitrite", "sodium nitrate"));
+        assertFalse(clusterer.sameIngredient("Sodium Sulphite", "sodium sulfate"));
+        assertFalse(clusterer.sameIngredient("sodium chloride", "sodium chlorite"));
+        // A typo inside the suffix could be either compound
+        assertFalse(clusterer.sameIngredient("monosodium glutamate", "monosodium glutamte"));
+
+        assertTrue(clusterer.cluster(List.of(
+                name(1, "Sodium Nitrite", false),
+                name(2, "sodium nitrate", true))).isEmpty());
+    }
+
+    @Test
+    void skipsPairsAlreadyCompared() {
+        assertTrue(clusterer.cluster(List.of(
+                name(1, "Potassium Sorbate", false),
+                name(2, "Potassium Sorbates", false))).isEmpty());
+    }
+
+    private static IngredientClusterer.Name name(long id, String name, boolean fresh) {
+        return new IngredientClusterer.Name(id, name, fresh);
+    }
+
+    private static Set<Set<Long>> ids(List<List<IngredientClusterer.Name>> clusters) {
+        return clusters.stream()
+                .map(cluster -> cluster.stream().map(IngredientClusterer.Name::id).collect(Collectors.toSet()))
+                .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,52 @@
+package com.nutricheck.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ingredient panel and product name from OCR lines
+ */
+class LabelTextParserTest {
+
+    @Test
+    void readsPanelUntilNextSection() {
+        LabelTextParser.LabelText label = LabelTextParser.parse(List.of(
+                line("CRUNCHY OATS", 91),
+                line("Made with natural ingredients", 70),
+                line("Ingredients: Whole grain oats (52%), sugar,", 85),
+                line("palm oil, emul-", 80),
+                line("sifier (soy lecithin), salt", 84),
+                line("Nutrition information per 100 g", 90))).orElseThrow();
+
+        assertEquals("CRUNCHY OATS", label.productName());
+        assertEquals("Whole grain oats (52%), sugar, palm oil, emulsifier (soy lecithin), salt", label.ingredients());
+        assertTrue(label.confidence() > 80 && label.confidence() < 85);
+    }
+
+    @Test
+    void stopsAtEndOfSentence() {
+        LabelTextParser.LabelText label = LabelTextParser.parse(List.of(
+                line("INGREDIENTS", 88),
+                line("Water, citric acid, sodium benzoate.", 88),
+                line("Shake well", 88))).orElseThrow();
+
+        assertNull(label.productName());
+        assertEquals("Water, citric acid, sodium benzoate", label.ingredients());
+    }
+
+    @Test
+    void emptyWithoutHeading() {
+        assertTrue(LabelTextParser.parse(List.of(
+                line("Made with natural ingredients", 90),
+                line("Sugar, salt", 90))).isEmpty());
+    }
+
+    private static LabelTextParser.Line line(String text, float confidence) {
+        return new LabelTextParser.Line(text, confidence);
+    }
+}
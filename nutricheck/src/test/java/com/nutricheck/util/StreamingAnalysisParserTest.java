@@ -0,0 +1,127 @@
+package com.nutricheck.util;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nutricheck.dto.AiAnalysisResponse;
+import com.nutricheck.dto.IngredientAnalysis;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * The incremental parser against the parse-it-whole parser it replaced, however the answer is split into chunks
+ */
+class StreamingAnalysisParserTest {
+
+    // Lenient like the application's ObjectMapper, so the unknown nested fields below are skipped
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    // "results" after other fields, nested objects and arrays, braces inside strings, non-ASCII text
+    private static final String JSON = """
+            {
+              "productName": "Açaí Bowl {Large}",
+              "safetyScore": 7,
+              "meta": {"model": {"name": "flash", "tags": [1, [2, {"x": null}]]}, "empty": {}},
+              "warningsFor": ["children", "pregnant women"],
+              "results": [
+                {"ingredientName": "Açaí", "risk": "LOW", "sideEffects": [],
+                 "source": {"db": {"id": 1, "aliases": ["euterpe"]}}},
+                {"ingredientName": "Sugar", "risk": "MEDIUM", "explanation": "Listed as {sucrose} \\"sugar\\"",
+                 "sideEffects": ["tooth decay", "weight gain"]},
+                {"ingredientName": "E621", "risk": "HIGH", "category": "flavour enhancer", "sideEffects": null}
+              ],
+              "overallAssessment": "Mostly fruit; watch the sugar."
+            }""";
+
+    private static final String FENCED = "```json\n" + JSON + "\n```";
+
+    @Test
+    void matchesTheOldParserWhereverTheAnswerIsSplit() throws Exception {
+        AiAnalysisResponse expected = oldParser(FENCED);
+        assertEquals(3, expected.getResults().size());
+
+        for (int split = 0; split <= FENCED.length(); split++) {
+            List<IngredientAnalysis> streamed = new ArrayList<>();
+            StreamingAnalysisParser parser = new StreamingAnalysisParser(objectMapper, streamed::add);
+            parser.feed(FENCED.substring(0, split));
+            parser.feed(FENCED.substring(split));
+
+            AiAnalysisResponse parsed = parser.finish();
+            assertEquals(expected, parsed, "split at " + split);
+            assertEquals(expected.getResults(), streamed, "split at " + split);
+        }
+    }
+
+    @Test
+    void matchesTheOldParserFedOneCharacterAtATime() throws Exception {
+        List<IngredientAnalysis> streamed = new ArrayList<>();
+        StreamingAnalysisParser parser = new StreamingAnalysisParser(objectMapper, streamed::add);
+        for (int i = 0; i < FENCED.length(); i++) {
+            parser.feed(FENCED.substring(i, i + 1));
+        }
+
+        AiAnalysisResponse expected = oldParser(FENCED);
+        assertEquals(expected, parser.finish());
+        assertEquals(expected.getResults(), streamed);
+    }
+
+    @Test
+    void handsOutEachIngredientOnceItsObjectIsClosed() {
+        List<IngredientAnalysis> streamed = new ArrayList<>();
+        StreamingAnalysisParser parser = new StreamingAnalysisParser(objectMapper, streamed::add);
+        int secondResult = JSON.indexOf("{\"ingredientName\": \"Sugar\"");
+
+        parser.feed(JSON.substring(0, secondResult));
+        assertEquals(List.of("Açaí"), names(streamed));
+        parser.feed(JSON.substring(secondResult, JSON.indexOf("{\"ingredientName\": \"E621\"")));
+        assertEquals(List.of("Açaí", "Sugar"), names(streamed));
+    }
+
+    @Test
+    void skipsProseAroundTheObject() throws Exception {
+        String answer = "Sure! Here is the analysis you asked for:\n\n" + FENCED
+                + "\nLet me know if you need anything else } or more detail {\"results\": []}.";
+
+        for (int split = 0; split <= answer.length(); split++) {
+            StreamingAnalysisParser parser = new StreamingAnalysisParser(objectMapper, analysis -> { });
+            parser.feed(answer.substring(0, split));
+            parser.feed(answer.substring(split));
+
+            // The old parser could not read this answer at all; compare with what it makes of the bare object
+            assertEquals(oldParser(JSON), parser.finish(), "split at " + split);
+        }
+    }
+
+    @Test
+    void rejectsAnAnswerThatEndsEarly() {
+        StreamingAnalysisParser parser = new StreamingAnalysisParser(objectMapper, analysis -> { });
+        parser.feed(FENCED.substring(0, FENCED.indexOf("overallAssessment")));
+
+        assertThrows(IllegalStateException.class, parser::finish);
+    }
+
+    @Test
+    void rejectsAnAnswerThatIsNotAnObject() {
+        StreamingAnalysisParser parser = new StreamingAnalysisParser(objectMapper, analysis -> { });
+
+        assertThrows(IllegalStateException.class, () -> parser.feed("{\"results\": [}"));
+    }
+
+    // AiService.parseAiResponse before the streaming parser: strip the fences, bind the whole string
+    private AiAnalysisResponse oldParser(String answer) throws Exception {
+        String cleanJson = answer
+                .replaceAll("```json\\s*", "")
+                .replaceAll("```\\s*", "")
+                .trim();
+        return objectMapper.readValue(cleanJson, AiAnalysisResponse.class);
+    }
+
+    private static List<String> names(List<IngredientAnalysis> analyses) {
+        return analyses.stream().map(IngredientAnalysis::getIngredientName).toList();
+    }
+}